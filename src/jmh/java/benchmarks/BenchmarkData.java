@@ -0,0 +1,63 @@
+package benchmarks;
+
+import com.freshworks.ems.model.Department;
+import com.freshworks.ems.model.Employee;
+import com.freshworks.ems.service.DepartmentService;
+import com.freshworks.ems.service.EmployeeService;
+import com.freshworks.ems.store.ColumnarEmployeeStore;
+import com.freshworks.ems.store.ConcurrentEntityStore;
+import com.freshworks.ems.store.EntityStore;
+import com.freshworks.ems.store.OffHeapEmployeeStore;
+import com.freshworks.ems.store.StoreConfiguration;
+
+import java.util.SplittableRandom;
+
+// Builds services holding a fixed, reproducible population through the bulk-load path
+final class BenchmarkData {
+    private static final long SEED = 42;
+
+    final DepartmentService departmentService;
+    final EmployeeService employeeService;
+    final int employees;
+    final int departments;
+
+    BenchmarkData(int employees, int departments) {
+        this(employees, departments, StoreConfiguration.Type.HEAP);
+    }
+
+    BenchmarkData(int employees, int departments, StoreConfiguration.Type store) {
+        this.employees = employees;
+        this.departments = departments;
+        departmentService = new DepartmentService(new ConcurrentEntityStore<>());
+        employeeService = new EmployeeService(departmentService, newEmployeeStore(store, employees));
+        departmentService.createEmployeeServiceObject(employeeService);
+
+        for (int depId = 1; depId <= departments; depId++) {
+            departmentService.loadDepartment(new Department(depId, "department-" + depId));
+        }
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int empId = 1; empId <= employees; empId++) {
+            employeeService.loadEmployee(new Employee(empId, 1 + random.nextInt(departments), name(random),
+                                                      "employee" + empId + "@ems.com", 18 + random.nextInt(50)));
+        }
+    }
+
+    private static EntityStore<Employee> newEmployeeStore(StoreConfiguration.Type store, int employees) {
+        switch (store) {
+            case COLUMNAR:
+                return new ColumnarEmployeeStore(employees);
+            case OFF_HEAP:
+                return new OffHeapEmployeeStore(employees);
+            default:
+                return new ConcurrentEntityStore<>(employees);
+        }
+    }
+
+    static String name(SplittableRandom random) {
+        char[] name = new char[8];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(name);
+    }
+}
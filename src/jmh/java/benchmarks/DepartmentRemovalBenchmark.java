@@ -0,0 +1,50 @@
+package benchmarks;
+
+import com.freshworks.ems.exceptions.DepartmentNotFound;
+import com.freshworks.ems.model.DepartmentDeletionJob;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Removing a department is destructive, so each iteration removes one from a freshly built population
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class DepartmentRemovalBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    int employees;
+
+    @Param({"10", "1000"})
+    int departments;
+
+    private BenchmarkData data;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        data = new BenchmarkData(employees, departments);
+    }
+
+    @Benchmark
+    public void removeDepartment() throws DepartmentNotFound {
+        data.departmentService.removeDepartment(1);
+    }
+
+    // What the request thread pays when the reclamation is handed to a background job
+    @Benchmark
+    public Optional<DepartmentDeletionJob> deleteDepartment() throws DepartmentNotFound {
+        return data.departmentService.deleteDepartment(1);
+    }
+}
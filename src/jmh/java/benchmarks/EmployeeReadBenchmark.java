@@ -0,0 +1,84 @@
+package benchmarks;
+
+import com.freshworks.ems.exceptions.EmployeeNotFound;
+import com.freshworks.ems.exceptions.InvalidCursor;
+import com.freshworks.ems.model.Employee;
+import com.freshworks.ems.model.Page;
+import com.freshworks.ems.service.EmployeeFilter;
+import com.freshworks.ems.store.StoreConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EmployeeReadBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    int employees;
+
+    // Average fan-out is employees / departments
+    @Param({"10", "1000"})
+    int departments;
+
+    @Param({"HEAP", "COLUMNAR", "OFF_HEAP"})
+    StoreConfiguration.Type store;
+
+    private BenchmarkData data;
+
+    @Setup
+    public void setUp() {
+        data = new BenchmarkData(employees, departments, store);
+    }
+
+    @Benchmark
+    public Employee getEmployeeById() throws EmployeeNotFound {
+        return data.employeeService.getEmployeeById(1 + ThreadLocalRandom.current().nextInt(employees));
+    }
+
+    @Benchmark
+    public List<Employee> getEmpsOfDepartment() {
+        return data.employeeService.getEmpsOfDepartment(1 + ThreadLocalRandom.current().nextInt(departments));
+    }
+
+    @Benchmark
+    public Page<Employee> getEmpsOfDepartmentPage() throws InvalidCursor {
+        return data.employeeService.getEmpsOfDepartment(1 + ThreadLocalRandom.current().nextInt(departments),
+                                                        null, Page.DEFAULT_LIMIT);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Employee> sortEmployeesByAge() {
+        return data.employeeService.sortEmployees("age");
+    }
+
+    @Benchmark
+    public Page<Employee> firstPageByName() throws InvalidCursor {
+        return data.employeeService.getEmployees("name", null, Page.DEFAULT_LIMIT);
+    }
+
+    // Department, age range and name order together: the planner picks between the three indexes by size
+    @Benchmark
+    public Page<Employee> filteredPageByName() throws InvalidCursor {
+        EmployeeFilter filter = new EmployeeFilter(1 + ThreadLocalRandom.current().nextInt(departments), 30, 40, null);
+        return data.employeeService.getEmployees("name", filter, null, Page.DEFAULT_LIMIT);
+    }
+
+    @Benchmark
+    public Page<Employee> searchNamePrefix() throws InvalidCursor {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String prefix = new String(new char[] {(char) ('a' + random.nextInt(26)), (char) ('a' + random.nextInt(26)),
+                                               (char) ('a' + random.nextInt(26))});
+        return data.employeeService.searchEmployees(prefix, null, Page.DEFAULT_LIMIT);
+    }
+}
@@ -0,0 +1,69 @@
+package benchmarks;
+
+import com.freshworks.ems.exceptions.DepartmentNotFound;
+import com.freshworks.ems.exceptions.EmployeeNotFound;
+import com.freshworks.ems.model.Employee;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Rebuilt every iteration so creates do not keep growing the population being measured
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EmployeeWriteBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    int employees;
+
+    @Param({"10", "1000"})
+    int departments;
+
+    private BenchmarkData data;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        data = new BenchmarkData(employees, departments);
+    }
+
+    @Benchmark
+    public Employee createEmployee() throws DepartmentNotFound {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return data.employeeService.createEmployee(new Employee(1 + random.nextInt(departments), "created",
+                                                                18 + random.nextInt(50)));
+    }
+
+    @Benchmark
+    public Employee updateEmployee() throws DepartmentNotFound, EmployeeNotFound {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return data.employeeService.updateEmployee(1 + random.nextInt(employees),
+                                                   new Employee(1 + random.nextInt(departments), "updated"));
+    }
+
+    // Read-heavy mix: three readers per writer against the same population
+    @Benchmark
+    @Group("readWriteMix")
+    @GroupThreads(3)
+    public Employee mixedRead() throws EmployeeNotFound {
+        return data.employeeService.getEmployeeById(1 + ThreadLocalRandom.current().nextInt(employees));
+    }
+
+    @Benchmark
+    @Group("readWriteMix")
+    @GroupThreads(1)
+    public Employee mixedWrite() throws DepartmentNotFound, EmployeeNotFound {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return data.employeeService.updateEmployee(1 + random.nextInt(employees),
+                                                   new Employee(1 + random.nextInt(departments), "mixed"));
+    }
+}
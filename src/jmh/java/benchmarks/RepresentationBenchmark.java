@@ -0,0 +1,77 @@
+package benchmarks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.freshworks.ems.model.Employee;
+import io.dropwizard.jackson.Jackson;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// A List<Employee> response body in each format the resources negotiate: encode and decode cost, and the
+// payload size, reported in the bytes counter
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RepresentationBenchmark {
+    @Param({"100", "10000"})
+    int employees;
+
+    @Param({"json", "smile", "cbor"})
+    String format;
+
+    private ObjectMapper objectMapper;
+    private JavaType listType;
+    private List<Employee> employeeList;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson.newObjectMapper(factoryOf(format));
+        listType = objectMapper.getTypeFactory().constructCollectionType(List.class, Employee.class);
+        employeeList = new BenchmarkData(employees, 10).employeeService.getAllEmployees("");
+        encoded = objectMapper.writeValueAsBytes(employeeList);
+    }
+
+    private static JsonFactory factoryOf(String format) {
+        switch (format) {
+            case "smile":
+                return new SmileFactory();
+            case "cbor":
+                return new CBORFactory();
+            default:
+                return new JsonFactory();
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Payload {
+        public long bytes;
+    }
+
+    @Benchmark
+    public byte[] encode(Payload payload) throws IOException {
+        byte[] body = objectMapper.writeValueAsBytes(employeeList);
+        payload.bytes = body.length;
+        return body;
+    }
+
+    @Benchmark
+    public List<Employee> decode() throws IOException {
+        return objectMapper.readValue(encoded, listType);
+    }
+}
@@ -0,0 +1,87 @@
+package benchmarks;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.freshworks.ems.model.Employee;
+import io.dropwizard.jackson.Jackson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Response bodies as the resources produce them: a materialised list, and the streaming export
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+    @Param({"100", "10000", "1000000"})
+    int employees;
+
+    private final ObjectMapper objectMapper = Jackson.newObjectMapper();
+    private BenchmarkData data;
+    private List<Employee> employeeList;
+    private byte[] employeeListJson;
+
+    @Setup
+    public void setUp() {
+        data = new BenchmarkData(employees, 10);
+        employeeList = data.employeeService.getAllEmployees("");
+        try {
+            employeeListJson = objectMapper.writeValueAsBytes(employeeList);
+        }
+        catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Benchmark
+    public byte[] writeEmployeeList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(employeeList);
+    }
+
+    @Benchmark
+    public List<Employee> readEmployeeList() throws IOException {
+        return objectMapper.readValue(employeeListJson, objectMapper.getTypeFactory()
+                                                       .constructCollectionType(List.class, Employee.class));
+    }
+
+    @Benchmark
+    public long streamExport() throws IOException {
+        CountingOutputStream output = new CountingOutputStream();
+        ObjectWriter writer = objectMapper.writerFor(Employee.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        Iterator<Employee> iterator = data.employeeService.iterateEmployees();
+        try (SequenceWriter sequenceWriter = writer.writeValuesAsArray(output)) {
+            while (iterator.hasNext()) {
+                sequenceWriter.write(iterator.next());
+            }
+        }
+        return output.count;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+// Boots the whole application in-process on a random port and holds it to the service levels of the load
+// profile. Run with ./gradlew loadTest; it is not part of ./gradlew test.
+
+package loadtest;
+
+import com.freshworks.ems.EMSApplication;
+import com.freshworks.ems.EMSConfiguration;
+import io.dropwizard.testing.ConfigOverride;
+import io.dropwizard.testing.ResourceHelpers;
+import io.dropwizard.testing.junit.DropwizardAppRule;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+public class EMSLoadTest {
+    // Writes go through the write-ahead log only when asked for with -Dloadtest.persistence=true
+    @ClassRule
+    public static final DropwizardAppRule<EMSConfiguration> APP = new DropwizardAppRule<>(
+            EMSApplication.class, ResourceHelpers.resourceFilePath("loadtest.yml"),
+            ConfigOverride.config("persistence.enabled", System.getProperty("loadtest.persistence", "false")),
+            ConfigOverride.config("persistence.directory", dataDirectory()));
+
+    @Test
+    public void shouldMeetServiceLevelsUnderLoad() throws Exception {
+        LoadProfile profile = new LoadProfile();
+        LoadGenerator generator = new LoadGenerator("http://localhost:" + APP.getLocalPort(), profile);
+        generator.seed();
+        LoadReport report = generator.run();
+        report.print(System.out);
+        report.writeHistograms();
+        List<String> violations = report.violations();
+        assertTrue("Service levels missed:\n  " + String.join("\n  ", violations), violations.isEmpty());
+    }
+
+    // A fresh one per run, so a persistent run never starts from the state of the one before
+    private static String dataDirectory() {
+        try {
+            return Files.createTempDirectory("ems-loadtest").toString();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
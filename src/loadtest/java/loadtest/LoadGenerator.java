@@ -0,0 +1,287 @@
+// Drives a running server with an open-loop mix of requests and records how long each one took.
+//
+// Open loop: every client thread sends on a fixed schedule whether or not its last request is back, and
+// each latency runs from when the request was due rather than from when it went out. A stall therefore
+// shows up in the latency of every request it held up, instead of only slowing the senders down and
+// vanishing from the percentiles (coordinated omission).
+//
+// Reads and updates go to employees seeded up front and never deleted, so a 404 is always an error. Deletes
+// take employees seeded for them or created during the run.
+
+package loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import org.HdrHistogram.Histogram;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class LoadGenerator {
+    public enum Operation { GET, LIST, POST, PUT, DELETE }
+
+    // Latencies above a minute are recorded as a minute
+    static final long HIGHEST_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int SEED_BATCH_SIZE = 1000;
+    private static final int PAGE_SIZE = 20;
+
+    private final String baseUrl;
+    private final LoadProfile profile;
+    private final ObjectMapper objectMapper = Jackson.newObjectMapper();
+    private final Operation[] operations = Operation.values();
+    private final double[] cumulativeWeights = new double[operations.length];
+    private final List<Integer> departmentIds = new ArrayList<>();
+    private int[] stableIds;
+    private final Queue<Integer> deletableIds = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger names = new AtomicInteger();
+
+    public LoadGenerator(String baseUrl, LoadProfile profile) {
+        this.baseUrl = baseUrl;
+        this.profile = profile;
+        double weight = 0;
+        for (int i = 0; i < operations.length; i++) {
+            weight += profile.getWeightOf(operations[i]);
+            cumulativeWeights[i] = weight;
+        }
+        // HttpURLConnection keeps only 5 idle connections per host by default; every other client thread would
+        // open a new one per request. Read once, when the first connection is made.
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections", String.valueOf(Math.max(5, profile.getThreads())));
+        }
+    }
+
+    // Creates the departments and employees the run works on, outside of any measurement
+    public void seed() throws IOException {
+        for (int i = 0; i < profile.getDepartments(); i++) {
+            Reply reply = send("POST", "/departments", "{\"name\":\"load-department-" + i + "\"}");
+            expect(reply, 201, "create a department");
+            departmentIds.add(objectMapper.readTree(reply.body).get("depId").asInt());
+        }
+        // Enough for every delete the run is expected to send, with some to spare
+        double expectedDeletes = (double) profile.getRate() * (profile.getWarmupSeconds() + profile.getDurationSeconds())
+                                 * profile.getWeightOf(Operation.DELETE);
+        List<Integer> created = createEmployees(profile.getEmployees() + (int) Math.ceil(expectedDeletes * 1.2));
+        stableIds = new int[profile.getEmployees()];
+        for (int i = 0; i < created.size(); i++) {
+            if (i < stableIds.length) {
+                stableIds[i] = created.get(i);
+            }
+            else {
+                deletableIds.add(created.get(i));
+            }
+        }
+    }
+
+    public LoadReport run() throws InterruptedException {
+        int threads = profile.getThreads();
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) * (double) threads / profile.getRate();
+        long startAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long measureFrom = startAt + TimeUnit.SECONDS.toNanos(profile.getWarmupSeconds());
+        long endAt = measureFrom + TimeUnit.SECONDS.toNanos(profile.getDurationSeconds());
+        AtomicLong lastCompletion = new AtomicLong(measureFrom);
+
+        List<Client> clients = new ArrayList<>(threads);
+        List<Thread> clientThreads = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            // Staggered, so the threads do not all send at the same instant
+            Client client = new Client(startAt + (long) (intervalNanos * i / threads), intervalNanos, measureFrom,
+                                       endAt, lastCompletion);
+            Thread thread = new Thread(client, "loadtest-client-" + i);
+            thread.setDaemon(true);
+            clients.add(client);
+            clientThreads.add(thread);
+        }
+        clientThreads.forEach(Thread::start);
+        for (Thread thread : clientThreads) {
+            thread.join();
+        }
+
+        LoadReport report = new LoadReport(profile, (lastCompletion.get() - measureFrom) / 1e9);
+        for (Client client : clients) {
+            for (int i = 0; i < operations.length; i++) {
+                report.add(operations[i], client.latencies[i], client.errors[i]);
+            }
+            report.addSkipped(client.skipped);
+        }
+        return report;
+    }
+
+    private final class Client implements Runnable {
+        private final long firstAt;
+        private final double intervalNanos;
+        private final long measureFrom;
+        private final long endAt;
+        private final AtomicLong lastCompletion;
+        private final Histogram[] latencies = new Histogram[operations.length];
+        private final long[] errors = new long[operations.length];
+        private long skipped;
+
+        Client(long firstAt, double intervalNanos, long measureFrom, long endAt, AtomicLong lastCompletion) {
+            this.firstAt = firstAt;
+            this.intervalNanos = intervalNanos;
+            this.measureFrom = measureFrom;
+            this.endAt = endAt;
+            this.lastCompletion = lastCompletion;
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = new Histogram(HIGHEST_LATENCY_NANOS, 3);
+            }
+        }
+
+        @Override
+        public void run() {
+            for (long request = 0; ; request++) {
+                long dueAt = firstAt + (long) (intervalNanos * request);
+                if (dueAt >= endAt) {
+                    return;
+                }
+                long wait = dueAt - System.nanoTime();
+                while (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                    wait = dueAt - System.nanoTime();
+                }
+                int operation = pickOperation();
+                boolean succeeded;
+                try {
+                    Boolean sent = send(operations[operation]);
+                    if (sent == null) {
+                        skipped++;
+                        continue;
+                    }
+                    succeeded = sent;
+                }
+                catch (IOException e) {
+                    succeeded = false;
+                }
+                long completedAt = System.nanoTime();
+                if (dueAt >= measureFrom) {
+                    latencies[operation].recordValue(Math.min(completedAt - dueAt, HIGHEST_LATENCY_NANOS));
+                    if (!succeeded) {
+                        errors[operation]++;
+                    }
+                    lastCompletion.accumulateAndGet(completedAt, Math::max);
+                }
+            }
+        }
+
+        private int pickOperation() {
+            double pick = ThreadLocalRandom.current().nextDouble();
+            for (int i = 0; i < cumulativeWeights.length - 1; i++) {
+                if (pick < cumulativeWeights[i]) {
+                    return i;
+                }
+            }
+            return cumulativeWeights.length - 1;
+        }
+    }
+
+    // Whether the request got the answer it should, or null when there was nothing to send it for
+    private Boolean send(Operation operation) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int depId = departmentIds.get(random.nextInt(departmentIds.size()));
+        int empId = stableIds[random.nextInt(stableIds.length)];
+        switch (operation) {
+            case GET:
+                return send("GET", "/employees/" + empId, null).status == 200;
+            case LIST:
+                return send("GET", "/departments/" + depId + "/employees?limit=" + PAGE_SIZE, null).status == 200;
+            case POST:
+                Reply created = send("POST", "/employees", employee(depId, random.nextInt(20, 66)));
+                if (created.status != 201) {
+                    return false;
+                }
+                deletableIds.add(objectMapper.readTree(created.body).get("empId").asInt());
+                return true;
+            case PUT:
+                return send("PUT", "/employees/" + empId, employee(depId, null)).status == 200;
+            case DELETE:
+                Integer deletableId = deletableIds.poll();
+                if (deletableId == null) {
+                    return null;
+                }
+                return send("DELETE", "/employees/" + deletableId, null).status == 204;
+            default:
+                throw new IllegalArgumentException("Unknown operation " + operation);
+        }
+    }
+
+    private List<Integer> createEmployees(int count) throws IOException {
+        List<Integer> empIds = new ArrayList<>(count);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (empIds.size() < count) {
+            StringBuilder batch = new StringBuilder("[");
+            for (int i = 0; i < Math.min(SEED_BATCH_SIZE, count - empIds.size()); i++) {
+                batch.append(i == 0 ? "" : ",")
+                     .append(employee(departmentIds.get(random.nextInt(departmentIds.size())), random.nextInt(20, 66)));
+            }
+            Reply reply = send("POST", "/employees/_bulk", batch.append("]").toString());
+            expect(reply, 200, "create employees in bulk");
+            objectMapper.readTree(reply.body).forEach(result -> {
+                if (result.get("code").asInt() == 201) {
+                    empIds.add(result.get("empId").asInt());
+                }
+            });
+        }
+        return empIds;
+    }
+
+    private String employee(int depId, Integer age) {
+        return "{\"depId\":" + depId + ",\"name\":\"load-employee-" + names.incrementAndGet() + "\"" +
+               (age == null ? "" : ",\"age\":" + age) + "}";
+    }
+
+    private static void expect(Reply reply, int status, String action) throws IOException {
+        if (reply.status != status) {
+            throw new IOException("Could not " + action + ": " + reply.status + " " + reply.body);
+        }
+    }
+
+    // Reads the whole response, so the connection goes back to the keep-alive pool
+    private Reply send(String method, String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setRequestProperty("Accept", "application/json");
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        if (in != null) {
+            try (InputStream response = in) {
+                byte[] buffer = new byte[8192];
+                for (int read; (read = response.read(buffer)) != -1; ) {
+                    content.write(buffer, 0, read);
+                }
+            }
+        }
+        return new Reply(status, new String(content.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static final class Reply {
+        final int status;
+        final String body;
+
+        Reply(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+// What a load test run sends and the service levels it has to meet, read from loadtest.* system properties
+// so a run is tuned from the command line, e.g. ./gradlew loadTest -Dloadtest.rate=2000 -Dloadtest.slo.p99=20
+//
+// The mix weighs each operation against the others, e.g. get=60,list=10,post=10,put=15,delete=5.
+
+package loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+public class LoadProfile {
+    private final int rate;
+    private final int threads;
+    private final int warmupSeconds;
+    private final int durationSeconds;
+    private final int departments;
+    private final int employees;
+    private final Map<LoadGenerator.Operation, Integer> mix;
+    private final double p99Millis;
+    private final double p999Millis;
+    private final double minThroughputRatio;
+    private final double maxErrorRatio;
+    private final String reportDirectory;
+
+    public LoadProfile() {
+        rate = Integer.getInteger("loadtest.rate", 200);
+        threads = Integer.getInteger("loadtest.threads", 16);
+        warmupSeconds = Integer.getInteger("loadtest.warmup", 5);
+        durationSeconds = Integer.getInteger("loadtest.duration", 20);
+        departments = Integer.getInteger("loadtest.departments", 20);
+        employees = Integer.getInteger("loadtest.employees", 10_000);
+        mix = parseMix(System.getProperty("loadtest.mix", "get=60,list=10,post=10,put=15,delete=5"));
+        p99Millis = Double.parseDouble(System.getProperty("loadtest.slo.p99", "50"));
+        p999Millis = Double.parseDouble(System.getProperty("loadtest.slo.p999", "200"));
+        minThroughputRatio = Double.parseDouble(System.getProperty("loadtest.slo.throughput", "0.95"));
+        maxErrorRatio = Double.parseDouble(System.getProperty("loadtest.slo.errors", "0.001"));
+        reportDirectory = System.getProperty("loadtest.reportDir", "build/reports/loadtest");
+        if (rate < 1 || threads < 1 || warmupSeconds < 0 || durationSeconds < 1 || departments < 1 || employees < 1) {
+            throw new IllegalArgumentException("loadtest rate, threads, duration, departments and employees must be " +
+                                               "positive and warmup must not be negative");
+        }
+    }
+
+    private static Map<LoadGenerator.Operation, Integer> parseMix(String spec) {
+        Map<LoadGenerator.Operation, Integer> mix = new EnumMap<>(LoadGenerator.Operation.class);
+        for (String part : spec.split(",")) {
+            String[] weight = part.trim().split("=");
+            if (weight.length != 2) {
+                throw new IllegalArgumentException("Invalid loadtest.mix entry: " + part);
+            }
+            int value = Integer.parseInt(weight[1].trim());
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid loadtest.mix weight: " + part);
+            }
+            mix.put(LoadGenerator.Operation.valueOf(weight[0].trim().toUpperCase()), value);
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("loadtest.mix has no operation with a weight");
+        }
+        return mix;
+    }
+
+    // Requests per second across all the client threads
+    public int getRate() {
+        return rate;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public int getDepartments() {
+        return departments;
+    }
+
+    public int getEmployees() {
+        return employees;
+    }
+
+    public Map<LoadGenerator.Operation, Integer> getMix() {
+        return mix;
+    }
+
+    public double getWeightOf(LoadGenerator.Operation operation) {
+        return (double) mix.getOrDefault(operation, 0) / mix.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public double getP999Millis() {
+        return p999Millis;
+    }
+
+    // The share of the requested rate the server has to keep up with
+    public double getMinThroughputRatio() {
+        return minThroughputRatio;
+    }
+
+    public double getMaxErrorRatio() {
+        return maxErrorRatio;
+    }
+
+    public String getReportDirectory() {
+        return reportDirectory;
+    }
+
+    @Override
+    public String toString() {
+        return rate + " req/s from " + threads + " threads for " + durationSeconds + "s after " + warmupSeconds +
+               "s of warmup, mix " + mix;
+    }
+}
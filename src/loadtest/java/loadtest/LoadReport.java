@@ -0,0 +1,129 @@
+// Latencies and errors of the measured part of a load test run, per operation and overall, and the service
+// levels from the profile they missed. Latencies are recorded in nanoseconds and reported in milliseconds.
+
+package loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public class LoadReport {
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final LoadProfile profile;
+    private final double measuredSeconds;
+    private final Map<LoadGenerator.Operation, Histogram> latencies = new EnumMap<>(LoadGenerator.Operation.class);
+    private final Map<LoadGenerator.Operation, Long> errors = new EnumMap<>(LoadGenerator.Operation.class);
+    private final Histogram total = new Histogram(LoadGenerator.HIGHEST_LATENCY_NANOS, 3);
+    private long totalErrors;
+    private long skipped;
+
+    LoadReport(LoadProfile profile, double measuredSeconds) {
+        this.profile = profile;
+        this.measuredSeconds = measuredSeconds;
+    }
+
+    void add(LoadGenerator.Operation operation, Histogram histogram, long operationErrors) {
+        latencies.computeIfAbsent(operation, key -> new Histogram(LoadGenerator.HIGHEST_LATENCY_NANOS, 3))
+                 .add(histogram);
+        errors.merge(operation, operationErrors, Long::sum);
+        total.add(histogram);
+        totalErrors += operationErrors;
+    }
+
+    // Deletes that found nothing left to delete and were not sent
+    void addSkipped(long count) {
+        skipped += count;
+    }
+
+    public double getThroughput() {
+        return measuredSeconds <= 0 ? 0 : total.getTotalCount() / measuredSeconds;
+    }
+
+    public double getErrorRatio() {
+        return total.getTotalCount() == 0 ? 0 : (double) totalErrors / total.getTotalCount();
+    }
+
+    public double getPercentileMillis(double percentile) {
+        return total.getValueAtPercentile(percentile) / NANOS_PER_MILLI;
+    }
+
+    public void print(PrintStream out) {
+        out.println("Load test: " + profile);
+        out.println(String.format(Locale.ROOT, "%-8s %9s %10s %7s %9s %9s %9s %9s %9s",
+                                  "", "requests", "req/s", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        latencies.forEach((operation, histogram) -> {
+            if (histogram.getTotalCount() > 0) {
+                print(out, operation.name(), histogram, errors.get(operation));
+            }
+        });
+        print(out, "ALL", total, totalErrors);
+        if (skipped > 0) {
+            out.println(skipped + " deletes were not sent, there was nothing left to delete");
+        }
+    }
+
+    private void print(PrintStream out, String name, Histogram histogram, long errorCount) {
+        out.println(String.format(Locale.ROOT, "%-8s %9d %10.1f %7d %9.2f %9.2f %9.2f %9.2f %9.2f",
+                                  name, histogram.getTotalCount(),
+                                  measuredSeconds <= 0 ? 0 : histogram.getTotalCount() / measuredSeconds, errorCount,
+                                  histogram.getValueAtPercentile(50) / NANOS_PER_MILLI,
+                                  histogram.getValueAtPercentile(90) / NANOS_PER_MILLI,
+                                  histogram.getValueAtPercentile(99) / NANOS_PER_MILLI,
+                                  histogram.getValueAtPercentile(99.9) / NANOS_PER_MILLI,
+                                  histogram.getMaxValue() / NANOS_PER_MILLI));
+    }
+
+    // One percentile distribution per operation, in the .hgrm format HdrHistogram's plotter reads
+    public void writeHistograms() throws FileNotFoundException {
+        File directory = new File(profile.getReportDirectory());
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new FileNotFoundException("Could not create " + directory);
+        }
+        for (Map.Entry<LoadGenerator.Operation, Histogram> entry : latencies.entrySet()) {
+            writeHistogram(new File(directory, entry.getKey().name().toLowerCase(Locale.ROOT) + ".hgrm"),
+                           entry.getValue());
+        }
+        writeHistogram(new File(directory, "all.hgrm"), total);
+    }
+
+    private static void writeHistogram(File file, Histogram histogram) throws FileNotFoundException {
+        try (PrintStream out = new PrintStream(file)) {
+            histogram.outputPercentileDistribution(out, NANOS_PER_MILLI);
+        }
+    }
+
+    // Every service level of the profile the run missed, empty when it met them all
+    public List<String> violations() {
+        List<String> violations = new ArrayList<>();
+        if (total.getTotalCount() == 0) {
+            violations.add("no request completed");
+            return violations;
+        }
+        if (getPercentileMillis(99) > profile.getP99Millis()) {
+            violations.add(String.format(Locale.ROOT, "p99 latency %.2f ms is above %.2f ms",
+                                         getPercentileMillis(99), profile.getP99Millis()));
+        }
+        if (getPercentileMillis(99.9) > profile.getP999Millis()) {
+            violations.add(String.format(Locale.ROOT, "p99.9 latency %.2f ms is above %.2f ms",
+                                         getPercentileMillis(99.9), profile.getP999Millis()));
+        }
+        double minThroughput = profile.getRate() * profile.getMinThroughputRatio();
+        if (getThroughput() < minThroughput) {
+            violations.add(String.format(Locale.ROOT, "throughput %.1f req/s is below %.1f req/s",
+                                         getThroughput(), minThroughput));
+        }
+        if (getErrorRatio() > profile.getMaxErrorRatio()) {
+            violations.add(String.format(Locale.ROOT, "%d of %d requests failed, more than %.3f%%",
+                                         totalErrors, total.getTotalCount(), profile.getMaxErrorRatio() * 100));
+        }
+        return violations;
+    }
+}
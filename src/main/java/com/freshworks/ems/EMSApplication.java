@@ -1,13 +1,33 @@
 package com.freshworks.ems;
 
+import com.freshworks.ems.cache.ResponseCache;
 import com.freshworks.ems.health.EMSHealthCheck;
+import com.freshworks.ems.health.EmployeeIndexHealthCheck;
+import com.freshworks.ems.health.WriteAheadLogHealthCheck;
+import com.freshworks.ems.model.Employee;
+import com.freshworks.ems.persistence.PersistenceEngine;
+import com.freshworks.ems.persistence.SeedLoader;
+import com.freshworks.ems.resources.ChangeResource;
 import com.freshworks.ems.resources.DepartmentResource;
 import com.freshworks.ems.resources.EmployeeResource;
+import com.freshworks.ems.resources.Representations;
+import com.freshworks.ems.resources.RequestExecutor;
+import com.freshworks.ems.resources.mappers.ChangesExpiredMapper;
+import com.freshworks.ems.resources.mappers.DepartmentNotFoundMapper;
+import com.freshworks.ems.resources.mappers.EmployeeNotFoundMapper;
+import com.freshworks.ems.resources.mappers.InvalidCursorMapper;
+import com.freshworks.ems.resources.mappers.WritesUnavailableMapper;
+import com.freshworks.ems.service.ChangeLog;
 import com.freshworks.ems.service.DepartmentService;
 import com.freshworks.ems.service.EmployeeService;
+import com.freshworks.ems.store.ConcurrentEntityStore;
+import com.freshworks.ems.store.EntityStore;
+import com.freshworks.ems.store.LayeredEmployeeStore;
 import io.dropwizard.Application;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.component.LifeCycle;
 
 public class EMSApplication extends Application<EMSConfiguration> {
     private DepartmentService departmentService;
@@ -23,12 +43,81 @@ public class EMSApplication extends Application<EMSConfiguration> {
     }
 
     @Override
-    public void run(EMSConfiguration configuration, Environment environment){
+    public void run(EMSConfiguration configuration, Environment environment) throws Exception {
         final EMSHealthCheck healthCheck = new EMSHealthCheck("EMS Health Check");
         environment.healthChecks().register("HealthCheck", healthCheck);
-        departmentService = new DepartmentService(new EMSConfiguration().getJsonParser());
-        employeeService = new EmployeeService(departmentService);
-        environment.jersey().register(new EmployeeResource(environment.getValidator(), employeeService));
-        environment.jersey().register(new DepartmentResource(environment.getValidator(), departmentService, employeeService));
+
+        PersistenceEngine persistenceEngine = null;
+        if (configuration.getPersistence().isEnabled()) {
+            persistenceEngine = new PersistenceEngine(configuration.getPersistence(), environment.getObjectMapper());
+        }
+        boolean recovering = persistenceEngine != null && persistenceEngine.hasState();
+        departmentService = new DepartmentService(new ConcurrentEntityStore<>());
+        EntityStore<Employee> employeeStore = configuration.getStore().buildEmployeeStore();
+        LayeredEmployeeStore layeredStore = null;
+        if (persistenceEngine != null && configuration.getPersistence().isMapSnapshot()) {
+            employeeStore = layeredStore = new LayeredEmployeeStore(employeeStore);
+        }
+        employeeService = new EmployeeService(departmentService, employeeStore);
+        departmentService.createEmployeeServiceObject(employeeService);
+        departmentService.registerMetrics(environment.metrics());
+        employeeService.registerMetrics(environment.metrics());
+        environment.healthChecks().register("EmployeeIndexes", new EmployeeIndexHealthCheck(employeeService));
+
+        // Registered ahead of the write-ahead log so a failed log write cannot skip the invalidation
+        ResponseCache responseCache = new ResponseCache(configuration.getCache(), environment.getObjectMapper());
+        responseCache.registerMetrics(environment.metrics());
+        departmentService.addChangeListener(responseCache);
+        employeeService.addChangeListener(responseCache);
+
+        if (!recovering) {
+            // Recovered state already contains the seed, so it is only loaded into an empty instance
+            new SeedLoader(environment.getObjectMapper().getFactory())
+                    .load(configuration.getSeed(), departmentService, employeeService);
+        }
+        if (persistenceEngine != null) {
+            persistenceEngine.open(departmentService, employeeService, layeredStore);
+            environment.lifecycle().manage(persistenceEngine);
+            environment.healthChecks().register("WriteAheadLog",
+                                                new WriteAheadLogHealthCheck(persistenceEngine.getWriteAheadLog()));
+        }
+        // Publishes each write as it is applied, before the write-ahead log has synced it: a write whose sync fails
+        // stays published, just as it stays visible in the listings
+        ChangeLog changeLog = new ChangeLog(configuration.getChanges().getCapacity(),
+                                            configuration.getChanges().getMaxTombstones());
+        departmentService.addChangeListener(changeLog);
+        employeeService.addChangeListener(changeLog);
+        // Stopped ahead of the persistence engine: lifecycle objects stop in reverse order of registration
+        environment.lifecycle().manage(departmentService.getReclaimer());
+        // Looks for orphans through the department index, so only once the employee indexes are built
+        employeeService.indexesBuilt().thenRun(departmentService::reclaimOrphans);
+        // Stopped ahead of the reclaimer and the persistence engine, so requests still running finish before the
+        // final snapshot
+        RequestExecutor requestExecutor = new RequestExecutor(configuration.getExecution());
+        requestExecutor.registerMetrics(environment.metrics());
+        environment.lifecycle().manage(requestExecutor);
+        environment.jersey().register(new EmployeeNotFoundMapper());
+        environment.jersey().register(new DepartmentNotFoundMapper());
+        environment.jersey().register(new InvalidCursorMapper());
+        environment.jersey().register(new ChangesExpiredMapper());
+        environment.jersey().register(new WritesUnavailableMapper());
+        Representations.providers().forEach(environment.jersey()::register);
+        environment.jersey().register(new EmployeeResource(environment.getValidator(), employeeService,
+                                                          environment.getObjectMapper(), responseCache, requestExecutor,
+                                                          changeLog));
+        environment.jersey().register(new DepartmentResource(environment.getValidator(), departmentService, employeeService,
+                                                            responseCache, requestExecutor, changeLog));
+        environment.jersey().register(new ChangeResource(changeLog, environment.getObjectMapper(),
+                                                        configuration.getChanges(),
+                                                        ChangeResource.streamThreads(environment.lifecycle(),
+                                                                                     configuration.getChanges())));
+        // Closed as soon as shutdown starts: Jetty waits for open requests, and an event stream would hold it up
+        // until its next heartbeat
+        environment.lifecycle().addLifeCycleListener(new AbstractLifeCycle.AbstractLifeCycleListener() {
+            @Override
+            public void lifeCycleStopping(LifeCycle event) {
+                changeLog.close();
+            }
+        });
     }
 }
\ No newline at end of file
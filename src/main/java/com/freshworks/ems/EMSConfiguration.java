@@ -1,40 +1,73 @@
 package com.freshworks.ems;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.freshworks.ems.cache.CacheConfiguration;
+import com.freshworks.ems.persistence.PersistenceConfiguration;
+import com.freshworks.ems.persistence.SeedConfiguration;
+import com.freshworks.ems.resources.ExecutionConfiguration;
+import com.freshworks.ems.service.ChangeLogConfiguration;
+import com.freshworks.ems.store.StoreConfiguration;
 import io.dropwizard.Configuration;
-import org.json.simple.parser.JSONParser;
-import java.io.FileReader;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
 
 public class EMSConfiguration extends Configuration {
-    private Object object;
+    @Valid
+    @NotNull
+    @JsonProperty
+    private PersistenceConfiguration persistence = new PersistenceConfiguration();
 
-    public EMSConfiguration() {
+    @Valid
+    @NotNull
+    @JsonProperty
+    private SeedConfiguration seed = new SeedConfiguration();
 
-    }
+    @Valid
+    @NotNull
+    @JsonProperty
+    private CacheConfiguration cache = new CacheConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private StoreConfiguration store = new StoreConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private ExecutionConfiguration execution = new ExecutionConfiguration();
 
-    public Object getJsonParser(){
-        JSONParser jsonParser = new JSONParser();
-        try (FileReader reader = new FileReader("/Users/akpathivada/Desktop/database/departments.json")){
-            object = jsonParser.parse(reader);
-        }
-        catch (Exception e) {
+    @Valid
+    @NotNull
+    @JsonProperty
+    private ChangeLogConfiguration changes = new ChangeLogConfiguration();
+
+    public EMSConfiguration() {
 
-        }
-        return object;
     }
-}
 
+    public PersistenceConfiguration getPersistence() {
+        return persistence;
+    }
 
+    public SeedConfiguration getSeed() {
+        return seed;
+    }
 
+    public CacheConfiguration getCache() {
+        return cache;
+    }
 
+    public StoreConfiguration getStore() {
+        return store;
+    }
 
-/*
- @JsonProperty
-    public String getFilename() {
-        return filename;
+    public ExecutionConfiguration getExecution() {
+        return execution;
     }
 
-    @JsonProperty
-    public void setFilename(String template) {
-        this.filename = filename;
+    public ChangeLogConfiguration getChanges() {
+        return changes;
     }
- */
\ No newline at end of file
+}
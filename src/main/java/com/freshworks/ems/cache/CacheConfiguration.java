@@ -0,0 +1,42 @@
+package com.freshworks.ems.cache;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+import io.dropwizard.util.Size;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class CacheConfiguration {
+    @JsonProperty
+    private boolean enabled = false;
+
+    // Budget for the cached response bodies plus a fixed per-entry overhead
+    @JsonProperty
+    @NotNull
+    private Size maxSize = Size.megabytes(64);
+
+    @JsonProperty
+    @Min(1)
+    private int maxEntries = 100000;
+
+    @JsonProperty
+    @NotNull
+    private Duration ttl = Duration.minutes(5);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Size getMaxSize() {
+        return maxSize;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+}
@@ -0,0 +1,27 @@
+package com.freshworks.ems.cache;
+
+// A serialized 200 response body, plus the next-page cursor for paginated routes and the version its ETag
+// was taken from, so a body older than the version a reader is about to tag is never served under that tag
+public final class CachedResponse {
+    private final byte[] body;
+    private final String nextCursor;
+    private final long version;
+
+    public CachedResponse(byte[] body, String nextCursor, long version) {
+        this.body = body;
+        this.nextCursor = nextCursor;
+        this.version = version;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
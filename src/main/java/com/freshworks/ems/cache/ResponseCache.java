@@ -0,0 +1,246 @@
+// Read-through cache of serialized GET responses, bounded by bytes and entries with LRU eviction and a TTL.
+// Entries are spread over segments, each an access-ordered LinkedHashMap behind its own lock, so a hit only
+// contends with requests that hash to the same segment.
+//
+// Single records are invalidated by key. A reader takes a ticket (its segment's generation) before it reads
+// the store, and its fill is dropped if the segment saw an invalidation in between, so a response read before
+// a write can never land in the cache after that write's invalidation. A department's employee listing is
+// keyed by a version of that department instead: any change to its employees moves it to a new version, and
+// the pages cached under the old one are never asked for again and age out.
+
+package com.freshworks.ems.cache;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.freshworks.ems.model.ChangeEvent;
+import com.freshworks.ems.service.ChangeListener;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ResponseCache implements ChangeListener {
+    private static final int SEGMENTS = 16;
+    // Rough cost of the key, map entry and wrappers on top of the body itself
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final boolean enabled;
+    private final ObjectMapper objectMapper;
+    private final long ttlNanos;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final Map<Integer, Long> departmentVersions = new ConcurrentHashMap<>();
+    private final AtomicLong versionSource = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicInteger entries = new AtomicInteger();
+    private final Meter hits = new Meter();
+    private final Meter misses = new Meter();
+    private final Meter evictions = new Meter();
+
+    public ResponseCache(CacheConfiguration configuration, ObjectMapper objectMapper) {
+        this(configuration.isEnabled(), objectMapper, configuration.getMaxSize().toBytes(),
+             configuration.getMaxEntries(), configuration.getTtl().toNanoseconds());
+    }
+
+    private ResponseCache(boolean enabled, ObjectMapper objectMapper, long maxBytes, int maxEntries, long ttlNanos) {
+        this.enabled = enabled;
+        this.objectMapper = objectMapper;
+        this.ttlNanos = ttlNanos;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(Math.max(1, maxBytes / SEGMENTS), Math.max(1, maxEntries / SEGMENTS));
+        }
+    }
+
+    public static ResponseCache disabled() {
+        return new ResponseCache(false, null, 0, 1, 0);
+    }
+
+    public static String employeeKey(int empId) {
+        return "employees/" + empId;
+    }
+
+    public static String departmentKey(int depId) {
+        return "departments/" + depId;
+    }
+
+    public String departmentEmployeesKey(int depId, String cursor, int limit) {
+        return "departments/" + depId + "/employees@" + departmentVersions.getOrDefault(depId, 0L)
+               + "?cursor=" + cursor + "&limit=" + limit;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void registerMetrics(MetricRegistry metrics) {
+        metrics.register(MetricRegistry.name(ResponseCache.class, "hits"), hits);
+        metrics.register(MetricRegistry.name(ResponseCache.class, "misses"), misses);
+        metrics.register(MetricRegistry.name(ResponseCache.class, "evictions"), evictions);
+        metrics.register(MetricRegistry.name(ResponseCache.class, "hitRatio"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(hits.getOneMinuteRate(), hits.getOneMinuteRate() + misses.getOneMinuteRate());
+            }
+        });
+        metrics.register(MetricRegistry.name(ResponseCache.class, "bytes"), (Gauge<Long>) bytes::get);
+        metrics.register(MetricRegistry.name(ResponseCache.class, "entries"), (Gauge<Integer>) entries::get);
+    }
+
+    public CachedResponse get(String key) {
+        return get(key, 0);
+    }
+
+    // Entries filled before the given version count as misses: their invalidation is just not in yet
+    public CachedResponse get(String key, long minVersion) {
+        if (!enabled) {
+            return null;
+        }
+        CachedResponse response = segmentFor(key).get(key, System.nanoTime());
+        if (response != null && response.getVersion() < minVersion) {
+            response = null;
+        }
+        (response == null ? misses : hits).mark();
+        return response;
+    }
+
+    // Taken before reading the store for a fill
+    public long ticket(String key) {
+        return segmentFor(key).generation();
+    }
+
+    // Serializes the entity and caches it unless the key was invalidated since the ticket was taken
+    public CachedResponse put(String key, long ticket, Object entity, String nextCursor) throws JsonProcessingException {
+        return put(key, ticket, entity, nextCursor, 0);
+    }
+
+    public CachedResponse put(String key, long ticket, Object entity, String nextCursor, long version)
+            throws JsonProcessingException {
+        CachedResponse response = new CachedResponse(objectMapper.writeValueAsBytes(entity), nextCursor, version);
+        if (enabled) {
+            segmentFor(key).put(key, ticket, response, System.nanoTime() + ttlNanos);
+        }
+        return response;
+    }
+
+    public void invalidate(String key) {
+        segmentFor(key).invalidate(key);
+    }
+
+    @Override
+    public void onChange(ChangeEvent event) {
+        // Invalidating here would be too early: the write is not visible yet, so a reader could refill the old state
+    }
+
+    @Override
+    public void afterChange(ChangeEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (event.getEntity() == ChangeEvent.Entity.EMPLOYEE) {
+            invalidate(employeeKey(event.getId()));
+            if (event.getEmployee() != null) {
+                bumpDepartment(event.getEmployee().getDepId());
+            }
+            if (event.getPreviousEmployee() != null) {
+                bumpDepartment(event.getPreviousEmployee().getDepId());
+            }
+        }
+        else {
+            invalidate(departmentKey(event.getId()));
+            bumpDepartment(event.getId());
+        }
+    }
+
+    private void bumpDepartment(Integer depId) {
+        if (depId != null) {
+            departmentVersions.put(depId, versionSource.incrementAndGet());
+        }
+    }
+
+    private Segment segmentFor(String key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static final class Entry {
+        final CachedResponse response;
+        final long size;
+        final long expiresAt;
+
+        Entry(CachedResponse response, long size, long expiresAt) {
+            this.response = response;
+            this.size = size;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final class Segment {
+        private final LinkedHashMap<String, Entry> map = new LinkedHashMap<>(64, 0.75f, true);
+        private final long maxBytes;
+        private final int maxEntries;
+        private long segmentBytes;
+        private long generation;
+
+        Segment(long maxBytes, int maxEntries) {
+            this.maxBytes = maxBytes;
+            this.maxEntries = maxEntries;
+        }
+
+        synchronized long generation() {
+            return generation;
+        }
+
+        synchronized CachedResponse get(String key, long now) {
+            Entry entry = map.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt - now < 0) {
+                map.remove(key);
+                account(-entry.size, -1);
+                evictions.mark();
+                return null;
+            }
+            return entry.response;
+        }
+
+        synchronized void put(String key, long ticket, CachedResponse response, long expiresAt) {
+            long size = ENTRY_OVERHEAD + 2L * key.length() + response.getBody().length;
+            if (ticket != generation || size > maxBytes) {
+                return;
+            }
+            Entry previous = map.put(key, new Entry(response, size, expiresAt));
+            if (previous != null) {
+                account(-previous.size, -1);
+            }
+            account(size, 1);
+            Iterator<Entry> eldest = map.values().iterator();
+            while (segmentBytes > maxBytes || map.size() > maxEntries) {
+                Entry evicted = eldest.next();
+                eldest.remove();
+                account(-evicted.size, -1);
+                evictions.mark();
+            }
+        }
+
+        synchronized void invalidate(String key) {
+            generation++;
+            Entry entry = map.remove(key);
+            if (entry != null) {
+                account(-entry.size, -1);
+            }
+        }
+
+        private void account(long size, int count) {
+            segmentBytes += size;
+            bytes.addAndGet(size);
+            entries.addAndGet(count);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.freshworks.ems.exceptions;
+
+// The changes after a sequence are no longer in the change log, or the sequence was never in it; the consumer
+// has to resync from the listings. Stackless, like the other exceptions answered with a status code.
+public class ChangesExpired extends Exception{
+    private final long sequence;
+
+    public ChangesExpired(long sequence){
+        super(null, null, false, false);
+        this.sequence = sequence;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public String getMessage() {
+        return "Changes after " + sequence + " are no longer available";
+    }
+}
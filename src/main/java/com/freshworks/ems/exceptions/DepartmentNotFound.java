@@ -1,7 +1,24 @@
 package com.freshworks.ems.exceptions;
 
+// Stackless for the same reason as EmployeeNotFound
 public class DepartmentNotFound extends Exception{
+    private final Integer depId;
+
     public DepartmentNotFound(){
+        this(null);
+    }
+
+    public DepartmentNotFound(Integer depId){
+        super(null, null, false, false);
+        this.depId = depId;
+    }
+
+    public Integer getDepId() {
+        return depId;
+    }
 
+    @Override
+    public String getMessage() {
+        return "Department " + depId + " not found";
     }
 }
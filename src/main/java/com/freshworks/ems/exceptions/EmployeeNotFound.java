@@ -1,7 +1,24 @@
 package com.freshworks.ems.exceptions;
 
+// Misses are ordinary traffic, so this carries only the id: no stack trace, and the message is built on demand
 public class EmployeeNotFound extends Exception{
+    private final Integer empId;
+
     public EmployeeNotFound(){
+        this(null);
+    }
+
+    public EmployeeNotFound(Integer empId){
+        super(null, null, false, false);
+        this.empId = empId;
+    }
+
+    public Integer getEmpId() {
+        return empId;
+    }
 
+    @Override
+    public String getMessage() {
+        return "Employee " + empId + " not found";
     }
 }
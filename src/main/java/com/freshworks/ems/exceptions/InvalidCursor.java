@@ -0,0 +1,7 @@
+package com.freshworks.ems.exceptions;
+
+public class InvalidCursor extends Exception{
+    public InvalidCursor(){
+        super("Invalid cursor", null, false, false);
+    }
+}
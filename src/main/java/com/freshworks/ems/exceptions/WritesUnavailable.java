@@ -0,0 +1,10 @@
+package com.freshworks.ems.exceptions;
+
+// Writes are refused until a restart, as the write-ahead log failed to make one durable and any write taken since
+// could be lost the same way. Unchecked, as every write path can meet it; stackless like the other exceptions
+// answered with a status code.
+public class WritesUnavailable extends RuntimeException{
+    public WritesUnavailable(Throwable cause){
+        super("Writes are unavailable: the write-ahead log failed", cause, false, false);
+    }
+}
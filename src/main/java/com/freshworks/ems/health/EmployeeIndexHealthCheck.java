@@ -0,0 +1,32 @@
+package com.freshworks.ems.health;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.freshworks.ems.service.EmployeeService;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+// Unhealthy once the background index build has failed: writes still go through, but listings and searches keep
+// scanning the whole store
+public class EmployeeIndexHealthCheck extends HealthCheck {
+    private final EmployeeService employeeService;
+
+    public EmployeeIndexHealthCheck(EmployeeService employeeService) {
+        this.employeeService = employeeService;
+    }
+
+    @Override
+    protected Result check() {
+        CompletableFuture<Void> built = employeeService.indexesBuilt();
+        if (!built.isDone()) {
+            return Result.healthy("Employee indexes are being built");
+        }
+        try {
+            built.join();
+        }
+        catch (CompletionException e) {
+            return Result.unhealthy(e.getCause());
+        }
+        return Result.healthy("Employee indexes are built");
+    }
+}
@@ -0,0 +1,25 @@
+package com.freshworks.ems.health;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.freshworks.ems.persistence.WriteAheadLog;
+
+import java.io.IOException;
+
+// Unhealthy once a batch of the write-ahead log has failed: reads still work, but writes are refused until a
+// restart
+public class WriteAheadLogHealthCheck extends HealthCheck {
+    private final WriteAheadLog writeAheadLog;
+
+    public WriteAheadLogHealthCheck(WriteAheadLog writeAheadLog) {
+        this.writeAheadLog = writeAheadLog;
+    }
+
+    @Override
+    protected Result check() {
+        IOException failure = writeAheadLog.getFailure();
+        if (failure != null) {
+            return Result.unhealthy(failure);
+        }
+        return Result.healthy("Write-ahead log is accepting writes");
+    }
+}
@@ -0,0 +1,93 @@
+// Running headcount and age totals per department, kept up to date on every write so the stats of a
+// department are read off its totals instead of counted over its employees.
+//
+// Min and max come from the count of employees at each distinct age, which stays as small as the range of
+// ages however many employees there are, so a removal never has to look for the next youngest or oldest.
+
+package com.freshworks.ems.index;
+
+import com.freshworks.ems.model.DepartmentStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class DepartmentStatsIndex {
+    public static final int BUCKET_WIDTH = 10;
+    public static final int BUCKETS = 11;
+
+    private final Map<Integer, Totals> departments = new ConcurrentHashMap<>();
+
+    public void add(Integer depId, Integer age) {
+        departments.compute(depId, (id, totals) -> {
+            Totals departmentTotals = totals == null ? new Totals() : totals;
+            departmentTotals.add(age);
+            return departmentTotals;
+        });
+    }
+
+    public void remove(Integer depId, Integer age) {
+        departments.computeIfPresent(depId, (id, totals) -> totals.remove(age) ? null : totals);
+    }
+
+    // A department without employees has a headcount of 0 and no ages
+    public DepartmentStats get(Integer depId) {
+        Totals totals = departments.get(depId);
+        return totals == null ? new DepartmentStats(depId, 0, null, null, null, histogram(new int[BUCKETS]))
+                              : totals.snapshot(depId);
+    }
+
+    private static int bucketOf(int age) {
+        return Math.min(Math.max(age, 0) / BUCKET_WIDTH, BUCKETS - 1);
+    }
+
+    private static Map<String, Integer> histogram(int[] buckets) {
+        Map<String, Integer> histogram = new LinkedHashMap<>();
+        for (int bucket = 0; bucket < BUCKETS - 1; bucket++) {
+            histogram.put(bucket * BUCKET_WIDTH + "-" + ((bucket + 1) * BUCKET_WIDTH - 1), buckets[bucket]);
+        }
+        histogram.put((BUCKETS - 1) * BUCKET_WIDTH + "+", buckets[BUCKETS - 1]);
+        return histogram;
+    }
+
+    // Written inside the map's compute for its department and read under its own lock
+    private static final class Totals {
+        private int headcount;
+        private int aged;
+        private long ageSum;
+        private final int[] buckets = new int[BUCKETS];
+        private final TreeMap<Integer, Integer> ages = new TreeMap<>();
+
+        synchronized void add(Integer age) {
+            headcount++;
+            if (age == null) {
+                return;
+            }
+            aged++;
+            ageSum += age;
+            buckets[bucketOf(age)]++;
+            ages.merge(age, 1, Integer::sum);
+        }
+
+        // Returns true once the department has no employees left
+        synchronized boolean remove(Integer age) {
+            headcount--;
+            if (age != null) {
+                aged--;
+                ageSum -= age;
+                buckets[bucketOf(age)]--;
+                ages.computeIfPresent(age, (key, count) -> count == 1 ? null : count - 1);
+            }
+            return headcount == 0;
+        }
+
+        synchronized DepartmentStats snapshot(Integer depId) {
+            if (aged == 0) {
+                return new DepartmentStats(depId, headcount, null, null, null, histogram(buckets));
+            }
+            return new DepartmentStats(depId, headcount, ages.firstKey(), ages.lastKey(), (double) ageSum / aged,
+                                       histogram(buckets));
+        }
+    }
+}
@@ -0,0 +1,470 @@
+// Inverted index over the words of employee names and emails, kept up to date on every write, for search
+// as you type. A word is a run of letters and digits, compared in lower case.
+//
+// Each field maps every word to the ids holding it, and every word prefix of one of the PREFIX_LENGTHS to
+// the ids holding a word that starts with it. A prefix of another length is answered by the list of the
+// longest indexed prefix inside it, which holds every match and some ids that are skipped once their record
+// is ranked. Merging the lists of all the words starting with it would be exact, but a short prefix, or
+// "employee1" among numbered addresses, stands for far too many words to merge per request.
+//
+// Matches are ranked, best first: every query word is a whole word of the name, every query word starts a
+// word of the name, every query word is a whole word of the name or email, every query word starts one.
+// Within a rank they are in id order, so a rank and an id are enough to resume a listing.
+
+package com.freshworks.ems.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class SearchIndex {
+    public static final int NAME_WORD = 4;
+    public static final int NAME_PREFIX = 3;
+    public static final int WORD = 2;
+    public static final int PREFIX = 1;
+    public static final int NO_MATCH = 0;
+    // Dense at the short end, where a prefix stands for thousands of words
+    private static final int[] PREFIX_LENGTHS = {1, 2, 3, 4, 6, 9, 12};
+
+    private final Field names = new Field();
+    private final Field emails = new Field();
+
+    // Both add and remove run inside the store's per-id compute, so the two calls for one id never interleave
+    public void add(int id, String name, String email) {
+        names.add(id, name);
+        emails.add(id, email);
+    }
+
+    public void remove(int id, String name, String email) {
+        names.remove(id, name);
+        emails.remove(id, email);
+    }
+
+    // Distinct words, for the metrics
+    public int size() {
+        return names.words.size() + emails.words.size();
+    }
+
+    public static List<String> tokenize(String text) {
+        if (text == null) {
+            return Collections.emptyList();
+        }
+        Set<String> words = new LinkedHashSet<>();
+        String lowerCase = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lowerCase.length(); i++) {
+            boolean wordCharacter = i < lowerCase.length() && Character.isLetterOrDigit(lowerCase.charAt(i));
+            if (wordCharacter && start < 0) {
+                start = i;
+            }
+            else if (!wordCharacter && start >= 0) {
+                words.add(lowerCase.substring(start, i));
+                start = -1;
+            }
+        }
+        return new ArrayList<>(words);
+    }
+
+    // Ranks a record against the query words, NO_MATCH when some word matches neither field
+    public static int rank(List<String> query, String name, String email) {
+        List<String> nameWords = tokenize(name);
+        List<String> emailWords = tokenize(email);
+        boolean nameWord = true;
+        boolean namePrefix = true;
+        boolean word = true;
+        boolean prefix = true;
+        for (String queryWord : query) {
+            boolean inName = nameWords.contains(queryWord);
+            boolean startsName = startsAny(nameWords, queryWord);
+            nameWord &= inName;
+            namePrefix &= startsName;
+            word &= inName || emailWords.contains(queryWord);
+            prefix &= startsName || startsAny(emailWords, queryWord);
+        }
+        return nameWord ? NAME_WORD : namePrefix ? NAME_PREFIX : word ? WORD : prefix ? PREFIX : NO_MATCH;
+    }
+
+    // Ascending ids after the given one that may rank as given; a superset, so callers rank each record.
+    // Every query word has to match, so any one word's ids will do, and the smallest list is walked. Below
+    // the name ranks some word has to match the email, so the email ids of all the words will do as well.
+    public Iterator<Integer> candidates(List<String> query, int rank, int afterId) {
+        Source best = null;
+        for (String queryWord : query) {
+            Source source = rank == NAME_WORD ? names.word(queryWord)
+                          : rank == NAME_PREFIX ? names.prefix(queryWord)
+                          : rank == WORD ? Source.union(names.word(queryWord), emails.word(queryWord))
+                          : Source.union(names.prefix(queryWord), emails.prefix(queryWord));
+            best = best == null || source.estimate < best.estimate ? source : best;
+        }
+        if (rank == WORD || rank == PREFIX) {
+            List<Source> emailSources = new ArrayList<>(query.size());
+            for (String queryWord : query) {
+                emailSources.add(rank == WORD ? emails.word(queryWord) : emails.prefix(queryWord));
+            }
+            Source anyEmail = Source.union(emailSources.toArray(new Source[0]));
+            best = best == null || anyEmail.estimate < best.estimate ? anyEmail : best;
+        }
+        return best == null ? Collections.emptyIterator() : best.idsAfter(afterId);
+    }
+
+    private static boolean startsAny(List<String> words, String prefix) {
+        for (String word : words) {
+            if (word.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Field {
+        private final Map<String, Postings> words = new ConcurrentHashMap<>();
+        private final Map<String, Postings> prefixes = new ConcurrentHashMap<>();
+
+        void add(int id, String text) {
+            List<String> tokens = tokenize(text);
+            for (String word : tokens) {
+                words.compute(word, (key, postings) -> {
+                    postings = postings == null ? new Postings() : postings;
+                    postings.add(id);
+                    return postings;
+                });
+            }
+            for (String prefix : indexedPrefixes(tokens)) {
+                prefixes.compute(prefix, (key, postings) -> {
+                    postings = postings == null ? new Postings() : postings;
+                    postings.add(id);
+                    return postings;
+                });
+            }
+        }
+
+        void remove(int id, String text) {
+            List<String> tokens = tokenize(text);
+            for (String word : tokens) {
+                words.computeIfPresent(word, (key, postings) -> {
+                    postings.remove(id);
+                    return postings.isEmpty() ? null : postings;
+                });
+            }
+            for (String prefix : indexedPrefixes(tokens)) {
+                prefixes.computeIfPresent(prefix, (key, postings) -> {
+                    postings.remove(id);
+                    return postings.isEmpty() ? null : postings;
+                });
+            }
+        }
+
+        Source word(String word) {
+            return Source.of(words.get(word));
+        }
+
+        Source prefix(String prefix) {
+            int indexedLength = 0;
+            for (int length : PREFIX_LENGTHS) {
+                if (length <= prefix.length()) {
+                    indexedLength = length;
+                }
+            }
+            return Source.of(prefixes.get(prefix.substring(0, indexedLength)));
+        }
+
+        private static Set<String> indexedPrefixes(List<String> tokens) {
+            Set<String> indexedPrefixes = new LinkedHashSet<>();
+            for (String word : tokens) {
+                for (int length : PREFIX_LENGTHS) {
+                    if (length <= word.length()) {
+                        indexedPrefixes.add(word.substring(0, length));
+                    }
+                }
+            }
+            return indexedPrefixes;
+        }
+    }
+
+    // Ids of one word or prefix, in sorted int blocks that are copied on every change and published whole, so
+    // readers walk consistent blocks without locking. Most words belong to one or two employees and get a single
+    // block; a list that outgrows it is split into blocks held in a skip list by their first id. New ids are the
+    // largest so far, so appending leaves the last block full and starts a new one.
+    //
+    // Only changed inside its map's compute, so writes to one list never race each other and an add can never
+    // land in a list that a concurrent remove has just unmapped for being empty.
+    private static final class Postings {
+        private static final int BLOCK_SIZE = 128;
+        private static final int[] NO_IDS = new int[0];
+
+        private volatile int[] single = NO_IDS;
+        private volatile ConcurrentSkipListMap<Integer, int[]> blocks;
+        private volatile int size;
+
+        void add(int id) {
+            ConcurrentSkipListMap<Integer, int[]> blocks = this.blocks;
+            if (blocks == null) {
+                int[] ids = insert(single, id);
+                if (ids == null) {
+                    return;
+                }
+                if (ids.length <= BLOCK_SIZE) {
+                    single = ids;
+                }
+                else {
+                    blocks = new ConcurrentSkipListMap<>();
+                    putSplit(blocks, ids, ids[ids.length - 1] == id);
+                    // Published before the single block is dropped, which readers check second
+                    this.blocks = blocks;
+                    single = NO_IDS;
+                }
+                size++;
+                return;
+            }
+            Map.Entry<Integer, int[]> entry = blocks.floorEntry(id);
+            if (entry == null) {
+                entry = blocks.firstEntry();
+            }
+            int[] ids = insert(entry.getValue(), id);
+            if (ids == null) {
+                return;
+            }
+            if (ids.length <= BLOCK_SIZE) {
+                blocks.put(ids[0], ids);
+            }
+            else {
+                putSplit(blocks, ids, ids[ids.length - 1] == id && entry.getKey().equals(blocks.lastKey()));
+            }
+            if (ids[0] != entry.getKey()) {
+                blocks.remove(entry.getKey());
+            }
+            size++;
+        }
+
+        void remove(int id) {
+            ConcurrentSkipListMap<Integer, int[]> blocks = this.blocks;
+            if (blocks == null) {
+                int[] ids = delete(single, id);
+                if (ids != null) {
+                    single = ids;
+                    size--;
+                }
+                return;
+            }
+            Map.Entry<Integer, int[]> entry = blocks.floorEntry(id);
+            int[] ids = entry == null ? null : delete(entry.getValue(), id);
+            if (ids == null) {
+                return;
+            }
+            if (ids.length > 0) {
+                blocks.put(ids[0], ids);
+            }
+            if (ids.length == 0 || ids[0] != entry.getKey()) {
+                blocks.remove(entry.getKey());
+            }
+            size--;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        Iterator<Integer> idsAfter(int afterId) {
+            ConcurrentSkipListMap<Integer, int[]> blocks = this.blocks;
+            if (blocks == null) {
+                return new BlockIterator(Collections.singleton(single).iterator(), afterId);
+            }
+            Integer from = blocks.floorKey(afterId);
+            return new BlockIterator((from == null ? blocks : blocks.tailMap(from, true)).values().iterator(), afterId);
+        }
+
+        // The upper half goes in first, so a reader sees each id at least once; BlockIterator drops repeats
+        private static void putSplit(ConcurrentSkipListMap<Integer, int[]> blocks, int[] ids, boolean appended) {
+            int lowerLength = appended ? ids.length - 1 : ids.length / 2;
+            int[] upper = Arrays.copyOfRange(ids, lowerLength, ids.length);
+            blocks.put(upper[0], upper);
+            blocks.put(ids[0], Arrays.copyOf(ids, lowerLength));
+        }
+
+        // Copies with the id added, or null when it is there already
+        private static int[] insert(int[] ids, int id) {
+            int index = Arrays.binarySearch(ids, id);
+            if (index >= 0) {
+                return null;
+            }
+            index = -index - 1;
+            int[] copy = new int[ids.length + 1];
+            System.arraycopy(ids, 0, copy, 0, index);
+            copy[index] = id;
+            System.arraycopy(ids, index, copy, index + 1, ids.length - index);
+            return copy;
+        }
+
+        // Copies with the id left out, or null when it is not there
+        private static int[] delete(int[] ids, int id) {
+            int index = Arrays.binarySearch(ids, id);
+            if (index < 0) {
+                return null;
+            }
+            int[] copy = new int[ids.length - 1];
+            System.arraycopy(ids, 0, copy, 0, index);
+            System.arraycopy(ids, index + 1, copy, index, copy.length - index);
+            return copy;
+        }
+    }
+
+    // Ascending ids after the given one across a run of blocks, each id once even while a split is under way
+    private static final class BlockIterator implements Iterator<Integer> {
+        private final Iterator<int[]> blocks;
+        private int[] block = NO_BLOCK;
+        private int index;
+        private int last;
+        private boolean hasNext;
+        private int next;
+
+        private static final int[] NO_BLOCK = new int[0];
+
+        BlockIterator(Iterator<int[]> blocks, int afterId) {
+            this.blocks = blocks;
+            this.last = afterId;
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext;
+        }
+
+        @Override
+        public Integer next() {
+            if (!hasNext) {
+                throw new NoSuchElementException();
+            }
+            int id = next;
+            last = id;
+            advance();
+            return id;
+        }
+
+        private void advance() {
+            while (true) {
+                if (index < block.length) {
+                    int id = block[index++];
+                    if (id > last) {
+                        next = id;
+                        hasNext = true;
+                        return;
+                    }
+                }
+                else if (blocks.hasNext()) {
+                    block = blocks.next();
+                    int start = Arrays.binarySearch(block, last);
+                    index = start >= 0 ? start + 1 : -start - 1;
+                }
+                else {
+                    hasNext = false;
+                    return;
+                }
+            }
+        }
+    }
+
+    // Id lists to walk together, with how many ids they hold between them
+    private static final class Source {
+        private static final Source EMPTY = new Source(new Postings[0], 0);
+
+        private final Postings[] postings;
+        private final long estimate;
+
+        private Source(Postings[] postings, long estimate) {
+            this.postings = postings;
+            this.estimate = estimate;
+        }
+
+        static Source of(Postings postings) {
+            return postings == null ? EMPTY : new Source(new Postings[] {postings}, postings.size);
+        }
+
+        static Source union(Source... sources) {
+            List<Postings> postings = new ArrayList<>();
+            long estimate = 0;
+            for (Source source : sources) {
+                Collections.addAll(postings, source.postings);
+                estimate += source.estimate;
+            }
+            return new Source(postings.toArray(new Postings[0]), estimate);
+        }
+
+        Iterator<Integer> idsAfter(int afterId) {
+            if (postings.length == 1) {
+                return postings[0].idsAfter(afterId);
+            }
+            return new Merge(postings, afterId);
+        }
+    }
+
+    // Ascending, duplicate-free merge of several ascending id lists
+    private static final class Merge implements Iterator<Integer> {
+        private final PriorityQueue<Head> heads = new PriorityQueue<>();
+        private Integer next;
+
+        Merge(Postings[] postings, int afterId) {
+            for (Postings list : postings) {
+                Iterator<Integer> ids = list.idsAfter(afterId);
+                if (ids.hasNext()) {
+                    heads.add(new Head(ids.next(), ids));
+                }
+            }
+            next = advance(afterId);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Integer next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Integer id = next;
+            next = advance(id);
+            return id;
+        }
+
+        private Integer advance(int previous) {
+            while (!heads.isEmpty()) {
+                Head head = heads.poll();
+                int id = head.id;
+                if (head.ids.hasNext()) {
+                    heads.add(new Head(head.ids.next(), head.ids));
+                }
+                if (id > previous) {
+                    return id;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Head implements Comparable<Head> {
+        final int id;
+        final Iterator<Integer> ids;
+
+        Head(int id, Iterator<Integer> ids) {
+            this.id = id;
+            this.ids = ids;
+        }
+
+        @Override
+        public int compareTo(Head other) {
+            return Integer.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+// Ordered secondary index of entity ids by an attribute, kept up to date on every write
+// so sorted listings are a walk over the skip list instead of a sort per request.
+
+package com.freshworks.ems.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SortedIndex<K extends Comparable<K>> {
+    private final ConcurrentSkipListSet<Entry<K>> entries = new ConcurrentSkipListSet<>();
+    private final Set<Integer> idsWithoutKey = ConcurrentHashMap.newKeySet();
+    // ConcurrentSkipListSet.size() walks the whole list, so the count is tracked alongside it
+    private final AtomicInteger size = new AtomicInteger();
+
+    public void add(K key, int id) {
+        boolean added = key == null ? idsWithoutKey.add(id) : entries.add(new Entry<>(key, id));
+        if (added) {
+            size.incrementAndGet();
+        }
+    }
+
+    public void remove(K key, int id) {
+        boolean removed = key == null ? idsWithoutKey.remove(id) : entries.remove(new Entry<>(key, id));
+        if (removed) {
+            size.decrementAndGet();
+        }
+    }
+
+    // Ids without a key cannot be placed in the order, the same way a Comparator over them would fail
+    public boolean hasIdsWithoutKey() {
+        return !idsWithoutKey.isEmpty();
+    }
+
+    public List<Integer> ids() {
+        List<Integer> ids = new ArrayList<>();
+        entries.forEach(entry -> ids.add(entry.id));
+        return ids;
+    }
+
+    // Ids ordered after the (key, id) position of a page cursor, or from the start when key is null
+    public Iterator<Integer> idsAfter(K key, int id) {
+        return idsBetween(null, null, key, id);
+    }
+
+    // Ids with a key from the first bound up to but not including the second, ordered after the (key, id)
+    // position of a page cursor. A null bound or cursor key leaves that end open.
+    public Iterator<Integer> idsBetween(K from, K to, K afterKey, int afterId) {
+        NavigableSet<Entry<K>> range = entries;
+        K lowest = from;
+        if (afterKey != null && (from == null || afterKey.compareTo(from) >= 0)) {
+            range = range.tailSet(new Entry<>(afterKey, afterId), false);
+            lowest = afterKey;
+        }
+        else if (from != null) {
+            range = range.tailSet(new Entry<>(from, Integer.MIN_VALUE), true);
+        }
+        if (to != null) {
+            if (lowest != null && lowest.compareTo(to) >= 0) {
+                return Collections.emptyIterator();
+            }
+            range = range.headSet(new Entry<>(to, Integer.MIN_VALUE), false);
+        }
+        return range.stream().map(entry -> entry.id).iterator();
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    static final class Entry<K extends Comparable<K>> implements Comparable<Entry<K>> {
+        final K key;
+        final int id;
+
+        Entry(K key, int id) {
+            this.key = key;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Entry<K> other) {
+            int byKey = key.compareTo(other.key);
+            return byKey != 0 ? byKey : Integer.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+// Outcome of one record of a bulk request, reported at the record's position in the request
+package com.freshworks.ems.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.ws.rs.core.Response;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkItemResult {
+    @JsonProperty
+    private Integer index;
+
+    @JsonProperty
+    private Integer code;
+
+    @JsonProperty
+    private Integer empId;
+
+    @JsonProperty
+    private String message;
+
+    public BulkItemResult() {
+
+    }
+
+    public BulkItemResult(Response.Status status, Integer empId, String message) {
+        this.code = status.getStatusCode();
+        this.empId = empId;
+        this.message = message;
+    }
+
+    public Integer getIndex() {
+        return index;
+    }
+
+    public void setIndex(Integer index) {
+        this.index = index;
+    }
+
+    public Integer getCode() {
+        return code;
+    }
+
+    public Integer getEmpId() {
+        return empId;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,101 @@
+// A single create/update/delete applied by EmployeeService or DepartmentService.
+// Creates and updates carry the full record as it is after the write, so applying a
+// sequence of events is idempotent.
+
+package com.freshworks.ems.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChangeEvent {
+    public enum Entity { EMPLOYEE, DEPARTMENT }
+
+    public enum Operation { CREATE, UPDATE, DELETE }
+
+    @JsonProperty
+    private Entity entity;
+
+    @JsonProperty
+    private Operation operation;
+
+    @JsonProperty
+    private Integer id;
+
+    @JsonProperty
+    private Employee employee;
+
+    @JsonProperty
+    private Department department;
+
+    // The record as it was before the write, for listeners that maintain derived state. Not persisted:
+    // replay only needs the state after each write.
+    @JsonIgnore
+    private Employee previousEmployee;
+
+    @JsonIgnore
+    private Department previousDepartment;
+
+    public ChangeEvent(){
+
+    }
+
+    private ChangeEvent(Entity entity, Operation operation, Integer id, Employee employee, Department department){
+        this.entity = entity;
+        this.operation = operation;
+        this.id = id;
+        this.employee = employee;
+        this.department = department;
+    }
+
+    public static ChangeEvent ofEmployee(Operation operation, Integer empId, Employee employee){
+        return new ChangeEvent(Entity.EMPLOYEE, operation, empId, employee, null);
+    }
+
+    public static ChangeEvent ofEmployee(Operation operation, Integer empId, Employee employee,
+                                         Employee previousEmployee){
+        ChangeEvent changeEvent = ofEmployee(operation, empId, employee);
+        changeEvent.previousEmployee = previousEmployee;
+        return changeEvent;
+    }
+
+    public static ChangeEvent ofDepartment(Operation operation, Integer depId, Department department){
+        return new ChangeEvent(Entity.DEPARTMENT, operation, depId, null, department);
+    }
+
+    public static ChangeEvent ofDepartment(Operation operation, Integer depId, Department department,
+                                           Department previousDepartment){
+        ChangeEvent changeEvent = ofDepartment(operation, depId, department);
+        changeEvent.previousDepartment = previousDepartment;
+        return changeEvent;
+    }
+
+    public Entity getEntity(){
+        return this.entity;
+    }
+
+    public Operation getOperation(){
+        return this.operation;
+    }
+
+    public Integer getId(){
+        return this.id;
+    }
+
+    public Employee getEmployee(){
+        return this.employee;
+    }
+
+    public Department getDepartment(){
+        return this.department;
+    }
+
+    public Employee getPreviousEmployee(){
+        return this.previousEmployee;
+    }
+
+    public Department getPreviousDepartment(){
+        return this.previousDepartment;
+    }
+}
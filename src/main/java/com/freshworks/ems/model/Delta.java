@@ -0,0 +1,41 @@
+// The records changed after a sequence, oldest change first, and the sequence to ask from next time.
+// When hasMore is set the changes were cut at the page limit and the high-water mark is the last one sent.
+
+package com.freshworks.ems.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public class Delta<T> {
+    @JsonProperty
+    private List<RecordChange<T>> changes;
+
+    @JsonProperty
+    private long highWaterMark;
+
+    @JsonProperty
+    private boolean hasMore;
+
+    public Delta() {
+
+    }
+
+    public Delta(List<RecordChange<T>> changes, long highWaterMark, boolean hasMore) {
+        this.changes = changes;
+        this.highWaterMark = highWaterMark;
+        this.hasMore = hasMore;
+    }
+
+    public List<RecordChange<T>> getChanges() {
+        return changes;
+    }
+
+    public long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+}
@@ -2,6 +2,7 @@
 
 package com.freshworks.ems.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.hibernate.validator.constraints.NotEmpty;
 import javax.validation.constraints.Null;
@@ -15,6 +16,10 @@ public class Department {
     @NotEmpty(message = "Dep.name should not be empty")
     private String name;
 
+    // Stamped by DepartmentService on every write
+    @JsonIgnore
+    private long version;
+
     public Department(){
 
     }
@@ -44,6 +49,14 @@ public class Department {
         return this.depId;
     }
 
+    public long getVersion() {
+        return this.version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "{\"depId\":" + depId + ",\"name\":" + name +"}";
@@ -0,0 +1,76 @@
+// Progress of the background reclamation of a deleted department's employees, as reported by /departments/jobs/{jobId}
+package com.freshworks.ems.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class DepartmentDeletionJob {
+    public enum Status { RUNNING, COMPLETED, FAILED }
+
+    private final long jobId;
+    private final Integer depId;
+    private final int total;
+    private final long startedAt;
+    private final AtomicInteger reclaimed = new AtomicInteger();
+    private volatile Status status = Status.RUNNING;
+    private volatile Long finishedAt;
+
+    public DepartmentDeletionJob(long jobId, Integer depId, int total) {
+        this.jobId = jobId;
+        this.depId = depId;
+        this.total = total;
+        this.startedAt = System.currentTimeMillis();
+    }
+
+    @JsonProperty
+    public long getJobId() {
+        return jobId;
+    }
+
+    @JsonProperty
+    public Integer getDepId() {
+        return depId;
+    }
+
+    @JsonProperty
+    public Status getStatus() {
+        return status;
+    }
+
+    // Employees in the department when it was deleted; stragglers created concurrently may push reclaimed past it
+    @JsonProperty
+    public int getTotal() {
+        return total;
+    }
+
+    @JsonProperty
+    public int getReclaimed() {
+        return reclaimed.get();
+    }
+
+    @JsonProperty
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    @JsonProperty
+    public Long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public boolean isFinished() {
+        return status != Status.RUNNING;
+    }
+
+    public void addReclaimed(int count) {
+        reclaimed.addAndGet(count);
+    }
+
+    public void finish(Status status) {
+        this.finishedAt = System.currentTimeMillis();
+        this.status = status;
+    }
+}
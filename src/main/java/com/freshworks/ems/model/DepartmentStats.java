@@ -0,0 +1,66 @@
+// Headcount and age distribution of a department's employees, as reported by /departments/{depId}/stats.
+// Ages are summarised over the employees that have one; the histogram has a bucket per decade, the last open.
+
+package com.freshworks.ems.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Map;
+
+public class DepartmentStats {
+    @JsonProperty
+    private Integer depId;
+
+    @JsonProperty
+    private int headcount;
+
+    @JsonProperty
+    private Integer minAge;
+
+    @JsonProperty
+    private Integer maxAge;
+
+    @JsonProperty
+    private Double meanAge;
+
+    @JsonProperty
+    private Map<String, Integer> ageHistogram;
+
+    public DepartmentStats() {
+
+    }
+
+    public DepartmentStats(Integer depId, int headcount, Integer minAge, Integer maxAge, Double meanAge,
+                           Map<String, Integer> ageHistogram) {
+        this.depId = depId;
+        this.headcount = headcount;
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+        this.meanAge = meanAge;
+        this.ageHistogram = ageHistogram;
+    }
+
+    public Integer getDepId() {
+        return depId;
+    }
+
+    public int getHeadcount() {
+        return headcount;
+    }
+
+    public Integer getMinAge() {
+        return minAge;
+    }
+
+    public Integer getMaxAge() {
+        return maxAge;
+    }
+
+    public Double getMeanAge() {
+        return meanAge;
+    }
+
+    public Map<String, Integer> getAgeHistogram() {
+        return ageHistogram;
+    }
+}
@@ -1,6 +1,7 @@
 // Model of a Employee record
 package com.freshworks.ems.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.hibernate.validator.constraints.NotEmpty;
 import javax.validation.constraints.Null;
@@ -28,6 +29,10 @@ public class Employee {
     @DecimalMin(value = "1")
     private Integer age;
 
+    // Stamped by EmployeeService on every write; drives ETags and is never part of the JSON
+    @JsonIgnore
+    private long version;
+
     public Employee(){
 
     }
@@ -66,6 +71,14 @@ public class Employee {
         this.age = age;
     }
 
+    public Employee(Integer empId, Integer depId, String name, String email, Integer age){
+        this.empId = empId;
+        this.depId = depId;
+        this.name = name;
+        this.email = email;
+        this.age = age;
+    }
+
     public Integer getEmpId(){
         return this.empId;
     }
@@ -82,6 +95,10 @@ public class Employee {
         return this.name;
     }
 
+    public String getEmail(){
+        return this.email;
+    }
+
     public Integer getAge(){
         return this.age;
     }
@@ -89,4 +106,12 @@ public class Employee {
     public Integer getDepId() {
         return this.depId;
     }
+
+    public long getVersion() {
+        return this.version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,71 @@
+// One page of a list endpoint and the cursor of the page after it (null on the last page)
+
+package com.freshworks.ems.model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+public class Page<T> {
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    public Page(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public static int clampLimit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    // A listing asked for without a cursor or a limit comes back whole, as it did before it was paginated
+    public static int listingLimit(String cursor, Integer limit) {
+        if (cursor == null && limit == null) {
+            return Integer.MAX_VALUE;
+        }
+        return clampLimit(limit);
+    }
+
+    // Pulls at most limit items from an ordered iterator, skipping nulls left by concurrent deletes,
+    // so building a page costs O(limit) whatever the size of the collection behind it
+    public static <T> Page<T> collect(Iterator<T> iterator, int limit, Function<T, String> cursorOf) {
+        List<T> items = new ArrayList<>(Math.min(limit, DEFAULT_LIMIT));
+        while (items.size() < limit && iterator.hasNext()) {
+            T item = iterator.next();
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        // Only a page with something visible after it gets a cursor, so a client never follows one to an empty page
+        String nextCursor = null;
+        if (items.size() == limit && hasVisibleNext(iterator)) {
+            nextCursor = cursorOf.apply(items.get(items.size() - 1));
+        }
+        return new Page<>(items, nextCursor);
+    }
+
+    private static <T> boolean hasVisibleNext(Iterator<T> iterator) {
+        while (iterator.hasNext()) {
+            if (iterator.next() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
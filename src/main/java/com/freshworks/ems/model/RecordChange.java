@@ -0,0 +1,48 @@
+// The latest change to one record in a delta: the record as it is now, or a tombstone once it is deleted
+
+package com.freshworks.ems.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RecordChange<T> {
+    @JsonProperty
+    private long sequence;
+
+    @JsonProperty
+    private int id;
+
+    @JsonProperty
+    private boolean deleted;
+
+    @JsonProperty
+    private T record;
+
+    public RecordChange() {
+
+    }
+
+    public RecordChange(long sequence, int id, T record) {
+        this.sequence = sequence;
+        this.id = id;
+        this.deleted = record == null;
+        this.record = record;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public T getRecord() {
+        return record;
+    }
+}
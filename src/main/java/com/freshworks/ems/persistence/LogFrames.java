@@ -0,0 +1,47 @@
+// On-disk framing shared by log segments and snapshots: [length][crc32][payload]
+
+package com.freshworks.ems.persistence;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+final class LogFrames {
+    private static final int MAX_PAYLOAD_LENGTH = 16 * 1024 * 1024;
+
+    private LogFrames() {
+
+    }
+
+    static void write(DataOutputStream out, byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.writeInt(checksum(payload));
+        out.write(payload);
+    }
+
+    // Returns null at the end of the file, and also at a torn or corrupt frame left by a crash mid-write,
+    // since nothing after such a frame was ever acknowledged
+    static byte[] read(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            if (length < 0 || length > MAX_PAYLOAD_LENGTH) {
+                return null;
+            }
+            int expectedChecksum = in.readInt();
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            return checksum(payload) == expectedChecksum ? payload : null;
+        }
+        catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+}
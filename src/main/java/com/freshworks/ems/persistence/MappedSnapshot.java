@@ -0,0 +1,177 @@
+// A binary snapshot mapped read-only into memory and read in place, in the layout SnapshotFormat describes.
+// Opening one costs the same whatever its size: nothing is parsed until a record is asked for, and pages
+// are read from the file by the operating system as they are touched.
+
+package com.freshworks.ems.persistence;
+
+import com.freshworks.ems.model.Department;
+import com.freshworks.ems.model.Employee;
+import com.freshworks.ems.store.EmployeeBaseLayer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+final class MappedSnapshot implements EmployeeBaseLayer {
+    private final Path file;
+    private final int departmentCount;
+    private final int employeeCount;
+    private final int lastDepId;
+    private final int lastEmpId;
+    private final Region departments;
+    private final Region employees;
+    private final Region strings;
+
+    private MappedSnapshot(Path file, int departmentCount, int employeeCount, int lastDepId, int lastEmpId,
+                           Region departments, Region employees, Region strings) {
+        this.file = file;
+        this.departmentCount = departmentCount;
+        this.employeeCount = employeeCount;
+        this.lastDepId = lastDepId;
+        this.lastEmpId = lastEmpId;
+        this.departments = departments;
+        this.employees = employees;
+        this.strings = strings;
+    }
+
+    static MappedSnapshot open(Path file) throws IOException {
+        // Mappings outlive the channel they were made from
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < SnapshotFormat.HEADER_SIZE) {
+                throw new IOException("Snapshot " + file + " is truncated");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, SnapshotFormat.HEADER_SIZE);
+            if (header.getInt() != SnapshotFormat.MAGIC) {
+                throw new IOException(file + " is not a snapshot");
+            }
+            int version = header.getInt();
+            // Version 1 left the id high-water marks as zero padding, so recovery falls back to the highest ids held
+            if (version < 1 || version > SnapshotFormat.VERSION) {
+                throw new IOException("Snapshot " + file + " has unsupported format version " + version);
+            }
+            int departmentCount = header.getInt();
+            int employeeCount = header.getInt();
+            long departmentsOffset = header.getLong();
+            long employeesOffset = header.getLong();
+            long stringsOffset = header.getLong();
+            long stringsLength = header.getLong();
+            int lastDepId = header.getInt();
+            int lastEmpId = header.getInt();
+            if (stringsOffset + stringsLength != channel.size()) {
+                throw new IOException("Snapshot " + file + " is truncated");
+            }
+            return new MappedSnapshot(file, departmentCount, employeeCount, lastDepId, lastEmpId,
+                                      Region.map(channel, departmentsOffset, (long) departmentCount * SnapshotFormat.DEPARTMENT_SIZE),
+                                      Region.map(channel, employeesOffset, (long) employeeCount * SnapshotFormat.EMPLOYEE_SIZE),
+                                      Region.map(channel, stringsOffset, stringsLength));
+        }
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    int departmentCount() {
+        return departmentCount;
+    }
+
+    // Highest ids handed out when the snapshot was taken, including those of records deleted since
+    int lastDepartmentId() {
+        return lastDepId;
+    }
+
+    int lastEmployeeId() {
+        return lastEmpId;
+    }
+
+    // Departments are few, so they are read out whole
+    List<Department> departments() {
+        List<Department> result = new ArrayList<>(departmentCount);
+        for (int index = 0; index < departmentCount; index++) {
+            long position = (long) index * SnapshotFormat.DEPARTMENT_SIZE;
+            result.add(new Department(departments.getInt(position),
+                                      string(departments.getInt(position + 4), departments.getLong(position + 8))));
+        }
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return employeeCount;
+    }
+
+    @Override
+    public int idAt(int index) {
+        return employees.getInt((long) index * SnapshotFormat.EMPLOYEE_SIZE);
+    }
+
+    @Override
+    public Employee employeeAt(int index) {
+        long position = (long) index * SnapshotFormat.EMPLOYEE_SIZE;
+        return new Employee(employees.getInt(position), orNull(employees.getInt(position + 4)),
+                            string(employees.getInt(position + 12), employees.getLong(position + 16)),
+                            string(employees.getInt(position + 24), employees.getLong(position + 32)),
+                            orNull(employees.getInt(position + 8)));
+    }
+
+    private String string(int length, long offset) {
+        return length == SnapshotFormat.NULL_LENGTH ? null
+                                                    : new String(strings.getBytes(offset, length), StandardCharsets.UTF_8);
+    }
+
+    private static Integer orNull(int value) {
+        return value == SnapshotFormat.NULL_INT ? null : value;
+    }
+
+    // A section of the file mapped in windows, as one mapping cannot exceed 2GB. Section offsets of ints and
+    // longs are aligned and the window size is a power of two, so only string bytes can straddle two windows.
+    private static final class Region {
+        private static final int WINDOW_BITS = 30;
+        private static final long WINDOW_SIZE = 1L << WINDOW_BITS;
+
+        private final MappedByteBuffer[] windows;
+
+        private Region(MappedByteBuffer[] windows) {
+            this.windows = windows;
+        }
+
+        static Region map(FileChannel channel, long offset, long length) throws IOException {
+            MappedByteBuffer[] windows = new MappedByteBuffer[(int) ((length + WINDOW_SIZE - 1) >>> WINDOW_BITS)];
+            for (int i = 0; i < windows.length; i++) {
+                long start = i * WINDOW_SIZE;
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + start,
+                                         Math.min(WINDOW_SIZE, length - start));
+            }
+            return new Region(windows);
+        }
+
+        int getInt(long position) {
+            return windows[(int) (position >>> WINDOW_BITS)].getInt((int) (position & (WINDOW_SIZE - 1)));
+        }
+
+        long getLong(long position) {
+            return windows[(int) (position >>> WINDOW_BITS)].getLong((int) (position & (WINDOW_SIZE - 1)));
+        }
+
+        byte[] getBytes(long position, int length) {
+            byte[] bytes = new byte[length];
+            int copied = 0;
+            while (copied < length) {
+                long at = position + copied;
+                // Absolute bulk reads only arrived after Java 8, so each read works on its own view
+                ByteBuffer view = windows[(int) (at >>> WINDOW_BITS)].duplicate();
+                view.position((int) (at & (WINDOW_SIZE - 1)));
+                int chunk = Math.min(length - copied, view.remaining());
+                view.get(bytes, copied, chunk);
+                copied += chunk;
+            }
+            return bytes;
+        }
+    }
+}
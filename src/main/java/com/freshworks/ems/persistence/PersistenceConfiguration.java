@@ -0,0 +1,57 @@
+package com.freshworks.ems.persistence;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class PersistenceConfiguration {
+    @JsonProperty
+    private boolean enabled = false;
+
+    @JsonProperty
+    @NotEmpty
+    private String directory = "data";
+
+    // Upper bound on the records written and fsynced together by one group commit
+    @JsonProperty
+    @Min(1)
+    private int maxBatchSize = 1024;
+
+    @JsonProperty
+    private boolean fsync = true;
+
+    @JsonProperty
+    @NotNull
+    private Duration snapshotInterval = Duration.minutes(5);
+
+    // Serve employees straight from the latest snapshot at boot instead of loading it into the store
+    @JsonProperty
+    private boolean mapSnapshot = true;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public boolean isFsync() {
+        return fsync;
+    }
+
+    public Duration getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    public boolean isMapSnapshot() {
+        return mapSnapshot;
+    }
+}
@@ -0,0 +1,255 @@
+// Local durability for the services: recovery at boot from the latest snapshot plus the log
+// segments after it, group-committed logging of every write, and periodic compaction of the
+// log into a fresh snapshot.
+//
+// Snapshots are written in the binary SnapshotFormat. Given a LayeredEmployeeStore, recovery maps the
+// latest one as the store's base instead of loading it, and the employee indexes are built in the
+// background once the log is replayed, so restart time no longer grows with the employee count.
+
+package com.freshworks.ems.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.freshworks.ems.model.ChangeEvent;
+import com.freshworks.ems.model.Department;
+import com.freshworks.ems.model.Employee;
+import com.freshworks.ems.service.DepartmentService;
+import com.freshworks.ems.service.EmployeeService;
+import com.freshworks.ems.store.LayeredEmployeeStore;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+public class PersistenceEngine implements Managed {
+    private static final Pattern SEGMENT_FILE = Pattern.compile("wal-(\\d+)\\.log");
+    private static final Pattern SNAPSHOT_FILE = Pattern.compile("snapshot-(\\d+)\\.bin");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Logger logger = LoggerFactory.getLogger(PersistenceEngine.class);
+    private final PersistenceConfiguration configuration;
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    private final WriteAheadLog writeAheadLog;
+    private DepartmentService departmentService;
+    private EmployeeService employeeService;
+    private ScheduledExecutorService snapshotScheduler;
+    // Kept on disk while it backs the employee store
+    private volatile Path mappedSnapshot;
+
+    public PersistenceEngine(PersistenceConfiguration configuration, ObjectMapper objectMapper) {
+        this.configuration = configuration;
+        this.directory = Paths.get(configuration.getDirectory());
+        this.objectMapper = objectMapper;
+        this.writeAheadLog = new WriteAheadLog(directory, objectMapper, configuration.getMaxBatchSize(),
+                                               configuration.isFsync());
+    }
+
+    public boolean hasState() throws IOException {
+        return !numberedFiles(SNAPSHOT_FILE).isEmpty() || !numberedFiles(SEGMENT_FILE).isEmpty();
+    }
+
+    // Rebuilds both services from disk, then starts logging their writes
+    public void open(DepartmentService departmentService, EmployeeService employeeService) throws IOException {
+        open(departmentService, employeeService, null);
+    }
+
+    // As above; a binary snapshot is mapped under the given store, which must be the one the employee service
+    // was built with, rather than replayed into it
+    public void open(DepartmentService departmentService, EmployeeService employeeService,
+                     LayeredEmployeeStore employeeStore) throws IOException {
+        this.departmentService = departmentService;
+        this.employeeService = employeeService;
+        Files.createDirectories(directory);
+        boolean freshDirectory = !hasState();
+
+        long startNanos = System.nanoTime();
+        long records = 0;
+        long replayFrom = 0;
+        List<Path> snapshots = numberedPaths(SNAPSHOT_FILE);
+        if (!snapshots.isEmpty()) {
+            Path snapshot = snapshots.get(snapshots.size() - 1);
+            replayFrom = number(SNAPSHOT_FILE, snapshot);
+            records += recover(snapshot, employeeStore);
+        }
+        long nextSegment = replayFrom;
+        for (Long segment : numberedFiles(SEGMENT_FILE)) {
+            if (segment >= replayFrom) {
+                records += replay(directory.resolve(WriteAheadLog.segmentFileName(segment)));
+                nextSegment = segment + 1;
+            }
+        }
+        logger.info("Recovered {} records from {} in {} ms", records, directory,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        employeeService.buildIndexes();
+
+        writeAheadLog.open(nextSegment);
+        departmentService.addChangeListener(writeAheadLog);
+        employeeService.addChangeListener(writeAheadLog);
+        if (freshDirectory) {
+            // Seed data is loaded without going through the log, so capture it before anything else
+            snapshot();
+        }
+    }
+
+    @Override
+    public void start() {
+        long intervalMillis = configuration.getSnapshotInterval().toMilliseconds();
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ems-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            }
+            catch (Exception e) {
+                logger.error("Snapshot of {} failed", directory, e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+            snapshotScheduler.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        snapshot();
+        close();
+    }
+
+    public WriteAheadLog getWriteAheadLog() {
+        return writeAheadLog;
+    }
+
+    // Stops logging once everything already queued is durable
+    public void close() throws InterruptedException {
+        writeAheadLog.close();
+    }
+
+    // Writes the current state to a new snapshot and drops the log it makes redundant.
+    // The segment that was active up to the rotation is kept and replayed after the snapshot: it may hold
+    // events whose store writes were still landing while the snapshot was taken. Every event carries the
+    // full record, so replaying one the snapshot already reflects is harmless.
+    public synchronized void snapshot() throws IOException {
+        long replayFrom = writeAheadLog.rotate().join() - 1;
+        long startNanos = System.nanoTime();
+
+        Path temporary = directory.resolve(snapshotFileName(replayFrom) + ".tmp");
+        long records = SnapshotFormat.write(temporary, departmentService.getAllDepartments(),
+                                            employeeService.iterateEmployees(), departmentService.getLastId(),
+                                            employeeService.getLastId());
+        Files.move(temporary, directory.resolve(snapshotFileName(replayFrom)), StandardCopyOption.ATOMIC_MOVE);
+
+        for (Path snapshot : numberedPaths(SNAPSHOT_FILE)) {
+            if (number(SNAPSHOT_FILE, snapshot) < replayFrom && !snapshot.equals(mappedSnapshot)) {
+                Files.deleteIfExists(snapshot);
+            }
+        }
+        for (Long segment : numberedFiles(SEGMENT_FILE)) {
+            if (segment < replayFrom) {
+                Files.deleteIfExists(directory.resolve(WriteAheadLog.segmentFileName(segment)));
+            }
+        }
+        logger.info("Snapshot of {} records written in {} ms", records,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    private long recover(Path file, LayeredEmployeeStore employeeStore) throws IOException {
+        MappedSnapshot snapshot = MappedSnapshot.open(file);
+        // Deletes logged before the snapshot are gone with their segments, so the snapshot alone knows these
+        departmentService.reserveIds(snapshot.lastDepartmentId());
+        employeeService.reserveIds(snapshot.lastEmployeeId());
+        // Version 1 snapshots carry no high-water marks; their records are sorted by id
+        if (snapshot.size() > 0) {
+            employeeService.reserveIds(snapshot.idAt(snapshot.size() - 1));
+        }
+        for (Department department : snapshot.departments()) {
+            departmentService.replay(
+                    ChangeEvent.ofDepartment(ChangeEvent.Operation.CREATE, department.getDepId(), department));
+        }
+        if (employeeStore != null) {
+            employeeStore.setBase(snapshot);
+            mappedSnapshot = file;
+            // Records are read in place; the secondary indexes are built over them once the log is replayed
+            employeeService.deferIndexing();
+        }
+        else {
+            for (int index = 0; index < snapshot.size(); index++) {
+                Employee employee = snapshot.employeeAt(index);
+                employeeService.replay(
+                        ChangeEvent.ofEmployee(ChangeEvent.Operation.CREATE, employee.getEmpId(), employee));
+            }
+        }
+        return snapshot.departmentCount() + snapshot.size();
+    }
+
+    private long replay(Path file) throws IOException {
+        long records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            byte[] payload;
+            while ((payload = LogFrames.read(in)) != null) {
+                ChangeEvent changeEvent = objectMapper.readValue(payload, ChangeEvent.class);
+                if (changeEvent.getEntity() == ChangeEvent.Entity.DEPARTMENT) {
+                    departmentService.replay(changeEvent);
+                }
+                else {
+                    employeeService.replay(changeEvent);
+                }
+                records++;
+            }
+        }
+        return records;
+    }
+
+    private List<Long> numberedFiles(Pattern pattern) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        for (Path file : numberedPaths(pattern)) {
+            numbers.add(number(pattern, file));
+        }
+        return numbers;
+    }
+
+    // Matching files in ascending order of their number
+    private List<Path> numberedPaths(Pattern pattern) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        List<Path> paths = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> pattern.matcher(file.getFileName().toString()).matches()).forEach(paths::add);
+        }
+        paths.sort(Comparator.comparingLong(file -> number(pattern, file)));
+        return paths;
+    }
+
+    private static long number(Pattern pattern, Path file) {
+        Matcher matcher = pattern.matcher(file.getFileName().toString());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException(file + " does not match " + pattern);
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+
+    private static String snapshotFileName(long replayFrom) {
+        return "snapshot-" + replayFrom + ".bin";
+    }
+}
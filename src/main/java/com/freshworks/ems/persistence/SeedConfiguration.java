@@ -0,0 +1,20 @@
+package com.freshworks.ems.persistence;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+// Optional seed files loaded into an empty instance at startup. Both are JSON arrays.
+public class SeedConfiguration {
+    @JsonProperty
+    private String departmentsFile;
+
+    @JsonProperty
+    private String employeesFile;
+
+    public String getDepartmentsFile() {
+        return departmentsFile;
+    }
+
+    public String getEmployeesFile() {
+        return employeesFile;
+    }
+}
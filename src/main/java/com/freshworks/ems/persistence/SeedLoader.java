@@ -0,0 +1,152 @@
+// Bulk loader for seed files. Reads the JSON token stream record by record and hands each one
+// straight to the services, so memory use does not grow with the file and startup is bound by I/O.
+//
+// Departments: [{"name": "google"}, {"depId": 7, "name": "amazon"}, {"department": {"name": "..."}}, ...]
+// Employees:   [{"depId": 1, "name": "akhil", "email": "akhil@ems.com", "age": 25}, ...]
+
+package com.freshworks.ems.persistence;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.freshworks.ems.model.Department;
+import com.freshworks.ems.model.Employee;
+import com.freshworks.ems.service.DepartmentService;
+import com.freshworks.ems.service.EmployeeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+public class SeedLoader {
+    private final Logger logger = LoggerFactory.getLogger(SeedLoader.class);
+    private final JsonFactory jsonFactory;
+
+    public SeedLoader(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    public void load(SeedConfiguration seed, DepartmentService departmentService,
+                     EmployeeService employeeService) throws IOException {
+        if (seed.getDepartmentsFile() != null) {
+            loadDepartments(Paths.get(seed.getDepartmentsFile()), departmentService);
+        }
+        if (seed.getEmployeesFile() != null) {
+            loadEmployees(Paths.get(seed.getEmployeesFile()), employeeService);
+        }
+    }
+
+    public long loadDepartments(Path file, DepartmentService departmentService) throws IOException {
+        long startNanos = System.nanoTime();
+        long loaded = 0;
+        long rejected = 0;
+        try (JsonParser parser = jsonFactory.createParser(Files.newInputStream(file))) {
+            expectArray(parser, file);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                Department department = readDepartment(parser);
+                if (department.getName() == null || department.getName().isEmpty()) {
+                    rejected++;
+                }
+                else {
+                    departmentService.loadDepartment(department);
+                    loaded++;
+                }
+            }
+        }
+        report("departments", file, loaded, rejected, startNanos);
+        return loaded;
+    }
+
+    public long loadEmployees(Path file, EmployeeService employeeService) throws IOException {
+        long startNanos = System.nanoTime();
+        long loaded = 0;
+        long rejected = 0;
+        try (JsonParser parser = jsonFactory.createParser(Files.newInputStream(file))) {
+            expectArray(parser, file);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                if (employeeService.loadEmployee(readEmployee(parser))) {
+                    loaded++;
+                }
+                else {
+                    rejected++;
+                }
+            }
+        }
+        report("employees", file, loaded, rejected, startNanos);
+        return loaded;
+    }
+
+    private Department readDepartment(JsonParser parser) throws IOException {
+        Department department = new Department();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (field.equals("department") && value == JsonToken.START_OBJECT) {
+                department = readDepartment(parser);
+            }
+            else if (field.equals("depId")) {
+                department.setId(readInteger(parser));
+            }
+            else if (field.equals("name")) {
+                department.setName(parser.getValueAsString());
+            }
+            else {
+                parser.skipChildren();
+            }
+        }
+        return department;
+    }
+
+    private Employee readEmployee(JsonParser parser) throws IOException {
+        Integer empId = null;
+        Integer depId = null;
+        Integer age = null;
+        String name = null;
+        String email = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "empId":
+                    empId = readInteger(parser);
+                    break;
+                case "depId":
+                    depId = readInteger(parser);
+                    break;
+                case "age":
+                    age = readInteger(parser);
+                    break;
+                case "name":
+                    name = parser.getValueAsString();
+                    break;
+                case "email":
+                    email = parser.getValueAsString();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return new Employee(empId, depId, name, email, age);
+    }
+
+    private static Integer readInteger(JsonParser parser) throws IOException {
+        return parser.getCurrentToken() == JsonToken.VALUE_NUMBER_INT ? parser.getIntValue() : null;
+    }
+
+    private static void expectArray(JsonParser parser, Path file) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Seed file " + file + " must contain a JSON array");
+        }
+    }
+
+    private void report(String records, Path file, long loaded, long rejected, long startNanos) {
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        logger.info("Loaded {} {} from {} in {} ms ({} records/s), {} rejected",
+                    loaded, records, file, elapsedMillis, loaded * 1000 / elapsedMillis, rejected);
+    }
+}
@@ -0,0 +1,139 @@
+// Versioned binary snapshot, laid out so it can be mapped and read in place:
+//
+//   header       64 bytes: magic, format version, department and employee counts, section offsets, and the
+//                highest department and employee ids handed out, which a deleted record may have held
+//   departments  16 bytes each: depId, name length, name offset
+//   employees    40 bytes each, ascending empId: empId, depId, age, name length, name offset,
+//                email length, unused, email offset
+//   strings      the UTF-8 bytes of every name and email, offsets relative to the start of this section
+//
+// All values are big-endian. A null depId or age is Integer.MIN_VALUE and a null string has length -1.
+// Every int sits on a 4-byte and every long on an 8-byte boundary of its section.
+
+package com.freshworks.ems.persistence;
+
+import com.freshworks.ems.model.Department;
+import com.freshworks.ems.model.Employee;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Iterator;
+
+final class SnapshotFormat {
+    static final int MAGIC = 0x454D5353;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 64;
+    static final int DEPARTMENT_SIZE = 16;
+    static final int EMPLOYEE_SIZE = 40;
+    static final int NULL_INT = Integer.MIN_VALUE;
+    static final int NULL_LENGTH = -1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private SnapshotFormat() {
+
+    }
+
+    // Writes a complete, fsynced snapshot to the given file and returns how many records it holds.
+    // Strings go to a side file while the records stream out, then are appended behind them.
+    static long write(Path file, Collection<Department> departments, Iterator<Employee> employees, int lastDepId,
+                      int lastEmpId) throws IOException {
+        Path stringsFile = file.resolveSibling(file.getFileName() + ".strings");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             FileChannel stringsChannel = FileChannel.open(stringsFile, StandardOpenOption.CREATE,
+                                                           StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                                                           StandardOpenOption.WRITE)) {
+            StringsSection strings = new StringsSection(new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(stringsChannel), BUFFER_SIZE)));
+            channel.position(HEADER_SIZE);
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+
+            int departmentCount = 0;
+            for (Department department : departments) {
+                out.writeInt(department.getDepId());
+                writeString(out, strings, department.getName(), false);
+                departmentCount++;
+            }
+            int employeeCount = 0;
+            while (employees.hasNext()) {
+                Employee employee = employees.next();
+                out.writeInt(employee.getEmpId());
+                out.writeInt(orNull(employee.getDepId()));
+                out.writeInt(orNull(employee.getAge()));
+                writeString(out, strings, employee.getName(), false);
+                writeString(out, strings, employee.getEmail(), true);
+                employeeCount++;
+            }
+            out.flush();
+            strings.out.flush();
+
+            long departmentsOffset = HEADER_SIZE;
+            long employeesOffset = departmentsOffset + (long) departmentCount * DEPARTMENT_SIZE;
+            long stringsOffset = employeesOffset + (long) employeeCount * EMPLOYEE_SIZE;
+            long stringsLength = strings.length;
+            for (long copied = 0; copied < stringsLength; ) {
+                copied += channel.transferFrom(stringsChannel.position(copied), stringsOffset + copied,
+                                               stringsLength - copied);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(departmentCount).putInt(employeeCount)
+                  .putLong(departmentsOffset).putLong(employeesOffset).putLong(stringsOffset).putLong(stringsLength)
+                  .putInt(lastDepId).putInt(lastEmpId);
+            header.rewind();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+            return departmentCount + employeeCount;
+        }
+        finally {
+            Files.deleteIfExists(stringsFile);
+        }
+    }
+
+    // Length then offset; an email also pads its length out so that the offset stays 8-byte aligned
+    private static void writeString(DataOutputStream out, StringsSection strings, String value, boolean padded)
+            throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            if (padded) {
+                out.writeInt(0);
+            }
+            out.writeLong(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        if (padded) {
+            out.writeInt(0);
+        }
+        out.writeLong(strings.length);
+        strings.out.write(bytes);
+        strings.length += bytes.length;
+    }
+
+    // DataOutputStream counts in an int, which a large tenant's strings outgrow
+    private static final class StringsSection {
+        final DataOutputStream out;
+        long length;
+
+        StringsSection(DataOutputStream out) {
+            this.out = out;
+        }
+    }
+
+    private static int orNull(Integer value) {
+        return value == null ? NULL_INT : value;
+    }
+}
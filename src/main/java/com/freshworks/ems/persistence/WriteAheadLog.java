@@ -0,0 +1,286 @@
+// Append-only log of every change the services apply. Writers only serialise their event and queue it;
+// a single writer thread drains whatever has queued up, appends it and fsyncs once for the whole batch,
+// so under load many writes share one fsync instead of paying for their own. A batch that fails to write
+// abandons its segment, so later batches never land behind a torn frame that replay would stop at. It also puts
+// the log into a failed state in which every new write is refused before it is applied: the writes of the failed
+// batch stay visible though a restart may lose them, so taking more, or a retry of one of them, would only pile up
+// more of the same.
+
+package com.freshworks.ems.persistence;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.freshworks.ems.exceptions.WritesUnavailable;
+import com.freshworks.ems.model.ChangeEvent;
+import com.freshworks.ems.service.ChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class WriteAheadLog implements ChangeListener {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Logger logger = LoggerFactory.getLogger(WriteAheadLog.class);
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    private final int maxBatchSize;
+    private final boolean fsync;
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final Map<ChangeEvent, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    private final Thread writerThread;
+    private volatile boolean running;
+    private volatile IOException failure;
+
+    // Owned by the writer thread once the log is open
+    private long segment;
+    private FileChannel channel;
+    private DataOutputStream out;
+
+    public WriteAheadLog(Path directory, ObjectMapper objectMapper, int maxBatchSize, boolean fsync) {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        this.maxBatchSize = maxBatchSize;
+        this.fsync = fsync;
+        this.writerThread = new Thread(this::writeLoop, "ems-wal-writer");
+        this.writerThread.setDaemon(true);
+    }
+
+    public static String segmentFileName(long segment) {
+        return "wal-" + segment + ".log";
+    }
+
+    public void open(long firstSegment) throws IOException {
+        segment = firstSegment;
+        openSegment();
+        running = true;
+        writerThread.start();
+    }
+
+    @Override
+    public void beforeChange() {
+        IOException failed = failure;
+        if (failed != null) {
+            throw new WritesUnavailable(failed);
+        }
+    }
+
+    @Override
+    public void onChange(ChangeEvent event) {
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(event);
+        }
+        catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        PendingWrite write = new PendingWrite(payload);
+        inFlight.put(event, write.durable);
+        enqueue(write);
+    }
+
+    // Holds the request until the batch carrying its event has been fsynced. The store already shows the write
+    // by then, so when the log fails this throws for a change other readers can see but a restart may lose; the
+    // log refuses further writes from then on, retries of this one included.
+    @Override
+    public void afterChange(ChangeEvent event) {
+        CompletableFuture<Void> durable = inFlight.remove(event);
+        if (durable != null) {
+            durable.join();
+        }
+    }
+
+    // The failure that stopped the log taking writes, or null while it still takes them
+    public IOException getFailure() {
+        return failure;
+    }
+
+    // Ends the current segment after everything queued so far and starts the next one.
+    // Completes with the number of the new segment.
+    public CompletableFuture<Long> rotate() {
+        PendingWrite rotation = new PendingWrite(null);
+        enqueue(rotation);
+        return rotation.rotated;
+    }
+
+    public void close() throws InterruptedException {
+        running = false;
+        writerThread.join();
+        IOException closed = closed();
+        PendingWrite write;
+        while ((write = queue.poll()) != null) {
+            write.fail(closed);
+        }
+        inFlight.values().forEach(durable -> durable.completeExceptionally(closed));
+    }
+
+    // A write queued once the log has stopped may have missed both the writer and the sweep in close(),
+    // so it is failed here rather than left for a caller to wait on forever
+    private void enqueue(PendingWrite write) {
+        queue.add(write);
+        if (!running) {
+            write.fail(closed());
+        }
+    }
+
+    private static IOException closed() {
+        return new IOException("Write-ahead log is closed");
+    }
+
+    private void writeLoop() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                writeBatch(batch);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            finally {
+                batch.clear();
+            }
+        }
+        try {
+            closeSegment();
+        }
+        catch (IOException e) {
+            logger.error("Failed to close write-ahead log segment {}", segment, e);
+        }
+    }
+
+    private void writeBatch(List<PendingWrite> batch) {
+        int acknowledged = 0;
+        try {
+            if (out == null) {
+                openSegment();
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                PendingWrite write = batch.get(i);
+                if (write.isRotation()) {
+                    sync();
+                    acknowledge(batch, acknowledged, i);
+                    acknowledged = i;
+                    closeSegment();
+                    segment++;
+                    openSegment();
+                    write.rotated.complete(segment);
+                    acknowledged = i + 1;
+                }
+                else {
+                    LogFrames.write(out, write.payload);
+                }
+            }
+            sync();
+            acknowledge(batch, acknowledged, batch.size());
+        }
+        catch (IOException e) {
+            logger.error("Failed to write {} records to write-ahead log segment {}",
+                         batch.size() - acknowledged, segment, e);
+            // Set before the writers hear of it, so a retry is already refused. A failed rotation alone leaves no
+            // write behind that is visible but not durable.
+            if (failure == null && hasWrite(batch, acknowledged)) {
+                failure = e;
+                logger.error("Refusing writes until restart, as the failed writes stay visible without being durable");
+            }
+            for (int i = acknowledged; i < batch.size(); i++) {
+                batch.get(i).fail(e);
+            }
+            abandonSegment();
+        }
+    }
+
+    private static boolean hasWrite(List<PendingWrite> batch, int from) {
+        for (int i = from; i < batch.size(); i++) {
+            if (!batch.get(i).isRotation()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Drops whatever is still buffered and moves on to the next segment, which the next batch opens
+    private void abandonSegment() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+        catch (IOException e) {
+            logger.warn("Failed to close abandoned write-ahead log segment {}", segment, e);
+        }
+        out = null;
+        channel = null;
+        segment++;
+    }
+
+    private void acknowledge(List<PendingWrite> batch, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!batch.get(i).isRotation()) {
+                batch.get(i).durable.complete(null);
+            }
+        }
+    }
+
+    private void sync() throws IOException {
+        out.flush();
+        if (fsync) {
+            channel.force(false);
+        }
+    }
+
+    private void openSegment() throws IOException {
+        channel = FileChannel.open(directory.resolve(segmentFileName(segment)),
+                                   StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+    }
+
+    private void closeSegment() throws IOException {
+        if (out != null) {
+            sync();
+            out.close();
+            out = null;
+            channel = null;
+        }
+    }
+
+    private static final class PendingWrite {
+        final byte[] payload;
+        final CompletableFuture<Void> durable = new CompletableFuture<>();
+        final CompletableFuture<Long> rotated = new CompletableFuture<>();
+
+        PendingWrite(byte[] payload) {
+            this.payload = payload;
+        }
+
+        boolean isRotation() {
+            return payload == null;
+        }
+
+        void fail(IOException e) {
+            durable.completeExceptionally(e);
+            rotated.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+// Server-sent events of every write, read from the change log. Each event carries its sequence as its id, so a
+// consumer resumes after the last one it saw by sending it back as Last-Event-ID, as EventSource does when it
+// reconnects, or as ?since=. Without either the stream starts at the next write.
+//
+// Every stream reads the log at its own pace on a thread of its own and the writers never wait for it; a
+// blocking socket write slows a stream down to what its consumer takes. One that falls further behind than the
+// log holds gets a reset event and is closed, to resync from the listings. Only so many streams may be open at
+// once, any more are answered with a 503. The stream threads come from a pool no bigger than that, which the
+// server's lifecycle shuts down.
+//
+// Events go out through a ChunkedOutput: a StreamingOutput would sit in Jersey's response buffer until 8KB of
+// them had piled up.
+
+package com.freshworks.ems.resources;
+
+import com.codahale.metrics.annotation.ExceptionMetered;
+import com.codahale.metrics.annotation.ResponseMetered;
+import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.freshworks.ems.exceptions.ChangesExpired;
+import com.freshworks.ems.model.ApiStatus;
+import com.freshworks.ems.service.ChangeLog;
+import com.freshworks.ems.service.ChangeLogConfiguration;
+import io.dropwizard.lifecycle.setup.LifecycleEnvironment;
+import io.dropwizard.util.Duration;
+import org.glassfish.jersey.server.ChunkedOutput;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+
+@Path("/changes")
+public class ChangeResource {
+    public static final String TEXT_EVENT_STREAM = "text/event-stream";
+    private static final int BATCH_SIZE = 256;
+    private static final long RECONNECT_MILLIS = 5000;
+    private static final int RETRY_AFTER_SECONDS = 5;
+    private static final String THREAD_NAME = "ems-change-stream-";
+
+    private final ChangeLog changeLog;
+    private final ObjectMapper objectMapper;
+    private final Semaphore streams;
+    private final long heartbeatMillis;
+    private final ExecutorService streamThreads;
+
+    public ChangeResource(ChangeLog changeLog, ObjectMapper objectMapper, ChangeLogConfiguration configuration,
+                          ExecutorService streamThreads) {
+        this.changeLog = changeLog;
+        this.objectMapper = objectMapper;
+        this.streams = new Semaphore(configuration.getMaxStreams());
+        this.heartbeatMillis = configuration.getHeartbeat().toMilliseconds();
+        this.streamThreads = streamThreads;
+    }
+
+    // One thread per open stream, up to the cap on streams, shut down with the server.
+    // Streams spend nearly all their time waiting, so virtual threads suit them best.
+    public static ExecutorService streamThreads(LifecycleEnvironment lifecycle, ChangeLogConfiguration configuration) {
+        return lifecycle.executorService(THREAD_NAME + "%d")
+                        .minThreads(0)
+                        .maxThreads(Math.max(1, configuration.getMaxStreams()))
+                        .keepAliveTime(Duration.minutes(1))
+                        .workQueue(new SynchronousQueue<>())
+                        .threadFactory(RequestExecutor.threadFactory(THREAD_NAME, true))
+                        .build();
+    }
+
+    @GET
+    @Timed
+    @ResponseMetered
+    @ExceptionMetered
+    @Produces(TEXT_EVENT_STREAM)
+    public Response streamChanges(@HeaderParam("Last-Event-ID") String lastEventId,
+                                  @QueryParam("since") String since) throws ChangesExpired {
+        String resumeFrom = lastEventId != null ? lastEventId : since;
+        long after;
+        try {
+            after = resumeFrom == null ? changeLog.getLastSequence() : Long.parseLong(resumeFrom.trim());
+        }
+        catch (NumberFormatException e) {
+            return  Response.status(Response.Status.BAD_REQUEST)
+                            .entity(new ApiStatus(Response.Status.BAD_REQUEST.getStatusCode(), "Invalid sequence"))
+                            .type(MediaType.APPLICATION_JSON).build();
+        }
+        changeLog.checkAvailable(after);
+        if (!streams.tryAcquire()) {
+            return tooManyStreams();
+        }
+
+        ChunkedOutput<String> output = new ChunkedOutput<>(String.class);
+        try {
+            streamThreads.execute(() -> {
+                try {
+                    stream(after, output);
+                }
+                catch (IOException e) {
+                    // The consumer went away
+                }
+                finally {
+                    streams.release();
+                    try {
+                        output.close();
+                    }
+                    catch (IOException e) {
+                        // Closed already
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            // A stream that just ended may not have handed its thread back yet
+            streams.release();
+            return tooManyStreams();
+        }
+        // Gzip would hold events back until its buffer fills, so the stream is sent as is
+        return Response.ok(output, TEXT_EVENT_STREAM)
+                       .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                       .header(HttpHeaders.CONTENT_ENCODING, "identity")
+                       .build();
+    }
+
+    private static Response tooManyStreams() {
+        return  Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                        .entity(new ApiStatus(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(),
+                                "Too many change streams open, retry later"))
+                        .type(MediaType.APPLICATION_JSON).build();
+    }
+
+    private void stream(long after, ChunkedOutput<String> output) throws IOException {
+        // Sends the headers straight away, so the consumer knows the stream is open before the first write
+        output.write("retry: " + RECONNECT_MILLIS + "\n\n");
+        long position = after;
+        while (true) {
+            List<ChangeLog.Entry> entries;
+            try {
+                entries = changeLog.read(position, BATCH_SIZE, heartbeatMillis);
+            }
+            catch (ChangesExpired e) {
+                output.write(event("reset", null, objectMapper.writeValueAsString(
+                        new ApiStatus(Response.Status.GONE.getStatusCode(), e.getMessage()))));
+                return;
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (entries.isEmpty()) {
+                // Once the log is closed, the stream ends after the changes it still holds
+                if (changeLog.isClosed()) {
+                    return;
+                }
+                output.write(": keep-alive\n\n");
+                continue;
+            }
+            StringBuilder events = new StringBuilder();
+            for (ChangeLog.Entry entry : entries) {
+                events.append(event(entry.getEvent().getEntity().name().toLowerCase(Locale.ROOT), entry.getSequence(),
+                                    objectMapper.writeValueAsString(entry.getEvent())));
+                position = entry.getSequence();
+            }
+            output.write(events.toString());
+        }
+    }
+
+    // The serialized JSON has no line breaks, so it fits a single data line
+    private static String event(String name, Long id, String data) {
+        return (id == null ? "" : "id: " + id + "\n") + "event: " + name + "\ndata: " + data + "\n\n";
+    }
+}
@@ -2,147 +2,240 @@
 
 package com.freshworks.ems.resources;
 
+import com.codahale.metrics.annotation.ExceptionMetered;
+import com.codahale.metrics.annotation.ResponseMetered;
+import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.freshworks.ems.cache.CachedResponse;
+import com.freshworks.ems.cache.ResponseCache;
+import com.freshworks.ems.exceptions.ChangesExpired;
 import com.freshworks.ems.exceptions.DepartmentNotFound;
+import com.freshworks.ems.exceptions.InvalidCursor;
 import com.freshworks.ems.model.ApiStatus;
+import com.freshworks.ems.model.ChangeEvent;
+import com.freshworks.ems.model.Delta;
 import com.freshworks.ems.model.Department;
+import com.freshworks.ems.model.DepartmentDeletionJob;
+import com.freshworks.ems.model.DepartmentStats;
+import com.freshworks.ems.model.Employee;
+import com.freshworks.ems.model.Page;
+import com.freshworks.ems.service.ChangeLog;
 import com.freshworks.ems.service.DepartmentService;
 import com.freshworks.ems.service.EmployeeService;
 
 import javax.validation.Valid;
 import javax.validation.Validator;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.Optional;
 
 @Path("/departments")
-@Produces(MediaType.APPLICATION_JSON)
-@Consumes(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, Representations.APPLICATION_SMILE, Representations.APPLICATION_CBOR})
+@Consumes({MediaType.APPLICATION_JSON, Representations.APPLICATION_SMILE, Representations.APPLICATION_CBOR})
 public class DepartmentResource {
     private Validator validator;
     private final DepartmentService departmentService;
+    private final ResponseCache responseCache;
+    private final RequestExecutor requestExecutor;
+    private final ChangeLog changeLog;
 
     public DepartmentResource(DepartmentService departmentService){
         this.departmentService = departmentService;
+        this.responseCache = ResponseCache.disabled();
+        this.requestExecutor = RequestExecutor.direct();
+        this.changeLog = new ChangeLog(1);
     }
 
     public DepartmentResource(Validator validator, DepartmentService departmentService, EmployeeService employeeService){
+        this(validator, departmentService, employeeService, ResponseCache.disabled());
+    }
+
+    public DepartmentResource(Validator validator, DepartmentService departmentService, EmployeeService employeeService,
+                              ResponseCache responseCache){
+        this(validator, departmentService, employeeService, responseCache, RequestExecutor.direct());
+    }
+
+    public DepartmentResource(Validator validator, DepartmentService departmentService, EmployeeService employeeService,
+                              ResponseCache responseCache, RequestExecutor requestExecutor){
+        this(validator, departmentService, employeeService, responseCache, requestExecutor, new ChangeLog(1));
+    }
+
+    public DepartmentResource(Validator validator, DepartmentService departmentService, EmployeeService employeeService,
+                              ResponseCache responseCache, RequestExecutor requestExecutor, ChangeLog changeLog){
         this.validator = validator;
         this.departmentService = departmentService;
+        this.responseCache = responseCache;
+        this.requestExecutor = requestExecutor;
+        this.changeLog = changeLog;
         departmentService.createEmployeeServiceObject(employeeService);
     }
 
     @POST
-    public Response createDepartment(@Valid Department department) {
-        try {
-            departmentService.createDepartment(department);
-            return Response.created(new URI("/")).entity(department).build();
-        }
-        catch (Exception e){
-            return  Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                            .entity(new ApiStatus(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
-                                    "Internal Server Error"))
-                            .type(MediaType.APPLICATION_JSON).build();
-        }
+    @Timed
+    @ResponseMetered
+    @ExceptionMetered
+    public Response createDepartment(@Valid Department department) throws URISyntaxException {
+        departmentService.createDepartment(department);
+        return Response.created(new URI("/")).entity(department).build();
     }
 
     @GET
-    public Response getAllDepartments() {
-        try {
-            return Response.ok(departmentService.getAllDepartments()).build();
-        }
-        catch (Exception e){
-            return  Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                            .entity(new ApiStatus(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
-                                         "Internal Server Error"))
-                            .type(MediaType.APPLICATION_JSON).build();
-        }
+    @Timed
+    @ResponseMetered
+    @ExceptionMetered
+    public Response getAllDepartments(@QueryParam("cursor") String cursor,
+                                      @QueryParam("limit") Integer limit,
+                                      @Context Request request) throws InvalidCursor {
+        MediaType type = Representations.negotiate(request);
+        EntityTag tag = EntityTags.of(departmentService.getCollectionVersion(), type);
+        Response notModified = EntityTags.notModified(request, tag);
+        if (notModified != null) {
+            return notModified;
+        }
+        return Pagination.ok(departmentService.getDepartments(cursor, Page.listingLimit(cursor, limit)), tag, type);
     }
 
+    // Departments changed after a sequence, the same way as /employees/changes
     @GET
+    @Timed
+    @ResponseMetered
+    @ExceptionMetered
+    @Path("/changes")
+    public Delta<Department> getChanges(@QueryParam("since") Long since, @QueryParam("limit") Integer limit)
+            throws ChangesExpired {
+        return changeLog.delta(ChangeEvent.Entity.DEPARTMENT, since == null ? changeLog.getLastSequence() : since,
+                               Page.clampLimit(limit), departmentService::findDepartment);
+    }
+
+    @GET
+    @Timed
+    @ResponseMetered
+    @ExceptionMetered
     @Path("/{depId}")
-     public Response getDepartmentById(@PathParam("depId") Integer depId){
-        try {
-            return Response.ok(departmentService.getDepartmentById(depId)).build();
-        }
-        catch (DepartmentNotFound e){
-            StringBuilder message = new StringBuilder("Department ");
-            return  Response.status(Response.Status.NOT_FOUND)
-                            .entity(new ApiStatus(Response.Status.NOT_FOUND.getStatusCode(),
-                                                 message.append(depId).append(" not found").toString()))
-                            .type(MediaType.APPLICATION_JSON).build();
-        }
-        catch (Exception e){
-            return  Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                            .entity(new ApiStatus(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
-                                         "Internal Server Error"))
-                            .type(MediaType.APPLICATION_JSON).build();
-        }
+    public Response getDepartmentById(@PathParam("depId") Integer depId, @Context Request request)
+            throws DepartmentNotFound, JsonProcessingException {
+        String key = ResponseCache.departmentKey(depId);
+        long ticket = responseCache.ticket(key);
+        Department department = departmentService.getDepartmentById(depId);
+        MediaType type = Representations.negotiate(request);
+        EntityTag tag = EntityTags.of(department.getVersion(), type);
+        Response notModified = EntityTags.notModified(request, tag);
+        if (notModified != null) {
+            return notModified;
+        }
+        // The cache holds JSON only
+        if (!responseCache.isEnabled() || !Representations.isJson(type)) {
+            return Response.ok(department, type).tag(tag).build();
+        }
+        CachedResponse cached = responseCache.get(key, department.getVersion());
+        if (cached == null) {
+            cached = responseCache.put(key, ticket, department, null, department.getVersion());
+        }
+        return Response.ok(cached.getBody(), MediaType.APPLICATION_JSON).tag(tag).build();
     }
 
+    // Headcount and age distribution of every department, for dashboards that would otherwise list them all
     @GET
-    @Path("/{depId}/employees")
-    public Response getAllEmployees(@PathParam("depId")Integer depId) throws Exception {
-        try {
-            return Response.ok(departmentService.getEmpsOfDepartment(depId)).build();
-        }
-        catch (DepartmentNotFound e){
-            StringBuilder message = new StringBuilder("Department ");
-            return  Response.status(Response.Status.NOT_FOUND)
-                            .entity(new ApiStatus(Response.Status.NOT_FOUND.getStatusCode(),
-                                    message.append(depId).append(" not found").toString()))
-                            .type(MediaType.APPLICATION_JSON).build();
-        }
-        catch (Exception e){
-            return  Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                            .entity(new ApiStatus(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
-                                         "Internal Server Error"))
-                            .type(MediaType.APPLICATION_JSON).build();
-        }
+    @Timed
+    @ResponseMetered
+    @ExceptionMetered
+    @Path("/stats")
+    public List<DepartmentStats> getAllDepartmentStats() {
+        return departmentService.getAllDepartmentStats();
     }
 
+    @GET
+    @Timed
+    @ResponseMetered
+    @ExceptionMetered
+    @Path("/{depId}/stats")
+    public DepartmentStats getDepartmentStats(@PathParam("depId") Integer depId) throws DepartmentNotFound {
+        return departmentService.getDepartmentStats(depId);
+    }
 
+    @GET
+    @Timed
+    @ResponseMetered
+    @ExceptionMetered
+    @Path("/{depId}/employees")
+    public Response getAllEmployees(@PathParam("depId")Integer depId, @QueryParam("cursor") String cursor,
+                                    @QueryParam("limit") Integer limit, @Context Request request)
+            throws DepartmentNotFound, InvalidCursor, JsonProcessingException {
+        int pageLimit = Page.listingLimit(cursor, limit);
+        // The listing only changes with the employees in it, so any employee write moves the tag on
+        long version = departmentService.getEmployeesVersion();
+        MediaType type = Representations.negotiate(request);
+        EntityTag tag = EntityTags.of(version, type);
+        departmentService.getDepartmentById(depId);
+        Response notModified = EntityTags.notModified(request, tag);
+        if (notModified != null) {
+            return notModified;
+        }
+        if (!responseCache.isEnabled() || !Representations.isJson(type)) {
+            return Pagination.ok(departmentService.getEmpsOfDepartment(depId, cursor, pageLimit), tag, type);
+        }
+        String key = responseCache.departmentEmployeesKey(depId, cursor, pageLimit);
+        CachedResponse cached = responseCache.get(key);
+        if (cached == null) {
+            long ticket = responseCache.ticket(key);
+            Page<Employee> page = departmentService.getEmpsOfDepartment(depId, cursor, pageLimit);
+            cached = responseCache.put(key, ticket, page.getItems(), page.getNextCursor(), version);
+        }
+        // A page cached under this department's current version holds what a fresh read would, so it goes out with
+        // the same tag as one
+        return Pagination.ok(cached, tag);
+    }
 
     @DELETE
+    @Timed
+    @ResponseMetered
+    @ExceptionMetered
     @Path("/{depId}")
-    public Response deleteDepartment(@PathParam("depId") Integer depId) {
-        try{
-             departmentService.removeDepartment(depId);
-             return Response.noContent().build();
+    public void deleteDepartment(@PathParam("depId") Integer depId, @Suspended AsyncResponse asyncResponse) {
+        requestExecutor.execute(asyncResponse, () -> delete(depId));
+    }
+
+    private Response delete(Integer depId) throws DepartmentNotFound, URISyntaxException {
+        Optional<DepartmentDeletionJob> job = departmentService.deleteDepartment(depId);
+        if (!job.isPresent()) {
+            return Response.noContent().build();
         }
-        catch (DepartmentNotFound e){
-            StringBuilder message = new StringBuilder("Department ");
+        // The department is already gone; its employees are still being reclaimed
+        return Response.accepted(job.get()).location(new URI("/departments/jobs/" + job.get().getJobId())).build();
+    }
+
+    @GET
+    @Timed
+    @ResponseMetered
+    @ExceptionMetered
+    @Path("/jobs/{jobId}")
+    public Response getDeletionJob(@PathParam("jobId") Long jobId) {
+        Optional<DepartmentDeletionJob> job = departmentService.findDeletionJob(jobId);
+        if (!job.isPresent()) {
             return  Response.status(Response.Status.NOT_FOUND)
                             .entity(new ApiStatus(Response.Status.NOT_FOUND.getStatusCode(),
-                                                  message.append(depId).append(" not found").toString()))
-                            .type(MediaType.APPLICATION_JSON).build();
-        }
-        catch (Exception e){
-            return  Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                            .entity(new ApiStatus(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
-                                                "Internal Server Error"))
+                                    "Job " + jobId + " not found"))
                             .type(MediaType.APPLICATION_JSON).build();
         }
+        return Response.ok(job.get()).build();
     }
 
     @PUT
+    @Timed
+    @ResponseMetered
+    @ExceptionMetered
     @Path("/{depId}/" )
-    public Response updateDepartment(@PathParam("depId") Integer depId, @Valid Department department) {
-        try {
-            return Response.ok(departmentService.updateDepartment(depId, department)).entity(department).build();
-        }
-        catch (DepartmentNotFound e) {
-            StringBuilder message = new StringBuilder("Department ");
-            return  Response.status(Response.Status.NOT_FOUND)
-                            .entity(new ApiStatus(Response.Status.NOT_FOUND.getStatusCode(),
-                                                    message.append(depId).append(" not found").toString()))
-                            .type(MediaType.APPLICATION_JSON).build();
-        }
-        catch (Exception e) {
-            return  Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                            .entity(new ApiStatus(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
-                                         "Internal Server Error"))
-                            .type(MediaType.APPLICATION_JSON).build();
-        }
+    public Response updateDepartment(@PathParam("depId") Integer depId,
+                                     @Valid Department department) throws DepartmentNotFound {
+        return Response.ok(departmentService.updateDepartment(depId, department)).entity(department).build();
     }
 }
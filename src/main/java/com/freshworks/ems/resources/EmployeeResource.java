@@ -2,59 +2,235 @@
 
 package com.freshworks.ems.resources;
 
+import com.codahale.metrics.annotation.ExceptionMetered;
+import com.codahale.metrics.annotation.ResponseMetered;
+import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.freshworks.ems.cache.CachedResponse;
+import com.freshworks.ems.cache.ResponseCache;
+import com.freshworks.ems.exceptions.ChangesExpired;
 import com.freshworks.ems.exceptions.DepartmentNotFound;
 import com.freshworks.ems.exceptions.EmployeeNotFound;
+import com.freshworks.ems.exceptions.InvalidCursor;
 import com.freshworks.ems.model.ApiStatus;
+import com.freshworks.ems.model.BulkItemResult;
+import com.freshworks.ems.model.ChangeEvent;
+import com.freshworks.ems.model.Delta;
 import com.freshworks.ems.model.Employee;
+import com.freshworks.ems.model.Page;
+import com.freshworks.ems.service.ChangeLog;
+import com.freshworks.ems.service.EmployeeFilter;
 import com.freshworks.ems.service.EmployeeService;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.jersey.validation.Validators;
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
 import javax.validation.Validator;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.function.Function;
 
 @Path("/employees")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, Representations.APPLICATION_SMILE, Representations.APPLICATION_CBOR})
+@Consumes({MediaType.APPLICATION_JSON, Representations.APPLICATION_SMILE, Representations.APPLICATION_CBOR})
 public class EmployeeResource {
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+    private static final int EXPORT_FLUSH_INTERVAL = 1000;
+    private static final int MAX_BULK_SIZE = 10000;
+
     private Validator validator;
     private final EmployeeService employeeService ;
+    private final ObjectMapper objectMapper;
+    private final ResponseCache responseCache;
+    private final RequestExecutor requestExecutor;
+    private final ChangeLog changeLog;
 
     public EmployeeResource(EmployeeService employeeService){
-        this.employeeService = employeeService;
+        this(null, employeeService, Jackson.newObjectMapper());
     }
 
     public EmployeeResource(Validator validator, EmployeeService employeeService){
-        this.validator = validator;
+        this(validator, employeeService, Jackson.newObjectMapper());
+    }
+
+    public EmployeeResource(Validator validator, EmployeeService employeeService, ObjectMapper objectMapper){
+        this(validator, employeeService, objectMapper, ResponseCache.disabled());
+    }
+
+    public EmployeeResource(Validator validator, EmployeeService employeeService, ObjectMapper objectMapper,
+                            ResponseCache responseCache){
+        this(validator, employeeService, objectMapper, responseCache, RequestExecutor.direct());
+    }
+
+    public EmployeeResource(Validator validator, EmployeeService employeeService, ObjectMapper objectMapper,
+                            ResponseCache responseCache, RequestExecutor requestExecutor){
+        this(validator, employeeService, objectMapper, responseCache, requestExecutor, new ChangeLog(1));
+    }
+
+    public EmployeeResource(Validator validator, EmployeeService employeeService, ObjectMapper objectMapper,
+                            ResponseCache responseCache, RequestExecutor requestExecutor, ChangeLog changeLog){
+        this.validator = validator == null ? Validators.newValidator() : validator;
         this.employeeService = employeeService;
+        this.objectMapper = objectMapper;
+        this.responseCache = responseCache;
+        this.requestExecutor = requestExecutor;
+        this.changeLog = changeLog;
     }
     
     @POST
-    public Response createEmployee(@Valid Employee employee){
+    @Timed
+    @ResponseMetered
+    @ExceptionMetered
+    public Response createEmployee(@Valid Employee employee) throws URISyntaxException {
         try {
             employeeService.createEmployee(employee);
             return Response.created(new URI("/employees/")).entity(employee).build();
         }
-        catch (DepartmentNotFound exp){
-            StringBuilder message = new StringBuilder("Department ");
+        catch (DepartmentNotFound e){
+            return departmentNotExists(e);
+        }
+    }
+
+    // Bulk endpoints validate every record up front and apply the valid ones as one batch. The response is
+    // always 200 with one result per record, in request order; a rejected record does not fail the others.
+    @POST
+    @Timed
+    @ResponseMetered
+    @ExceptionMetered
+    @Path("/_bulk")
+    public void createEmployees(List<Employee> employees, @Suspended AsyncResponse asyncResponse) {
+        requestExecutor.execute(asyncResponse, () -> applyBulk(employees, false, employeeService::createEmployees));
+    }
+
+    @PUT
+    @Timed
+    @ResponseMetered
+    @ExceptionMetered
+    @Path("/_bulk")
+    public void updateEmployees(List<Employee> employees, @Suspended AsyncResponse asyncResponse) {
+        requestExecutor.execute(asyncResponse, () -> applyBulk(employees, true, employeeService::updateEmployees));
+    }
+
+    @POST
+    @Timed
+    @ResponseMetered
+    @ExceptionMetered
+    @Path("/_bulk/delete")
+    public void deleteEmployees(List<Integer> empIds, @Suspended AsyncResponse asyncResponse) {
+        requestExecutor.execute(asyncResponse, () -> deleteBulk(empIds));
+    }
+
+    private Response deleteBulk(List<Integer> empIds) {
+        Response rejected = checkBulkSize(empIds);
+        if (rejected != null) {
+            return rejected;
+        }
+        List<BulkItemResult> results = employeeService.deleteEmployees(empIds);
+        for (int i = 0; i < results.size(); i++) {
+            results.get(i).setIndex(i);
+        }
+        return Response.ok(results).build();
+    }
+
+    private Response applyBulk(List<Employee> employees, boolean update,
+                               Function<List<Employee>, List<BulkItemResult>> operation) {
+        Response rejected = checkBulkSize(employees);
+        if (rejected != null) {
+            return rejected;
+        }
+        BulkItemResult[] results = new BulkItemResult[employees.size()];
+        List<Employee> accepted = new ArrayList<>(employees.size());
+        List<Integer> positions = new ArrayList<>(employees.size());
+        for (int i = 0; i < employees.size(); i++) {
+            String violations = violations(employees.get(i), update);
+            if (violations == null) {
+                accepted.add(employees.get(i));
+                positions.add(i);
+            }
+            else {
+                Integer empId = employees.get(i) == null ? null : employees.get(i).getEmpId();
+                results[i] = new BulkItemResult(Response.Status.BAD_REQUEST, empId, violations);
+            }
+        }
+        List<BulkItemResult> applied = operation.apply(accepted);
+        for (int i = 0; i < applied.size(); i++) {
+            results[positions.get(i)] = applied.get(i);
+        }
+        for (int i = 0; i < results.length; i++) {
+            results[i].setIndex(i);
+        }
+        return Response.ok(Arrays.asList(results)).build();
+    }
+
+    private static Response checkBulkSize(List<?> records) {
+        if (records == null || records.isEmpty() || records.size() > MAX_BULK_SIZE) {
             return  Response.status(Response.Status.BAD_REQUEST)
                             .entity(new ApiStatus(Response.Status.BAD_REQUEST.getStatusCode(),
-                                    message.append(employee.getDepId()).append(" not exists").toString()))
+                                    "Bulk requests take between 1 and " + MAX_BULK_SIZE + " records"))
                             .type(MediaType.APPLICATION_JSON).build();
         }
-        catch (Exception ex){
-            return  Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                            .entity(new ApiStatus(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
-                                         "Internal Server Error"))
-                            .type(MediaType.APPLICATION_JSON).build();
+        return null;
+    }
+
+    // Same constraints as the single-record endpoints, except that updates name the employee in the body
+    private String violations(Employee employee, boolean update) {
+        if (employee == null) {
+            return "Record should not be null";
         }
+        if (update && employee.getEmpId() == null) {
+            return "Employee Id should be given";
+        }
+        StringJoiner violations = new StringJoiner(", ");
+        for (ConstraintViolation<Employee> violation : validator.validate(employee)) {
+            String property = violation.getPropertyPath().toString();
+            if (!(update && property.equals("empId"))) {
+                violations.add(property + " " + violation.getMessage());
+            }
+        }
+        return violations.length() == 0 ? null : violations.toString();
     }
 
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response getAllEmployees(@DefaultValue("") @QueryParam("value") String attribute) {
+    @Timed
+    @ResponseMetered
+    @ExceptionMetered
+    public Response getAllEmployees(@DefaultValue("") @QueryParam("value") String attribute,
+                                    @QueryParam("depId") Integer depId,
+                                    @QueryParam("minAge") Integer minAge,
+                                    @QueryParam("maxAge") Integer maxAge,
+                                    @QueryParam("namePrefix") String namePrefix,
+                                    @QueryParam("cursor") String cursor,
+                                    @QueryParam("limit") Integer limit,
+                                    @Context Request request) throws InvalidCursor {
+        // Read before the page, so the tag is never newer than the data it goes out with
+        MediaType type = Representations.negotiate(request);
+        EntityTag tag = EntityTags.of(employeeService.getCollectionVersion(), type);
+        Response notModified = EntityTags.notModified(request, tag);
+        if (notModified != null) {
+            return notModified;
+        }
         try {
-            return Response.ok(employeeService.getAllEmployees(attribute)).build();
+            EmployeeFilter filter = new EmployeeFilter(depId, minAge, maxAge, namePrefix);
+            return Pagination.ok(employeeService.getEmployees(attribute, filter, cursor,
+                                                              Page.listingLimit(cursor, limit)), tag, type);
         }
         catch (IllegalArgumentException e) {
             return  Response.status(Response.Status.NOT_FOUND)
@@ -63,82 +239,150 @@ public class EmployeeResource {
                             .type(MediaType.APPLICATION_JSON)
                             .build();
         }
-        catch (Exception e){
-            return  Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                            .entity(new ApiStatus(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
-                                    "Internal Server Error"))
-                            .type(MediaType.APPLICATION_JSON).build();
-        }
     }
 
+    // Search as you type over names and emails, best matches first, paginated like the other listings
     @GET
-    @Path("/{empId}")
-    public Response getEmployeeById(@PathParam("empId") Integer empId) {
+    @Timed
+    @ResponseMetered
+    @ExceptionMetered
+    @Path("/search")
+    public Response searchEmployees(@QueryParam("q") String text,
+                                    @QueryParam("cursor") String cursor,
+                                    @QueryParam("limit") Integer limit,
+                                    @Context Request request) throws InvalidCursor {
+        MediaType type = Representations.negotiate(request);
+        EntityTag tag = EntityTags.of(employeeService.getCollectionVersion(), type);
+        Response notModified = EntityTags.notModified(request, tag);
+        if (notModified != null) {
+            return notModified;
+        }
         try {
-            return Response.ok(employeeService.getEmployeeById(empId)).build();
+            return Pagination.ok(employeeService.searchEmployees(text, cursor, Page.clampLimit(limit)), tag, type);
         }
-        catch (EmployeeNotFound e) {
-            StringBuilder message = new StringBuilder("Employee ");
-            return  Response.status(Response.Status.NOT_FOUND)
-                            .entity(new ApiStatus(Response.Status.NOT_FOUND.getStatusCode(),
-                                    message.append(empId).append(" not found").toString()))
+        catch (IllegalArgumentException e) {
+            return  Response.status(Response.Status.BAD_REQUEST)
+                            .entity(new ApiStatus(Response.Status.BAD_REQUEST.getStatusCode(),
+                                    "Search text should contain a letter or digit"))
                             .type(MediaType.APPLICATION_JSON).build();
         }
-        catch (Exception e) {
-             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                            .entity(new ApiStatus(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
-                                         "Internal Server Error"))
+    }
+
+    // Employees changed after a sequence, for clients that poll rather than hold /changes open. Without a
+    // sequence only the high-water mark comes back, for a client to take before it lists everything.
+    @GET
+    @Timed
+    @ResponseMetered
+    @ExceptionMetered
+    @Path("/changes")
+    public Delta<Employee> getChanges(@QueryParam("since") Long since, @QueryParam("limit") Integer limit)
+            throws ChangesExpired {
+        return changeLog.delta(ChangeEvent.Entity.EMPLOYEE, since == null ? changeLog.getLastSequence() : since,
+                               Page.clampLimit(limit), employeeService::findEmployee);
+    }
+
+    // Full dump written record by record straight from the store, as a JSON array or newline-delimited JSON,
+    // so memory stays constant however many employees there are. The dump is written by the thread that resumes
+    // the response, so it ties up a request executor thread rather than a Jetty one.
+    @GET
+    @Timed
+    @ResponseMetered
+    @ExceptionMetered
+    @Path("/export")
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_NDJSON})
+    public void exportEmployees(@DefaultValue("json") @QueryParam("format") String format,
+                                @Suspended AsyncResponse asyncResponse) {
+        requestExecutor.execute(asyncResponse, () -> export(format));
+    }
+
+    private Response export(String format) {
+        final boolean ndjson;
+        if (format.equals("json")) {
+            ndjson = false;
+        }
+        else if (format.equals("ndjson")) {
+            ndjson = true;
+        }
+        else {
+            return  Response.status(Response.Status.BAD_REQUEST)
+                            .entity(new ApiStatus(Response.Status.BAD_REQUEST.getStatusCode(),
+                                    "Unsupported export format"))
                             .type(MediaType.APPLICATION_JSON).build();
         }
+
+        StreamingOutput export = output -> {
+            ObjectWriter writer = objectMapper.writerFor(Employee.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            Iterator<Employee> employees = employeeService.iterateEmployees();
+            try (SequenceWriter sequenceWriter = ndjson ? writer.withRootValueSeparator("\n").writeValues(output)
+                                                        : writer.writeValuesAsArray(output)) {
+                int written = 0;
+                while (employees.hasNext()) {
+                    sequenceWriter.write(employees.next());
+                    if (++written % EXPORT_FLUSH_INTERVAL == 0) {
+                        sequenceWriter.flush();
+                    }
+                }
+            }
+        };
+        return Response.ok(export, ndjson ? APPLICATION_NDJSON : MediaType.APPLICATION_JSON).build();
+    }
+
+    @GET
+    @Timed
+    @ResponseMetered
+    @ExceptionMetered
+    @Path("/{empId}")
+    public Response getEmployeeById(@PathParam("empId") Integer empId, @Context Request request)
+            throws EmployeeNotFound, JsonProcessingException {
+        String key = ResponseCache.employeeKey(empId);
+        long ticket = responseCache.ticket(key);
+        Employee employee = employeeService.getEmployeeById(empId);
+        MediaType type = Representations.negotiate(request);
+        EntityTag tag = EntityTags.of(employee.getVersion(), type);
+        Response notModified = EntityTags.notModified(request, tag);
+        if (notModified != null) {
+            return notModified;
+        }
+        // The cache holds JSON only
+        if (!responseCache.isEnabled() || !Representations.isJson(type)) {
+            return Response.ok(employee, type).tag(tag).build();
+        }
+        CachedResponse cached = responseCache.get(key, employee.getVersion());
+        if (cached == null) {
+            cached = responseCache.put(key, ticket, employee, null, employee.getVersion());
+        }
+        return Response.ok(cached.getBody(), MediaType.APPLICATION_JSON).tag(tag).build();
     }
 
     @PUT
+    @Timed
+    @ResponseMetered
+    @ExceptionMetered
     @Path("/{empId}")
-    public Response updateEmployee(@PathParam("empId") Integer empId, @Valid Employee employee) {
+    public Response updateEmployee(@PathParam("empId") Integer empId, @Valid Employee employee) throws EmployeeNotFound {
         try {
             return Response.ok(employeeService.updateEmployee(empId, employee)).build();
         }
-        catch (EmployeeNotFound e) {
-            StringBuilder message = new StringBuilder("Employee ");
-            return  Response.status(Response.Status.NOT_FOUND)
-                            .entity(new ApiStatus(Response.Status.NOT_FOUND.getStatusCode(),
-                                    message.append(empId).append(" not found").toString()))
-                            .type(MediaType.APPLICATION_JSON).build();
-        }
         catch (DepartmentNotFound e){
-            StringBuilder message = new StringBuilder("Department ");
-            return  Response.status(Response.Status.BAD_REQUEST)
-                            .entity(new ApiStatus(Response.Status.BAD_REQUEST.getStatusCode(),
-                                    message.append(employee.getDepId()).append(" not exists").toString()))
-                            .type(MediaType.APPLICATION_JSON).build();
-        }
-        catch (Exception e) {
-            return  Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                            .entity(new ApiStatus(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
-                                    "Internal Server Error"))
-                            .type(MediaType.APPLICATION_JSON).build();
+            return departmentNotExists(e);
         }
     }
 
     @DELETE
+    @Timed
+    @ResponseMetered
+    @ExceptionMetered
     @Path("/{empId}")
-    public Response deleteEmployee(@PathParam("empId") Integer empId){
-        try{
-            employeeService.deleteEmployee(empId);
-            return  Response.noContent().build();
-        }
-        catch (EmployeeNotFound e){
-            StringBuilder message = new StringBuilder("Employee ");
-            return  Response.status(Response.Status.NOT_FOUND)
-                            .entity(new ApiStatus(Response.Status.NOT_FOUND.getStatusCode(),
-                                    message.append(empId).append(" not found").toString()))
-                            .type(MediaType.APPLICATION_JSON).build();
-        }
-        catch (Exception e) {
-            return  Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                            .entity(new ApiStatus(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
-                                    "Internal Server Error"))
-                            .type(MediaType.APPLICATION_JSON).build();
-        }
-   }
+    public Response deleteEmployee(@PathParam("empId") Integer empId) throws EmployeeNotFound {
+        employeeService.deleteEmployee(empId);
+        return  Response.noContent().build();
+    }
+
+    // A missing department is the client's mistake in the employee it sent, not a missing resource
+    private static Response departmentNotExists(DepartmentNotFound departmentNotFound) {
+        return  Response.status(Response.Status.BAD_REQUEST)
+                        .entity(new ApiStatus(Response.Status.BAD_REQUEST.getStatusCode(),
+                                "Department " + departmentNotFound.getDepId() + " not exists"))
+                        .type(MediaType.APPLICATION_JSON).build();
+    }
 }
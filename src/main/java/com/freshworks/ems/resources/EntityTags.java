@@ -0,0 +1,33 @@
+// Strong ETags built from the version counters the services stamp on every write. Versions restart with
+// the process, so every tag carries the epoch of this process and a tag handed out before a restart never matches.
+// A strong tag names one representation, so a version sent as Smile or CBOR is tagged apart from its JSON.
+
+package com.freshworks.ems.resources;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+
+final class EntityTags {
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+    private EntityTags() {
+
+    }
+
+    static EntityTag of(long version) {
+        return new EntityTag(EPOCH + "-" + Long.toString(version, 36));
+    }
+
+    static EntityTag of(long version, MediaType type) {
+        return Representations.isJson(type) ? of(version)
+                                            : new EntityTag(of(version).getValue() + "-" + type.getSubtype());
+    }
+
+    // The 304 to send when the client's If-None-Match already names this version, otherwise null
+    static Response notModified(Request request, EntityTag tag) {
+        Response.ResponseBuilder builder = request.evaluatePreconditions(tag);
+        return builder == null ? null : builder.tag(tag).build();
+    }
+}
@@ -0,0 +1,51 @@
+package com.freshworks.ems.resources;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class ExecutionConfiguration {
+    // Off, heavy routes run on the request thread like every other route
+    @JsonProperty
+    private boolean enabled = false;
+
+    // Used where the JDK has them, platform threads otherwise
+    @JsonProperty
+    private boolean virtualThreads = true;
+
+    @JsonProperty
+    @Min(1)
+    private int maxThreads = 16;
+
+    // Requests waiting for a thread; any more are turned away with a 503
+    @JsonProperty
+    @Min(0)
+    private int maxQueueSize = 256;
+
+    // How long a request may wait for a thread before it is answered with a 503
+    @JsonProperty
+    @NotNull
+    private Duration queueTimeout = Duration.seconds(30);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    public Duration getQueueTimeout() {
+        return queueTimeout;
+    }
+}
@@ -0,0 +1,43 @@
+// Shared response building for the paginated list endpoints. The body stays a plain array, in JSON unless
+// another format was negotiated; the cursor of the next page, if any, travels in the X-Next-Cursor header.
+
+package com.freshworks.ems.resources;
+
+import com.freshworks.ems.cache.CachedResponse;
+import com.freshworks.ems.model.Page;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+final class Pagination {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private Pagination() {
+
+    }
+
+    static Response ok(Page<?> page) {
+        return ok(page, null);
+    }
+
+    static Response ok(Page<?> page, EntityTag tag) {
+        return ok(page, tag, null);
+    }
+
+    static Response ok(Page<?> page, EntityTag tag, MediaType type) {
+        Response.ResponseBuilder builder = Response.ok(page.getItems(), type).tag(tag);
+        if (page.getNextCursor() != null) {
+            builder.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return builder.build();
+    }
+
+    static Response ok(CachedResponse cached, EntityTag tag) {
+        Response.ResponseBuilder builder = Response.ok(cached.getBody(), MediaType.APPLICATION_JSON).tag(tag);
+        if (cached.getNextCursor() != null) {
+            builder.header(NEXT_CURSOR_HEADER, cached.getNextCursor());
+        }
+        return builder.build();
+    }
+}
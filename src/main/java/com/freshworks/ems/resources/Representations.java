@@ -0,0 +1,48 @@
+// The formats the resources answer in, picked from the Accept header: JSON, and Jackson's binary Smile and CBOR
+// for high-volume clients that would rather not spend CPU on text. JSON stays the default, and the same formats
+// are read from request bodies. Errors are always JSON.
+
+package com.freshworks.ems.resources;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.jaxrs.cbor.JacksonCBORProvider;
+import com.fasterxml.jackson.jaxrs.smile.JacksonSmileProvider;
+import io.dropwizard.jackson.Jackson;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Variant;
+import java.util.Arrays;
+import java.util.List;
+
+public final class Representations {
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+    public static final String APPLICATION_CBOR = "application/cbor";
+    public static final MediaType APPLICATION_SMILE_TYPE = MediaType.valueOf(APPLICATION_SMILE);
+    public static final MediaType APPLICATION_CBOR_TYPE = MediaType.valueOf(APPLICATION_CBOR);
+
+    private static final List<Variant> VARIANTS = Variant.mediaTypes(MediaType.APPLICATION_JSON_TYPE,
+                                                                     APPLICATION_SMILE_TYPE,
+                                                                     APPLICATION_CBOR_TYPE).build();
+
+    private Representations() {
+
+    }
+
+    // Message body readers and writers for the binary formats, with the same modules as Dropwizard's JSON mapper
+    public static List<Object> providers() {
+        return Arrays.asList(new JacksonSmileProvider(Jackson.newObjectMapper(new SmileFactory())),
+                             new JacksonCBORProvider(Jackson.newObjectMapper(new CBORFactory())));
+    }
+
+    // The format to answer in, JSON when the Accept header leaves the choice open. Also adds Vary: Accept.
+    static MediaType negotiate(Request request) {
+        Variant variant = request.selectVariant(VARIANTS);
+        return variant == null ? MediaType.APPLICATION_JSON_TYPE : variant.getMediaType();
+    }
+
+    static boolean isJson(MediaType type) {
+        return MediaType.APPLICATION_JSON_TYPE.isCompatible(type);
+    }
+}
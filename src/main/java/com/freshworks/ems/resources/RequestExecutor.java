@@ -0,0 +1,179 @@
+// Runs the heavy resource methods (exports, bulk writes, department deletes) off Jetty's request threads, on a
+// bounded pool of their own, so a burst of them queues up behind itself rather than in front of every GET.
+// Requests that find the pool and its queue full, or wait in the queue too long, are answered with a 503.
+//
+// Virtual threads are looked up reflectively so the application still builds and runs on Java 8.
+
+package com.freshworks.ems.resources;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.freshworks.ems.model.ApiStatus;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RequestExecutor implements Managed {
+    private static final String THREAD_NAME = "ems-request-";
+    private static final int RETRY_AFTER_SECONDS = 1;
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestExecutor.class);
+    private final ThreadPoolExecutor executor;
+    private final long queueTimeoutMillis;
+    private final boolean virtual;
+    private final Meter rejections = new Meter();
+
+    public RequestExecutor(ExecutionConfiguration configuration) {
+        if (!configuration.isEnabled()) {
+            executor = null;
+            queueTimeoutMillis = 0;
+            virtual = false;
+            return;
+        }
+        ThreadFactory threadFactory = configuration.isVirtualThreads() ? virtualThreadFactory(THREAD_NAME) : null;
+        virtual = threadFactory != null;
+        if (threadFactory == null) {
+            threadFactory = threadFactory(THREAD_NAME, false);
+        }
+        BlockingQueue<Runnable> queue = configuration.getMaxQueueSize() == 0
+                                        ? new SynchronousQueue<>()
+                                        : new ArrayBlockingQueue<>(configuration.getMaxQueueSize());
+        executor = new ThreadPoolExecutor(configuration.getMaxThreads(), configuration.getMaxThreads(),
+                                          60, TimeUnit.SECONDS, queue, threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        queueTimeoutMillis = configuration.getQueueTimeout().toMilliseconds();
+        logger.info("Heavy requests run on up to {} {} threads", configuration.getMaxThreads(),
+                    virtual ? "virtual" : "platform");
+    }
+
+    // Runs every request on the thread that received it
+    public static RequestExecutor direct() {
+        return new RequestExecutor(new ExecutionConfiguration());
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public void registerMetrics(MetricRegistry metrics) {
+        if (executor == null) {
+            return;
+        }
+        metrics.register(MetricRegistry.name(RequestExecutor.class, "active"), (Gauge<Integer>) executor::getActiveCount);
+        metrics.register(MetricRegistry.name(RequestExecutor.class, "queued"),
+                         (Gauge<Integer>) () -> executor.getQueue().size());
+        metrics.register(MetricRegistry.name(RequestExecutor.class, "rejections"), rejections);
+    }
+
+    // Resumes the response with what the work returns, or with the exception it throws for the exception mappers
+    public void execute(AsyncResponse asyncResponse, Callable<Response> work) {
+        if (executor == null) {
+            resume(asyncResponse, work);
+            return;
+        }
+        // Whichever of the queue timeout and the worker claims the request first answers it; the other backs off
+        AtomicBoolean claimed = new AtomicBoolean();
+        asyncResponse.setTimeoutHandler(timedOut -> {
+            if (claimed.compareAndSet(false, true)) {
+                rejections.mark();
+                timedOut.resume(busy());
+            }
+        });
+        asyncResponse.setTimeout(queueTimeoutMillis, TimeUnit.MILLISECONDS);
+        try {
+            executor.execute(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return;
+                }
+                // The timeout only covers the wait in the queue, not a request that is running
+                asyncResponse.setTimeout(0, TimeUnit.MILLISECONDS);
+                resume(asyncResponse, work);
+            });
+        }
+        catch (RejectedExecutionException e) {
+            if (claimed.compareAndSet(false, true)) {
+                rejections.mark();
+                asyncResponse.resume(busy());
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private static void resume(AsyncResponse asyncResponse, Callable<Response> work) {
+        Response response;
+        try {
+            response = work.call();
+        }
+        catch (Exception e) {
+            asyncResponse.resume(e);
+            return;
+        }
+        asyncResponse.resume(response);
+    }
+
+    private static Response busy() {
+        return  Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                        .entity(new ApiStatus(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(),
+                                "Too many requests in progress, retry later"))
+                        .type(MediaType.APPLICATION_JSON).build();
+    }
+
+    // Virtual threads where asked for and available, daemon platform threads otherwise
+    static ThreadFactory threadFactory(String name, boolean virtual) {
+        ThreadFactory threadFactory = virtual ? virtualThreadFactory(name) : null;
+        if (threadFactory != null) {
+            return threadFactory;
+        }
+        AtomicInteger threadIds = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + threadIds.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // Thread.ofVirtual().name(name, 0).factory(), or null before Java 21 and on 19 and 20 without preview
+    private static ThreadFactory virtualThreadFactory(String name) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+            logger.info("Virtual threads are not available, falling back to platform threads");
+            return null;
+        }
+    }
+}
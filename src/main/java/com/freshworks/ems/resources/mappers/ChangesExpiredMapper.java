@@ -0,0 +1,19 @@
+package com.freshworks.ems.resources.mappers;
+
+import com.freshworks.ems.exceptions.ChangesExpired;
+import com.freshworks.ems.model.ApiStatus;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+@Provider
+public class ChangesExpiredMapper implements ExceptionMapper<ChangesExpired> {
+    @Override
+    public Response toResponse(ChangesExpired exception) {
+        return  Response.status(Response.Status.GONE)
+                        .entity(new ApiStatus(Response.Status.GONE.getStatusCode(), exception.getMessage()))
+                        .type(MediaType.APPLICATION_JSON).build();
+    }
+}
@@ -0,0 +1,19 @@
+package com.freshworks.ems.resources.mappers;
+
+import com.freshworks.ems.exceptions.EmployeeNotFound;
+import com.freshworks.ems.model.ApiStatus;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+@Provider
+public class EmployeeNotFoundMapper implements ExceptionMapper<EmployeeNotFound> {
+    @Override
+    public Response toResponse(EmployeeNotFound exception) {
+        return  Response.status(Response.Status.NOT_FOUND)
+                        .entity(new ApiStatus(Response.Status.NOT_FOUND.getStatusCode(), exception.getMessage()))
+                        .type(MediaType.APPLICATION_JSON).build();
+    }
+}
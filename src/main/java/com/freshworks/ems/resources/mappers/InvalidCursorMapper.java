@@ -0,0 +1,19 @@
+package com.freshworks.ems.resources.mappers;
+
+import com.freshworks.ems.exceptions.InvalidCursor;
+import com.freshworks.ems.model.ApiStatus;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+@Provider
+public class InvalidCursorMapper implements ExceptionMapper<InvalidCursor> {
+    @Override
+    public Response toResponse(InvalidCursor exception) {
+        return  Response.status(Response.Status.BAD_REQUEST)
+                        .entity(new ApiStatus(Response.Status.BAD_REQUEST.getStatusCode(), exception.getMessage()))
+                        .type(MediaType.APPLICATION_JSON).build();
+    }
+}
@@ -0,0 +1,20 @@
+package com.freshworks.ems.resources.mappers;
+
+import com.freshworks.ems.exceptions.WritesUnavailable;
+import com.freshworks.ems.model.ApiStatus;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+@Provider
+public class WritesUnavailableMapper implements ExceptionMapper<WritesUnavailable> {
+    @Override
+    public Response toResponse(WritesUnavailable exception) {
+        return  Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                        .entity(new ApiStatus(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(),
+                                              exception.getMessage()))
+                        .type(MediaType.APPLICATION_JSON).build();
+    }
+}
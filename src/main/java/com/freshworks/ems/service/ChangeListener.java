@@ -0,0 +1,22 @@
+package com.freshworks.ems.service;
+
+import com.freshworks.ems.model.ChangeEvent;
+
+public interface ChangeListener {
+
+    // Runs before a write is applied, so a listener that can no longer take writes refuses it while there is
+    // nothing to undo.
+    default void beforeChange() {
+
+    }
+
+    // Runs inside the per-id atomic section of the write, so events for one id arrive in the
+    // order they were applied. Must be cheap and must not block.
+    void onChange(ChangeEvent event);
+
+    // Runs on the writing thread after the write is applied, before the caller gets its result.
+    // May block, e.g. until the event is durable.
+    default void afterChange(ChangeEvent event) {
+
+    }
+}
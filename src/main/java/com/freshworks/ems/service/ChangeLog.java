@@ -0,0 +1,245 @@
+// Ordered, bounded log of every write applied by EmployeeService and DepartmentService, for consumers that
+// follow changes instead of polling the listings. Each event is numbered as it is applied, inside the writer's
+// per-id section, so the numbering agrees with the order of writes to any one record. The newest events are kept
+// in a ring: writers never wait for readers, and a reader that falls further behind than the ring is told to
+// resync instead. Writers only hold a short lock of their own to number and store an event; readers take no lock,
+// and the ones waiting for the next event wait on a separate monitor that writers touch only while someone waits.
+//
+// Events go out as writes are applied, not once they are durable: a consumer may see a write that the write-ahead
+// log then fails to sync and a restart loses. Publishing only after the sync would cost the per-record order, as
+// writes to one record can finish their syncs in either order.
+//
+// Numbering starts from the boot time in microseconds, so a sequence handed out before a restart is never taken
+// for a position in the new log.
+//
+// For consumers that poll instead, each entity also has a compacted index holding only the latest change of every
+// record, so a delta costs the records changed since the poll rather than the writes or the whole store. Deleted
+// records stay in it as tombstones, the oldest of which are dropped beyond a bound; a poll from before the last
+// one dropped has to resync.
+
+package com.freshworks.ems.service;
+
+import com.freshworks.ems.exceptions.ChangesExpired;
+import com.freshworks.ems.model.ChangeEvent;
+import com.freshworks.ems.model.Delta;
+import com.freshworks.ems.model.Page;
+import com.freshworks.ems.model.RecordChange;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+public class ChangeLog implements ChangeListener {
+    private final ChangeEvent[] events;
+    private final int mask;
+    private final long start;
+    private final int maxTombstones;
+    private final Compaction employees = new Compaction();
+    private final Compaction departments = new Compaction();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Object arrivals = new Object();
+    private final AtomicInteger waiting = new AtomicInteger();
+    // Written under the append lock once the event is in place, so a reader that sees it also sees the event
+    private volatile long last;
+    private volatile boolean closed;
+
+    public ChangeLog(int capacity) {
+        this(capacity, capacity);
+    }
+
+    public ChangeLog(int capacity, int maxTombstones) {
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.events = new ChangeEvent[size];
+        this.mask = size - 1;
+        this.start = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        this.last = start;
+        this.maxTombstones = maxTombstones;
+        employees.horizon = start;
+        departments.horizon = start;
+    }
+
+    @Override
+    public void onChange(ChangeEvent event) {
+        appendLock.lock();
+        try {
+            long sequence = last + 1;
+            events[(int) sequence & mask] = event;
+            compactionOf(event.getEntity()).record(new Change(sequence, event.getId(),
+                                                              event.getOperation() == ChangeEvent.Operation.DELETE));
+            last = sequence;
+        }
+        finally {
+            appendLock.unlock();
+        }
+        if (waiting.get() > 0) {
+            synchronized (arrivals) {
+                arrivals.notifyAll();
+            }
+        }
+    }
+
+    public long getLastSequence() {
+        return last;
+    }
+
+    // Throws unless every change after the given sequence is still in the log
+    public void checkAvailable(long after) throws ChangesExpired {
+        long newest = last;
+        if (after > newest || after < Math.max(start, newest - events.length)) {
+            throw new ChangesExpired(after);
+        }
+    }
+
+    // Up to max changes after the given sequence, in order. Waits up to the timeout for the first one and comes
+    // back empty if none arrived, or at once if the log is closed.
+    public List<Entry> read(long after, int max, long timeoutMillis) throws ChangesExpired, InterruptedException {
+        checkAvailable(after);
+        if (last == after && !closed && !awaitChange(after, timeoutMillis)) {
+            return Collections.emptyList();
+        }
+        int count = (int) Math.min(max, last - after);
+        List<Entry> entries = new ArrayList<>(count);
+        for (long sequence = after + 1; sequence <= after + count; sequence++) {
+            entries.add(new Entry(sequence, events[(int) sequence & mask]));
+        }
+        // Writes while waiting or copying may have lapped the ring and overwritten what was copied
+        checkAvailable(after);
+        return entries;
+    }
+
+    // Returns false if nothing was written after the given sequence within the timeout
+    private boolean awaitChange(long after, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        waiting.incrementAndGet();
+        try {
+            synchronized (arrivals) {
+                while (last == after && !closed) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(arrivals, remaining);
+                }
+            }
+            return true;
+        }
+        finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    // The latest change of each record of the entity changed after the given sequence, oldest first, each looked up
+    // as it is now; a record the lookup no longer finds goes out as a tombstone. Changes landing while the delta is
+    // built may be left for the next poll, never skipped: the high-water mark is read first and bounds the walk.
+    public <T> Delta<T> delta(ChangeEvent.Entity entity, long since, int limit, Function<Integer, Optional<T>> lookup)
+            throws ChangesExpired {
+        Compaction compaction = compactionOf(entity);
+        long highWaterMark = last;
+        if (since > highWaterMark || since < compaction.horizon) {
+            throw new ChangesExpired(since);
+        }
+        List<RecordChange<T>> changes = new ArrayList<>(Math.min(limit, Page.DEFAULT_LIMIT));
+        Iterator<Change> latest = compaction.bySequence.subMap(since, false, highWaterMark, true).values().iterator();
+        while (changes.size() < limit && latest.hasNext()) {
+            Change change = latest.next();
+            T record = change.deleted ? null : lookup.apply(change.id).orElse(null);
+            changes.add(new RecordChange<>(change.sequence, change.id, record));
+        }
+        // A tombstone dropped while the walk ran may have been missed
+        if (since < compaction.horizon) {
+            throw new ChangesExpired(since);
+        }
+        if (latest.hasNext()) {
+            return new Delta<>(changes, changes.get(changes.size() - 1).getSequence(), true);
+        }
+        return new Delta<>(changes, highWaterMark, false);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // Lets waiting readers go, so open streams end instead of holding up shutdown
+    public void close() {
+        closed = true;
+        synchronized (arrivals) {
+            arrivals.notifyAll();
+        }
+    }
+
+    private Compaction compactionOf(ChangeEvent.Entity entity) {
+        return entity == ChangeEvent.Entity.EMPLOYEE ? employees : departments;
+    }
+
+    private static final class Change {
+        final long sequence;
+        final int id;
+        final boolean deleted;
+
+        Change(long sequence, int id, boolean deleted) {
+            this.sequence = sequence;
+            this.id = id;
+            this.deleted = deleted;
+        }
+    }
+
+    // Written under the append lock; the map by sequence is read without it
+    private final class Compaction {
+        final ConcurrentSkipListMap<Long, Change> bySequence = new ConcurrentSkipListMap<>();
+        final Map<Integer, Long> sequences = new HashMap<>();
+        // Oldest first; a tombstone whose record was created again since is skipped when it comes up
+        final ArrayDeque<Change> tombstones = new ArrayDeque<>();
+        // Deltas from before this sequence may have lost a tombstone
+        volatile long horizon;
+
+        void record(Change change) {
+            Long previous = sequences.put(change.id, change.sequence);
+            if (previous != null) {
+                bySequence.remove(previous);
+            }
+            bySequence.put(change.sequence, change);
+            if (!change.deleted) {
+                return;
+            }
+            tombstones.add(change);
+            while (tombstones.size() > maxTombstones) {
+                Change oldest = tombstones.poll();
+                if (bySequence.remove(oldest.sequence, oldest)) {
+                    sequences.remove(oldest.id);
+                    horizon = oldest.sequence;
+                }
+            }
+        }
+    }
+
+    public static final class Entry {
+        private final long sequence;
+        private final ChangeEvent event;
+
+        Entry(long sequence, ChangeEvent event) {
+            this.sequence = sequence;
+            this.event = event;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public ChangeEvent getEvent() {
+            return event;
+        }
+    }
+}
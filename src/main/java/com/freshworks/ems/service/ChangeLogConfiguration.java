@@ -0,0 +1,45 @@
+package com.freshworks.ems.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class ChangeLogConfiguration {
+    // Newest writes kept for consumers to resume from, rounded up to a power of two
+    @JsonProperty
+    @Min(1)
+    private int capacity = 65536;
+
+    // Deleted records the change deltas remember, per entity; polls from before the oldest one forgotten must resync
+    @JsonProperty
+    @Min(1)
+    private int maxTombstones = 100000;
+
+    // Open event streams, each of which holds a thread of its own
+    @JsonProperty
+    @Min(0)
+    private int maxStreams = 16;
+
+    // Comment line sent on a quiet stream, so proxies keep it open and a gone consumer is noticed
+    @JsonProperty
+    @NotNull
+    private Duration heartbeat = Duration.seconds(15);
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getMaxTombstones() {
+        return maxTombstones;
+    }
+
+    public int getMaxStreams() {
+        return maxStreams;
+    }
+
+    public Duration getHeartbeat() {
+        return heartbeat;
+    }
+}
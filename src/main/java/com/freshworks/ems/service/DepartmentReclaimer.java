@@ -0,0 +1,98 @@
+// Removes the employees of deleted departments in batches on a background thread, so deleting a large department
+// costs the request a tombstone rather than one store write per employee. Jobs run one at a time; a job that is
+// cut short by shutdown is picked up again on the next start, from the employees left without a department.
+
+package com.freshworks.ems.service;
+
+import com.freshworks.ems.model.DepartmentDeletionJob;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+public class DepartmentReclaimer implements Managed {
+    public static final int BATCH_SIZE = 1000;
+    private static final int MAX_RETAINED_JOBS = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(DepartmentReclaimer.class);
+    private final ConcurrentNavigableMap<Long, DepartmentDeletionJob> jobs = new ConcurrentSkipListMap<>();
+    private final AtomicLong jobIds = new AtomicLong();
+    private final ThreadPoolExecutor executor;
+
+    public DepartmentReclaimer() {
+        // The thread only exists while there is something to reclaim
+        executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "ems-department-reclaimer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    // nextBatch removes up to BATCH_SIZE employees and returns how many it removed, 0 once none are left
+    public DepartmentDeletionJob submit(Integer depId, int total, IntSupplier nextBatch) {
+        DepartmentDeletionJob job = new DepartmentDeletionJob(jobIds.incrementAndGet(), depId, total);
+        jobs.put(job.getJobId(), job);
+        trimFinishedJobs();
+        executor.execute(() -> reclaim(job, nextBatch));
+        logger.info("Department {} deleted, reclaiming its {} employees as job {}", depId, total, job.getJobId());
+        return job;
+    }
+
+    public Optional<DepartmentDeletionJob> findJob(long jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    @Override
+    public void start() {
+
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    private void reclaim(DepartmentDeletionJob job, IntSupplier nextBatch) {
+        long startNanos = System.nanoTime();
+        try {
+            int reclaimed;
+            // A short batch ends the job, as in DepartmentService.reclaimAll
+            do {
+                reclaimed = nextBatch.getAsInt();
+                job.addReclaimed(reclaimed);
+                if (Thread.currentThread().isInterrupted()) {
+                    logger.info("Job {} stopped after reclaiming {} employees", job.getJobId(), job.getReclaimed());
+                    return;
+                }
+            } while (reclaimed == BATCH_SIZE);
+            job.finish(DepartmentDeletionJob.Status.COMPLETED);
+            logger.info("Job {} reclaimed {} employees of department {} in {} ms", job.getJobId(), job.getReclaimed(),
+                        job.getDepId(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        }
+        catch (RuntimeException e) {
+            job.finish(DepartmentDeletionJob.Status.FAILED);
+            logger.error("Job {} failed reclaiming the employees of department {}", job.getJobId(), job.getDepId(), e);
+        }
+    }
+
+    // Jobs are numbered in submission order, so the oldest finished ones go first
+    private void trimFinishedJobs() {
+        Iterator<DepartmentDeletionJob> oldest = jobs.values().iterator();
+        while (jobs.size() > MAX_RETAINED_JOBS && oldest.hasNext()) {
+            if (oldest.next().isFinished()) {
+                oldest.remove();
+            }
+        }
+    }
+}
@@ -1,145 +1,303 @@
 package com.freshworks.ems.service;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.freshworks.ems.exceptions.DepartmentNotFound;
-import com.freshworks.ems.exceptions.EmployeeNotFound;
+import com.freshworks.ems.exceptions.InvalidCursor;
+import com.freshworks.ems.model.ChangeEvent;
 import com.freshworks.ems.model.Department;
+import com.freshworks.ems.model.DepartmentDeletionJob;
+import com.freshworks.ems.model.DepartmentStats;
 import com.freshworks.ems.model.Employee;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
+import com.freshworks.ems.model.Page;
+import com.freshworks.ems.store.ConcurrentEntityStore;
+import com.freshworks.ems.store.EntityStore;
+import com.freshworks.ems.util.Cursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class DepartmentService {
-    private final Map<Integer, Department> hashMap;
+    private final EntityStore<Department> departmentStore;
+    private final List<ChangeListener> changeListeners = new CopyOnWriteArrayList<>();
     private final Logger logger = LoggerFactory.getLogger(DepartmentService.class);
     private EmployeeService employeeService;
     private AtomicInteger counter = new AtomicInteger(0);
-    private Object object;
+    private final AtomicLong versions = new AtomicLong();
+    private final AtomicLong collectionVersion = new AtomicLong();
+    private final DepartmentReclaimer reclaimer = new DepartmentReclaimer();
 
     public DepartmentService() {
-        hashMap = new HashMap<>();
-        hashMap.put(1, new Department(1, "google"));
+        departmentStore = new ConcurrentEntityStore<>();
+        departmentStore.compute(1, (depId, department) -> new Department(1, "google"));
     }
 
-    public DepartmentService(Object object) {
-        hashMap = new HashMap<>();
-        this.object = object;
-        loadInitialDepartmentData();
+    public DepartmentService(EntityStore<Department> departmentStore) {
+        this.departmentStore = departmentStore;
     }
 
     public DepartmentService(EmployeeService employeeService) {
         this.employeeService = employeeService;
-        hashMap = new HashMap<>();
-        hashMap.put(1, new Department(1, "google"));
-        hashMap.put(2, new Department(2, "amazon"));
+        departmentStore = new ConcurrentEntityStore<>();
+        departmentStore.compute(1, (depId, department) -> new Department(1, "google"));
+        departmentStore.compute(2, (depId, department) -> new Department(2, "amazon"));
     }
-    
-    @SuppressWarnings(value = "unchecked")
-    private void loadInitialDepartmentData() {
-        JSONArray departmentList = (JSONArray) object;
-        departmentList.forEach(dep -> parseDepartmentObject((JSONObject) dep));
+
+    public void createEmployeeServiceObject(EmployeeService employeeService) {
+        this.employeeService = employeeService;
     }
 
-    private void parseDepartmentObject(JSONObject department) {
-        JSONObject departmentObject = (JSONObject) department.get("department");
-        Integer depId = counter.incrementAndGet();
-        String name = (String) departmentObject.get("name");
-        Department depObj = new Department(depId, name);
-        hashMap.put(depId, depObj);
+    public void addChangeListener(ChangeListener changeListener) {
+        changeListeners.add(changeListener);
     }
 
-    public void createEmployeeServiceObject(EmployeeService employeeService) {
-        this.employeeService = employeeService;
+    public void registerMetrics(MetricRegistry metrics) {
+        metrics.register(MetricRegistry.name(DepartmentService.class, "departments"),
+                         (Gauge<Integer>) departmentStore::size);
+    }
+
+    // Changes whenever any department is written; published only once the write is visible
+    public long getCollectionVersion() {
+        return collectionVersion.get();
+    }
+
+    // Version of the employees behind getEmpsOfDepartment
+    public long getEmployeesVersion() {
+        return employeeService.getCollectionVersion();
     }
 
     public List<Department> getAllDepartments() {
-        return new ArrayList<>(hashMap.values());
+        return departmentStore.values();
+    }
+
+    public Page<Department> getDepartments(String cursor, int limit) throws InvalidCursor {
+        Cursor pageCursor = Cursor.decode(cursor);
+        int afterDepId = pageCursor == null ? Integer.MIN_VALUE : pageCursor.getId();
+        return Page.collect(departmentStore.valuesAfter(afterDepId), limit,
+                            department -> Cursor.encode(department.getDepId()));
+    }
+
+    public Optional<Department> findDepartment(Integer depId) {
+        return Optional.ofNullable(departmentStore.get(depId));
     }
 
     public Department getDepartmentById(Integer depId) throws DepartmentNotFound{
-        try {
-            if (isDepartmentExists(depId)) {
-                logger.debug("Department {} details were fetched", depId);
-            }
-        }
-        catch (DepartmentNotFound departmentNotFound) {
-            logger.error("Department {} was not found", depId);
-            throw departmentNotFound;
+        Department department = departmentStore.get(depId);
+        if (department == null) {
+            logger.debug("Department {} was not found", depId);
+            throw new DepartmentNotFound(depId);
         }
-        return hashMap.get(depId);
+        logger.debug("Department {} details were fetched", depId);
+        return department;
+    }
+
+    // The highest id handed out so far; ids are never reused, even those of deleted departments
+    public int getLastId() {
+        return counter.get();
+    }
+
+    // Keeps new ids above one handed out before a restart, by a department that may be gone since
+    public void reserveIds(int lastId) {
+        counter.accumulateAndGet(lastId, Math::max);
     }
 
     public Department createDepartment(Department department) {
+        beforeChange();
         Integer depId = counter.incrementAndGet();
         department.setId(depId);
-        hashMap.put(depId, department);
+        ChangeEvent changeEvent = ChangeEvent.ofDepartment(ChangeEvent.Operation.CREATE, depId, department);
+        departmentStore.compute(depId, (id, existing) -> {
+            department.setVersion(versions.incrementAndGet());
+            onChange(changeEvent);
+            return department;
+        });
+        publishVersion(department.getVersion());
+        afterChange(changeEvent);
         logger.debug("Department {} was created {}", depId, department);
         return department;
     }
 
-    public List<Employee> getEmpsOfDepartment(Integer depId) throws Exception {
-        try {
-            if (isDepartmentExists(depId)) {
-                logger.debug("Employees of Department {} were fetched", depId);
-            }
-        }
-        catch (DepartmentNotFound departmentNotFound) {
-            logger.error("Department {} was not found", depId);
-            throw departmentNotFound;
-        }
+    public List<Employee> getEmpsOfDepartment(Integer depId) throws DepartmentNotFound {
+        isDepartmentExists(depId);
+        logger.debug("Employees of Department {} were fetched", depId);
         return employeeService.getEmpsOfDepartment(depId);
     }
 
+    public Page<Employee> getEmpsOfDepartment(Integer depId, String cursor, int limit) throws DepartmentNotFound, InvalidCursor {
+        isDepartmentExists(depId);
+        logger.debug("Employees of Department {} were fetched", depId);
+        return employeeService.getEmpsOfDepartment(depId, cursor, limit);
+    }
+
+    public DepartmentStats getDepartmentStats(Integer depId) throws DepartmentNotFound {
+        isDepartmentExists(depId);
+        return employeeService.getDepartmentStats(depId);
+    }
+
+    // One entry per department, in id order
+    public List<DepartmentStats> getAllDepartmentStats() {
+        List<DepartmentStats> stats = new ArrayList<>();
+        departmentStore.valuesAfter(Integer.MIN_VALUE).forEachRemaining(
+                department -> stats.add(employeeService.getDepartmentStats(department.getDepId())));
+        return stats;
+    }
+
+    // Deletes the department and reclaims its employees before returning
     public void removeDepartment(Integer depId) throws DepartmentNotFound {
-        try {
-            if (isDepartmentExists(depId)) {
-                List<Employee> employeeList = employeeService.getEmpsOfDepartment(depId);
-                employeeList.forEach(emp -> {
-                    try {
-                        employeeService.deleteEmployee(emp.getEmpId());
-                    }
-                    catch (EmployeeNotFound employeeNotFound) {
-                        employeeNotFound.printStackTrace();
-                    }
-                });
-                hashMap.remove(depId);
-                logger.debug("Department {} was deleted ", depId);
+        retire(depId);
+        reclaimAll(depId);
+        logger.debug("Department {} was deleted ", depId);
+    }
+
+    // Deletes the department at once. Its employees are gone from every read straight away; a department with
+    // more than a batch of them is reclaimed in the background, and the job doing it is returned.
+    public Optional<DepartmentDeletionJob> deleteDepartment(Integer depId) throws DepartmentNotFound {
+        int remaining = retire(depId);
+        if (remaining <= DepartmentReclaimer.BATCH_SIZE) {
+            reclaimAll(depId);
+            logger.debug("Department {} was deleted ", depId);
+            return Optional.empty();
+        }
+        return Optional.of(reclaimer.submit(depId, remaining,
+                                            () -> employeeService.reclaimEmployees(depId, DepartmentReclaimer.BATCH_SIZE)));
+    }
+
+    public Optional<DepartmentDeletionJob> findDeletionJob(long jobId) {
+        return reclaimer.findJob(jobId);
+    }
+
+    public DepartmentReclaimer getReclaimer() {
+        return reclaimer;
+    }
+
+    // Restarts reclamation for employees whose department is gone, as a crash mid-job leaves them
+    public void reclaimOrphans() {
+        for (Integer depId : new ArrayList<>(employeeService.getIndexedDepartmentIds())) {
+            if (!departmentStore.containsKey(depId)) {
+                int remaining = employeeService.retireDepartment(depId);
+                reclaimer.submit(depId, remaining,
+                                 () -> employeeService.reclaimEmployees(depId, DepartmentReclaimer.BATCH_SIZE));
             }
         }
-        catch (DepartmentNotFound departmentNotFound) {
-            logger.error("Department {} was not found", depId);
-            throw departmentNotFound;
+    }
+
+    // Hides the employees first, so anyone who sees the department gone also sees them gone
+    private int retire(Integer depId) throws DepartmentNotFound {
+        beforeChange();
+        isDepartmentExists(depId);
+        int remaining = employeeService.retireDepartment(depId);
+        Department removedDepartment = departmentStore.remove(depId);
+        if (removedDepartment == null) {
+            throw new DepartmentNotFound(depId);
         }
+        publishVersion(versions.incrementAndGet());
+        ChangeEvent changeEvent = ChangeEvent.ofDepartment(ChangeEvent.Operation.DELETE, depId, null,
+                                                           removedDepartment);
+        onChange(changeEvent);
+        afterChange(changeEvent);
+        return remaining;
+    }
+
+    // Once the department is gone from the store new employees are refused it, so the batches only have the
+    // employees it had plus creates that checked it just before; a short batch means none were left. A create
+    // landing after that stays hidden, and is reclaimed as an orphan on the next start.
+    private void reclaimAll(Integer depId) {
+        int reclaimed;
+        do {
+            reclaimed = employeeService.reclaimEmployees(depId, DepartmentReclaimer.BATCH_SIZE);
+        } while (reclaimed == DepartmentReclaimer.BATCH_SIZE);
     }
 
     public Department updateDepartment(Integer depId, Department depObj) throws DepartmentNotFound {
-        try {
-            if (isDepartmentExists(depId)) {
-                hashMap.get(depId).setName(depObj.getName());
-                logger.debug("Department {} was Updated", depId);
+        beforeChange();
+        AtomicReference<ChangeEvent> changeEvent = new AtomicReference<>();
+        Department updatedDepartment = departmentStore.compute(depId, (id, existing) -> {
+            if (existing == null) {
+                return null;
             }
+            Department replacement = new Department(id, depObj.getName());
+            replacement.setVersion(versions.incrementAndGet());
+            changeEvent.set(ChangeEvent.ofDepartment(ChangeEvent.Operation.UPDATE, id, replacement, existing));
+            onChange(changeEvent.get());
+            return replacement;
+        });
+        if (updatedDepartment == null) {
+            logger.debug("Department {} was not found", depId);
+            throw new DepartmentNotFound(depId);
         }
-        catch (DepartmentNotFound departmentNotFound) {
-            logger.error("Department {} was not found", depId);
-            throw departmentNotFound;
-        }
-        return hashMap.get(depId);
+        publishVersion(updatedDepartment.getVersion());
+        afterChange(changeEvent.get());
+        logger.debug("Department {} was Updated", depId);
+        return updatedDepartment;
     }
 
     public boolean isDepartmentExists(Integer depId) throws DepartmentNotFound {
-        if (!hashMap.containsKey(depId)) {
-            throw new DepartmentNotFound();
+        if (!departmentStore.containsKey(depId)) {
+            logger.debug("Department {} was not found", depId);
+            throw new DepartmentNotFound(depId);
         }
         return true;
     }
-}
 
+    public boolean hasDepartment(Integer depId) {
+        return departmentStore.containsKey(depId);
+    }
+
+    // Bulk-load path for seed data: no notification, and a depId given in the seed file is kept
+    public Department loadDepartment(Department department) {
+        if (department.getDepId() == null) {
+            department.setId(counter.incrementAndGet());
+        }
+        else {
+            counter.accumulateAndGet(department.getDepId(), Math::max);
+        }
+        department.setVersion(versions.incrementAndGet());
+        departmentStore.compute(department.getDepId(), (id, existing) -> department);
+        publishVersion(department.getVersion());
+        return department;
+    }
+
+    // Applies a recovered event without notification and keeps new ids above every recovered one
+    public void replay(ChangeEvent changeEvent) {
+        Integer depId = changeEvent.getId();
+        if (changeEvent.getOperation() == ChangeEvent.Operation.DELETE) {
+            departmentStore.remove(depId);
+        }
+        else {
+            changeEvent.getDepartment().setVersion(versions.incrementAndGet());
+            departmentStore.compute(depId, (id, existing) -> changeEvent.getDepartment());
+        }
+        publishVersion(versions.incrementAndGet());
+        counter.accumulateAndGet(depId, Math::max);
+    }
+
+    private void publishVersion(long version) {
+        collectionVersion.accumulateAndGet(version, Math::max);
+    }
 
+    // Lets a listener refuse the write before anything is applied, see ChangeListener.beforeChange
+    private void beforeChange() {
+        for (ChangeListener changeListener : changeListeners) {
+            changeListener.beforeChange();
+        }
+    }
 
+    private void onChange(ChangeEvent changeEvent) {
+        for (ChangeListener changeListener : changeListeners) {
+            changeListener.onChange(changeEvent);
+        }
+    }
 
+    private void afterChange(ChangeEvent changeEvent) {
+        for (ChangeListener changeListener : changeListeners) {
+            changeListener.afterChange(changeEvent);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+// Conditions on an employee listing, all of which must hold. An unset condition matches every employee.
+// The age range is inclusive and the name prefix is case-sensitive, matching the order of the name listing.
+
+package com.freshworks.ems.service;
+
+import com.freshworks.ems.model.Employee;
+
+public class EmployeeFilter {
+    private final Integer depId;
+    private final Integer minAge;
+    private final Integer maxAge;
+    private final String namePrefix;
+
+    public EmployeeFilter(Integer depId, Integer minAge, Integer maxAge, String namePrefix) {
+        this.depId = depId;
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+        this.namePrefix = namePrefix == null || namePrefix.isEmpty() ? null : namePrefix;
+    }
+
+    public Integer getDepId() {
+        return depId;
+    }
+
+    public Integer getMinAge() {
+        return minAge;
+    }
+
+    public Integer getMaxAge() {
+        return maxAge;
+    }
+
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+
+    public boolean hasAgeRange() {
+        return minAge != null || maxAge != null;
+    }
+
+    public boolean isEmpty() {
+        return depId == null && !hasAgeRange() && namePrefix == null;
+    }
+
+    // Exclusive upper bound of the age range, or null when it is open
+    Integer ageBound() {
+        return maxAge == null || maxAge == Integer.MAX_VALUE ? null : maxAge + 1;
+    }
+
+    // The first string after every name starting with the prefix, or null when there is none
+    String nameBound() {
+        if (namePrefix == null) {
+            return null;
+        }
+        int last = namePrefix.length() - 1;
+        char next = (char) (namePrefix.charAt(last) + 1);
+        return next == Character.MIN_VALUE ? null : namePrefix.substring(0, last) + next;
+    }
+
+    public boolean matches(Employee employee) {
+        if (depId != null && !depId.equals(employee.getDepId())) {
+            return false;
+        }
+        if (hasAgeRange()) {
+            Integer age = employee.getAge();
+            if (age == null || (minAge != null && age < minAge) || (maxAge != null && age > maxAge)) {
+                return false;
+            }
+        }
+        return namePrefix == null || (employee.getName() != null && employee.getName().startsWith(namePrefix));
+    }
+}
@@ -1,140 +1,1042 @@
 package com.freshworks.ems.service;
 
+import com.codahale.metrics.CachedGauge;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.freshworks.ems.exceptions.DepartmentNotFound;
 import com.freshworks.ems.exceptions.EmployeeNotFound;
+import com.freshworks.ems.exceptions.InvalidCursor;
+import com.freshworks.ems.index.DepartmentStatsIndex;
+import com.freshworks.ems.index.SearchIndex;
+import com.freshworks.ems.index.SortedIndex;
+import com.freshworks.ems.model.BulkItemResult;
+import com.freshworks.ems.model.ChangeEvent;
+import com.freshworks.ems.model.DepartmentStats;
 import com.freshworks.ems.model.Employee;
-import com.freshworks.ems.util.AgeSorter;
-import com.freshworks.ems.util.NameSorter;
+import com.freshworks.ems.model.Page;
+import com.freshworks.ems.store.ConcurrentEntityStore;
+import com.freshworks.ems.store.EntityStore;
+import com.freshworks.ems.util.Cursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.ws.rs.core.Response;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 public class EmployeeService {
-    private final Map<Integer, Employee> hashMap;
+    // Largest walk the filtered listing reads whole to sort, rather than walking the index in the listing's order
+    private static final int MATERIALIZE_LIMIT = 2_000;
+    private final EntityStore<Employee> employeeStore;
+    private final Map<Integer, NavigableSet<Integer>> departmentIndex;
+    private final SortedIndex<Integer> ageIndex;
+    private final SortedIndex<String> nameIndex;
+    private final SearchIndex searchIndex = new SearchIndex();
+    private final DepartmentStatsIndex statsIndex = new DepartmentStatsIndex();
+    private final List<ChangeListener> changeListeners = new CopyOnWriteArrayList<>();
     private final Logger logger = LoggerFactory.getLogger(EmployeeService.class);
     private DepartmentService departmentService;
     private AtomicInteger counter = new AtomicInteger(0);
+    private final AtomicLong versions = new AtomicLong();
+    private final AtomicLong collectionVersion = new AtomicLong();
+
+    private enum Driver { ALL, DEPARTMENT, AGE, NAME }
+    // Departments that were deleted: their employees are hidden from every read and write at once and removed
+    // in the background. Department ids are never reused, so an id stays here for good and also hides an
+    // employee created concurrently with the delete after the reclaimer has finished.
+    private final Set<Integer> retiredDepartments = ConcurrentHashMap.newKeySet();
+    // Completes once the indexes cover every stored employee, see deferIndexing. Until then reads scan the store.
+    private volatile CompletableFuture<Void> indexed = CompletableFuture.completedFuture(null);
+    private volatile boolean indexesDeferred;
+    // Set while buildIndexes is filling the indexes
+    private volatile IndexBuild indexBuild;
 
     public EmployeeService(){
-        hashMap = new HashMap<>();
+        this(null, new ConcurrentEntityStore<>());
     }
 
     public EmployeeService(DepartmentService departmentService){
-        hashMap = new HashMap<>();
+        this(departmentService, new ConcurrentEntityStore<>());
+    }
+
+    public EmployeeService(DepartmentService departmentService, EntityStore<Employee> employeeStore){
+        this.employeeStore = employeeStore;
+        this.departmentIndex = new ConcurrentHashMap<>();
+        this.ageIndex = new SortedIndex<>();
+        this.nameIndex = new SortedIndex<>();
         this.departmentService = departmentService;
     }
-    
-    private boolean isEmployeeExists(Integer empId) throws EmployeeNotFound {
-        if(!hashMap.containsKey(empId)) {
-            throw new EmployeeNotFound();
-        }
-        return true;
+
+    public void addChangeListener(ChangeListener changeListener) {
+        changeListeners.add(changeListener);
+    }
+
+    // Sizes are read on every poll; fan-out walks every department's id set, so it is cached between polls
+    public void registerMetrics(MetricRegistry metrics) {
+        metrics.register(MetricRegistry.name(EmployeeService.class, "employees"), (Gauge<Integer>) employeeStore::size);
+        metrics.register(MetricRegistry.name(EmployeeService.class, "ageIndex", "size"), (Gauge<Integer>) ageIndex::size);
+        metrics.register(MetricRegistry.name(EmployeeService.class, "nameIndex", "size"), (Gauge<Integer>) nameIndex::size);
+        metrics.register(MetricRegistry.name(EmployeeService.class, "searchIndex", "words"),
+                         (Gauge<Integer>) searchIndex::size);
+        metrics.register(MetricRegistry.name(EmployeeService.class, "departmentIndex", "size"),
+                         (Gauge<Integer>) departmentIndex::size);
+        CachedGauge<IntSummaryStatistics> fanOut = new CachedGauge<IntSummaryStatistics>(30, TimeUnit.SECONDS) {
+            @Override
+            protected IntSummaryStatistics loadValue() {
+                return departmentIndex.values().stream().mapToInt(Set::size).summaryStatistics();
+            }
+        };
+        metrics.register(MetricRegistry.name(EmployeeService.class, "departmentFanOut", "max"),
+                         (Gauge<Integer>) () -> fanOut.getValue().getCount() == 0 ? 0 : fanOut.getValue().getMax());
+        metrics.register(MetricRegistry.name(EmployeeService.class, "departmentFanOut", "mean"),
+                         (Gauge<Double>) () -> fanOut.getValue().getAverage());
+    }
+
+    // Changes whenever any employee is written. Read it before the data it describes: a write publishes it
+    // only once the write is visible, so the data read afterwards is at least that new.
+    public long getCollectionVersion() {
+        return collectionVersion.get();
     }
 
     public List<Employee> getAllEmployees(String attribute) {
         if(attribute.isEmpty()) {
-            return new ArrayList<>(hashMap.values());
+            List<Employee> employeeList = new ArrayList<>(employeeStore.size());
+            visibleOnly(iterateEmployees()).forEachRemaining(employeeList::add);
+            return employeeList;
         }
         return sortEmployees(attribute);
     }
 
-    public Employee getEmployeeById(Integer empId) throws EmployeeNotFound {
-        try{
-            if(isEmployeeExists(empId)) {
-                logger.debug("Employee {} details were fetched", empId);
+    public Page<Employee> getEmployees(String attribute, String cursor, int limit) throws InvalidCursor {
+        Cursor pageCursor = Cursor.decode(cursor);
+        if(attribute.isEmpty()) {
+            return Page.collect(visibleOnly(employeeStore.valuesAfter(afterId(pageCursor))), limit,
+                                employee -> Cursor.encode(employee.getEmpId()));
+        }
+        if(!indexesReady()) {
+            return scanPage(attribute, null, pageCursor, limit);
+        }
+        if(attribute.equals("age")) {
+            checkSortable(ageIndex, attribute);
+            return Page.collect(lookupEmployees(ageIndex.idsAfter(afterAge(pageCursor), afterId(pageCursor))), limit,
+                                cursorOf(attribute));
+        }
+        if(attribute.equals("name")) {
+            checkSortable(nameIndex, attribute);
+            return Page.collect(lookupEmployees(nameIndex.idsAfter(afterName(pageCursor), afterId(pageCursor))), limit,
+                                cursorOf(attribute));
+        }
+        throw new IllegalArgumentException();
+    }
+
+    // The walk is driven by the index that holds the fewest candidates for the filter, and the rest of the
+    // filter is checked on each record it reaches. Indexes are counted only up to the best one so far and at
+    // most MATERIALIZE_LIMIT, so planning costs no more than a small walk. A walk already in the listing's
+    // order stops once the page is full; any other is read whole and sorted, so it is only taken when it
+    // was counted below the limit.
+    public Page<Employee> getEmployees(String attribute, EmployeeFilter filter, String cursor, int limit)
+            throws InvalidCursor {
+        if(filter.isEmpty()) {
+            return getEmployees(attribute, cursor, limit);
+        }
+        if(!indexesReady()) {
+            return scanPage(attribute, filter, Cursor.decode(cursor), limit);
+        }
+        Driver ordered;
+        if(attribute.isEmpty()) {
+            ordered = filter.getDepId() == null ? Driver.ALL : Driver.DEPARTMENT;
+        }
+        else if(attribute.equals("age")) {
+            checkSortable(ageIndex, attribute);
+            ordered = Driver.AGE;
+        }
+        else if(attribute.equals("name")) {
+            checkSortable(nameIndex, attribute);
+            ordered = Driver.NAME;
+        }
+        else {
+            throw new IllegalArgumentException();
+        }
+        Cursor pageCursor = Cursor.decode(cursor);
+        Integer afterAge = ordered == Driver.AGE ? afterAge(pageCursor) : null;
+        String afterName = ordered == Driver.NAME ? afterName(pageCursor) : null;
+
+        NavigableSet<Integer> depEmpIds = null;
+        if(filter.getDepId() != null) {
+            depEmpIds = departmentIndex.get(filter.getDepId());
+            if(depEmpIds == null || retiredDepartments.contains(filter.getDepId())) {
+                return new Page<>(Collections.emptyList(), null);
+            }
+        }
+        Driver smallest = null;
+        int fewest = MATERIALIZE_LIMIT;
+        if(depEmpIds != null) {
+            int count = countUpTo(depEmpIds.iterator(), fewest);
+            if(count < fewest) {
+                smallest = Driver.DEPARTMENT;
+                fewest = count;
+            }
+        }
+        if(filter.hasAgeRange()) {
+            int count = countUpTo(ageIndex.idsBetween(filter.getMinAge(), filter.ageBound(), null, 0), fewest);
+            if(count < fewest) {
+                smallest = Driver.AGE;
+                fewest = count;
+            }
+        }
+        if(filter.getNamePrefix() != null) {
+            int count = countUpTo(nameIndex.idsBetween(filter.getNamePrefix(), filter.nameBound(), null, 0), fewest);
+            if(count < fewest) {
+                smallest = Driver.NAME;
+                fewest = count;
             }
         }
-        catch (EmployeeNotFound employeeNotFound){
-            logger.error("Employee {} not exists", empId);
-            throw employeeNotFound;
+
+        int afterId = afterId(pageCursor);
+        if(smallest == null || smallest == ordered) {
+            Iterator<Employee> employees;
+            switch(ordered) {
+                case DEPARTMENT:
+                    employees = lookupEmployees(depEmpIds.tailSet(afterId, false).iterator());
+                    break;
+                case AGE:
+                    employees = lookupEmployees(ageIndex.idsBetween(filter.getMinAge(), filter.ageBound(), afterAge,
+                                                                    afterId));
+                    break;
+                case NAME:
+                    employees = lookupEmployees(nameIndex.idsBetween(filter.getNamePrefix(), filter.nameBound(),
+                                                                     afterName, afterId));
+                    break;
+                default:
+                    employees = visibleOnly(employeeStore.valuesAfter(afterId));
+            }
+            return Page.collect(matching(employees, filter), limit, cursorOf(attribute));
+        }
+
+        Iterator<Integer> empIds;
+        if(smallest == Driver.DEPARTMENT) {
+            empIds = depEmpIds.iterator();
+        }
+        else if(smallest == Driver.AGE) {
+            empIds = ageIndex.idsBetween(filter.getMinAge(), filter.ageBound(), null, 0);
+        }
+        else {
+            empIds = nameIndex.idsBetween(filter.getNamePrefix(), filter.nameBound(), null, 0);
+        }
+        List<Employee> matches = new ArrayList<>(fewest);
+        matching(lookupEmployees(empIds), filter).forEachRemaining(employee -> {
+            if(employee != null && (pageCursor == null || isAfter(employee, attribute, afterAge, afterName, afterId))) {
+                matches.add(employee);
+            }
+        });
+        matches.sort(orderOf(attribute));
+        return Page.collect(matches.iterator(), limit, cursorOf(attribute));
+    }
+
+    // Best matches first, see SearchIndex; the cursor carries the rank of the last match and its id
+    public Page<Employee> searchEmployees(String text, String cursor, int limit) throws InvalidCursor {
+        List<String> query = SearchIndex.tokenize(text);
+        if(query.isEmpty()) {
+            throw new IllegalArgumentException("Search text has no words");
+        }
+        Cursor pageCursor = Cursor.decode(cursor);
+        int fromRank = SearchIndex.NAME_WORD;
+        if(pageCursor != null) {
+            try {
+                fromRank = Integer.parseInt(String.valueOf(pageCursor.getKey()));
+            }
+            catch(NumberFormatException numberFormatException) {
+                throw new InvalidCursor();
+            }
+            if(fromRank < SearchIndex.PREFIX || fromRank > SearchIndex.NAME_WORD) {
+                throw new InvalidCursor();
+            }
+        }
+        Iterator<Employee> matches = indexesReady() ? searchMatches(query, fromRank, afterId(pageCursor))
+                                                    : scanSearchMatches(query, fromRank, afterId(pageCursor));
+        return Page.collect(matches, limit,
+                            employee -> Cursor.encode(employee.getEmpId(),
+                                                      SearchIndex.rank(query, employee.getName(), employee.getEmail())));
+    }
+
+    // Walks the candidates of each rank in turn, from the given rank and id on. A candidate that ranks
+    // differently from the walk it came from is left to that rank's walk, and comes out as a null.
+    private Iterator<Employee> searchMatches(List<String> query, int fromRank, int afterId) {
+        return new Iterator<Employee>() {
+            private int rank = fromRank;
+            private Iterator<Integer> candidates = searchIndex.candidates(query, rank, afterId);
+
+            @Override
+            public boolean hasNext() {
+                while(!candidates.hasNext() && rank > SearchIndex.PREFIX) {
+                    candidates = searchIndex.candidates(query, --rank, Integer.MIN_VALUE);
+                }
+                return candidates.hasNext();
+            }
+
+            @Override
+            public Employee next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Employee employee = visible(employeeStore.get(candidates.next()));
+                return employee != null && SearchIndex.rank(query, employee.getName(), employee.getEmail()) == rank
+                       ? employee : null;
+            }
+        };
+    }
+
+    // The search walk while the indexes are being built: ranks every employee and orders the matches the same way
+    private Iterator<Employee> scanSearchMatches(List<String> query, int fromRank, int afterId) {
+        List<List<Employee>> byRank = new ArrayList<>();
+        for(int rank = SearchIndex.NO_MATCH; rank <= SearchIndex.NAME_WORD; rank++) {
+            byRank.add(new ArrayList<>());
+        }
+        iterateEmployees().forEachRemaining(employee -> {
+            int rank = SearchIndex.rank(query, employee.getName(), employee.getEmail());
+            if(rank != SearchIndex.NO_MATCH && (rank < fromRank || rank == fromRank && employee.getEmpId() > afterId)) {
+                byRank.get(rank).add(employee);
+            }
+        });
+        List<Employee> matches = new ArrayList<>();
+        for(int rank = SearchIndex.NAME_WORD; rank > SearchIndex.NO_MATCH; rank--) {
+            matches.addAll(byRank.get(rank));
+        }
+        return matches.iterator();
+    }
+
+    // Walks the store in id order without materialising a list, for streaming exports
+    public Iterator<Employee> iterateEmployees() {
+        return visibleOnly(employeeStore.valuesAfter(Integer.MIN_VALUE));
+    }
+
+    public Optional<Employee> findEmployee(Integer empId) {
+        return Optional.ofNullable(visible(employeeStore.get(empId)));
+    }
+
+    public Employee getEmployeeById(Integer empId) throws EmployeeNotFound {
+        Employee employee = visible(employeeStore.get(empId));
+        if(employee == null) {
+            logger.debug("Employee {} not exists", empId);
+            throw new EmployeeNotFound(empId);
         }
-        return hashMap.get(empId);
+        logger.debug("Employee {} details were fetched", empId);
+        return employee;
     }
 
     public List<Employee> getEmpsOfDepartment(Integer depId){
-        List<Employee> employeeList = new ArrayList<>();
-        hashMap.forEach((key, value)-> {
-            if(value.getDepId() == depId)
-                employeeList.add(value);
+        if(retiredDepartments.contains(depId)) {
+            return Collections.emptyList();
+        }
+        if(!indexesReady()) {
+            List<Employee> employeeList = new ArrayList<>();
+            matching(iterateEmployees(), departmentFilter(depId)).forEachRemaining(employee -> {
+                if(employee != null)
+                    employeeList.add(employee);
+            });
+            return employeeList;
+        }
+        Set<Integer> empIds = departmentIndex.getOrDefault(depId, Collections.emptyNavigableSet());
+        List<Employee> employeeList = new ArrayList<>(empIds.size());
+        empIds.forEach(empId -> {
+            Employee employee = employeeStore.get(empId);
+            if(employee != null)
+                employeeList.add(employee);
         });
         return employeeList;
     }
 
+    // Read off running totals, so it costs the same however many employees the department has
+    public DepartmentStats getDepartmentStats(Integer depId) {
+        if(!indexesReady()) {
+            DepartmentStatsIndex departmentStats = new DepartmentStatsIndex();
+            getEmpsOfDepartment(depId).forEach(employee -> departmentStats.add(depId, employee.getAge()));
+            return departmentStats.get(depId);
+        }
+        return statsIndex.get(depId);
+    }
+
+    public Page<Employee> getEmpsOfDepartment(Integer depId, String cursor, int limit) throws InvalidCursor {
+        Cursor pageCursor = Cursor.decode(cursor);
+        if(!indexesReady()) {
+            Iterator<Employee> employees = visibleOnly(employeeStore.valuesAfter(afterId(pageCursor)));
+            return Page.collect(matching(employees, departmentFilter(depId)), limit,
+                                employee -> Cursor.encode(employee.getEmpId()));
+        }
+        NavigableSet<Integer> empIds = departmentIndex.get(depId);
+        if(empIds == null || retiredDepartments.contains(depId)) {
+            return new Page<>(Collections.emptyList(), null);
+        }
+        return Page.collect(lookupEmployees(empIds.tailSet(afterId(pageCursor), false).iterator()), limit,
+                            employee -> Cursor.encode(employee.getEmpId()));
+    }
+
+    // The highest id handed out so far; ids are never reused, even those of deleted employees
+    public int getLastId() {
+        return counter.get();
+    }
+
+    // Keeps new ids above one handed out before a restart, by a employee that may be gone since
+    public void reserveIds(int lastId) {
+        counter.accumulateAndGet(lastId, Math::max);
+    }
+
     public Employee createEmployee(Employee employee) throws DepartmentNotFound {
-        Integer empId = counter.incrementAndGet();
+        beforeChange();
         Integer depId = employee.getDepId();
-        employee.setEmpId(empId);
-        try{
-            if(departmentService.isDepartmentExists(depId)){
-                hashMap.put(empId, employee);
-                logger.debug("Employee {} details fetched", empId);
-            }
-        }
-        catch(DepartmentNotFound departmentNotFound){
-            counter.decrementAndGet();
-            logger.error("Department {} was not exists", depId);
-            throw departmentNotFound;
+        if(!departmentService.hasDepartment(depId)) {
+            logger.debug("Department {} was not exists", depId);
+            throw new DepartmentNotFound(depId);
         }
+        // The id is only taken once the department is known to exist, so there is nothing to roll back
+        Integer empId = counter.incrementAndGet();
+        employee.setEmpId(empId);
+        afterChange(putEmployee(employee, true));
+        logger.debug("Employee {} details fetched", empId);
         return employee;
     }
 
     public Employee updateEmployee(Integer empId, Employee employee) throws DepartmentNotFound, EmployeeNotFound {
-        try{
-            if(isEmployeeExists(empId) && departmentService.isDepartmentExists(employee.getDepId())) {
-                hashMap.get(empId).setName(employee.getName());
-                logger.debug("Employee {} details updated", empId);
-            }
+        beforeChange();
+        if(!findEmployee(empId).isPresent()) {
+            logger.debug("Employee {} not exists", empId);
+            throw new EmployeeNotFound(empId);
         }
-        catch(DepartmentNotFound departmentNotFound){
-            logger.error("Department {} not exists", empId);
-            throw departmentNotFound;
+        if(!departmentService.hasDepartment(employee.getDepId())) {
+            logger.debug("Department {} not exists", employee.getDepId());
+            throw new DepartmentNotFound(employee.getDepId());
         }
-        catch(EmployeeNotFound employeeNotFound){
-            logger.error("Employee {} not exists", empId);
-            throw employeeNotFound;
+        ChangeEvent changeEvent = replaceEmployee(empId, employee);
+        if(changeEvent == null) {
+            throw new EmployeeNotFound(empId);
         }
-        return employee;
+        afterChange(changeEvent);
+        logger.debug("Employee {} details updated", empId);
+        return changeEvent.getEmployee();
     }
 
     public void deleteEmployee(Integer empId) throws EmployeeNotFound {
-        try{
-            if(isEmployeeExists(empId)) {
-                hashMap.remove(empId);
-                logger.debug("Employee {} was deleted", empId);
+        beforeChange();
+        ChangeEvent changeEvent = findEmployee(empId).isPresent() ? removeEmployee(empId) : null;
+        if(changeEvent == null) {
+            logger.debug("Employee {} not exists", empId);
+            throw new EmployeeNotFound(empId);
+        }
+        afterChange(changeEvent);
+        logger.debug("Employee {} was deleted", empId);
+    }
+
+    // Bulk variants: each department is looked up once per batch, every record is applied before anyone waits,
+    // and the batch's log records are queued back to back so they share the same group commits
+    public List<BulkItemResult> createEmployees(List<Employee> employees) {
+        beforeChange();
+        Map<Integer, Boolean> departments = resolveDepartments(employees);
+        int accepted = 0;
+        for(Employee employee : employees) {
+            if(departments.get(employee.getDepId())) {
+                accepted++;
             }
         }
-        catch(EmployeeNotFound employeeNotFound){
-            logger.error("Employee {} not exists", empId);
-            throw employeeNotFound;
+        int nextEmpId = counter.getAndAdd(accepted) + 1;
+
+        List<BulkItemResult> results = new ArrayList<>(employees.size());
+        List<ChangeEvent> changeEvents = new ArrayList<>(accepted);
+        for(Employee employee : employees) {
+            if(!departments.get(employee.getDepId())) {
+                results.add(departmentNotFound(employee.getDepId()));
+                continue;
+            }
+            Integer empId = nextEmpId++;
+            employee.setEmpId(empId);
+            changeEvents.add(putEmployee(employee, true));
+            results.add(new BulkItemResult(Response.Status.CREATED, empId, null));
         }
+        afterChanges(changeEvents);
+        logger.debug("{} of {} employees created in bulk", changeEvents.size(), employees.size());
+        return results;
     }
 
-    public List<Employee> sortEmployees(String attribute){
-        List<Employee> employeeList = new ArrayList<>();
-        hashMap.forEach((key, value)-> {
-            employeeList.add(value);
+    public List<BulkItemResult> updateEmployees(List<Employee> employees) {
+        beforeChange();
+        Map<Integer, Boolean> departments = resolveDepartments(employees);
+        List<BulkItemResult> results = new ArrayList<>(employees.size());
+        List<ChangeEvent> changeEvents = new ArrayList<>(employees.size());
+        for(Employee employee : employees) {
+            Integer empId = employee.getEmpId();
+            if(!departments.get(employee.getDepId())) {
+                results.add(departmentNotFound(employee.getDepId()));
+                continue;
+            }
+            ChangeEvent changeEvent = empId == null ? null : replaceEmployee(empId, employee);
+            if(changeEvent == null) {
+                results.add(employeeNotFound(empId));
+                continue;
+            }
+            changeEvents.add(changeEvent);
+            results.add(new BulkItemResult(Response.Status.OK, empId, null));
+        }
+        afterChanges(changeEvents);
+        logger.debug("{} of {} employees updated in bulk", changeEvents.size(), employees.size());
+        return results;
+    }
+
+    public List<BulkItemResult> deleteEmployees(List<Integer> empIds) {
+        beforeChange();
+        List<BulkItemResult> results = new ArrayList<>(empIds.size());
+        List<ChangeEvent> changeEvents = new ArrayList<>(empIds.size());
+        for(Integer empId : empIds) {
+            ChangeEvent changeEvent = empId == null || !findEmployee(empId).isPresent() ? null : removeEmployee(empId);
+            if(changeEvent == null) {
+                results.add(employeeNotFound(empId));
+                continue;
+            }
+            changeEvents.add(changeEvent);
+            results.add(new BulkItemResult(Response.Status.NO_CONTENT, empId, null));
+        }
+        afterChanges(changeEvents);
+        logger.debug("{} of {} employees deleted in bulk", changeEvents.size(), empIds.size());
+        return results;
+    }
+
+    // Hides every employee of a deleted department in one step; returns how many are left to reclaim
+    public int retireDepartment(Integer depId) {
+        retiredDepartments.add(depId);
+        publishVersion(versions.incrementAndGet());
+        NavigableSet<Integer> empIds = empIdsOf(depId);
+        return empIds == null ? 0 : empIds.size();
+    }
+
+    // Removes up to max employees of a retired department as one batch; returns how many went, 0 once none are left
+    public int reclaimEmployees(Integer depId, int max) {
+        beforeChange();
+        NavigableSet<Integer> empIds = empIdsOf(depId);
+        if(empIds == null) {
+            return 0;
+        }
+        List<ChangeEvent> changeEvents = new ArrayList<>(Math.min(max, empIds.size()));
+        Iterator<Integer> remaining = empIds.iterator();
+        while(changeEvents.size() < max && remaining.hasNext()) {
+            ChangeEvent changeEvent = removeEmployee(remaining.next());
+            if(changeEvent != null) {
+                changeEvents.add(changeEvent);
+            }
+        }
+        afterChanges(changeEvents);
+        return changeEvents.size();
+    }
+
+    // Departments that still have employees, including deleted ones whose employees are not reclaimed yet
+    public Set<Integer> getIndexedDepartmentIds() {
+        if(!indexesReady()) {
+            Set<Integer> depIds = new HashSet<>();
+            employeeStore.forEach(employee -> depIds.add(employee.getDepId()));
+            return Collections.unmodifiableSet(depIds);
+        }
+        return Collections.unmodifiableSet(departmentIndex.keySet());
+    }
+
+    // Ids of every stored employee of the department, hidden ones included, or null if it has none
+    private NavigableSet<Integer> empIdsOf(Integer depId) {
+        if(indexesReady()) {
+            return departmentIndex.get(depId);
+        }
+        NavigableSet<Integer> empIds = new TreeSet<>();
+        employeeStore.forEach(employee -> {
+            if(depId.equals(employee.getDepId())) {
+                empIds.add(employee.getEmpId());
+            }
         });
+        return empIds.isEmpty() ? null : empIds;
+    }
 
-        if(attribute.equals("age")) {
+    // Applies a recovered event without validation or notification and keeps new ids above every recovered one
+    public void replay(ChangeEvent changeEvent) {
+        Integer empId = changeEvent.getId();
+        if(changeEvent.getOperation() == ChangeEvent.Operation.DELETE) {
+            if(removeIndexed(empId) != null) {
+                publishVersion(versions.incrementAndGet());
+            }
+        }
+        else {
+            putEmployee(changeEvent.getEmployee(), false);
+        }
+        counter.accumulateAndGet(empId, Math::max);
+    }
+
+    // For a store that came up already holding employees, such as one over a mapped snapshot. Until
+    // buildIndexes runs, writes such as log replay leave the indexes alone: the build covers the store as it
+    // ends up.
+    public void deferIndexing() {
+        indexesDeferred = true;
+        indexed = new CompletableFuture<>();
+    }
+
+    // Indexes the stored employees on a background thread, so a large store does not hold up startup. The
+    // caller has already reserved their ids. Reads scan the store meanwhile. Writes go ahead and index their
+    // records as usual; each id goes to whichever of a write and the build claims it first, see IndexBuild. A
+    // build that fails leaves reads on scans and is reported by EmployeeIndexHealthCheck.
+    public CompletableFuture<Void> buildIndexes() {
+        CompletableFuture<Void> building = indexed;
+        if(!indexesDeferred) {
+            return building;
+        }
+        IndexBuild build = new IndexBuild();
+        indexBuild = build;
+        indexesDeferred = false;
+        Thread builder = new Thread(() -> {
+            long startNanos = System.nanoTime();
             try {
-                Collections.sort(employeeList, new AgeSorter());
+                employeeStore.forEach(employee -> {
+                    synchronized(build.lockOf(employee.getEmpId())) {
+                        if(build.claim(employee.getEmpId())) {
+                            addToIndexes(employee);
+                        }
+                    }
+                });
+                // Every stored id is claimed now, so writes can go back to indexing without a claim
+                indexBuild = null;
+                publishVersion(versions.incrementAndGet());
+                logger.info("Indexed {} stored employees in {} ms", employeeStore.size(),
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+                building.complete(null);
+            }
+            catch(RuntimeException e) {
+                logger.error("Failed to index stored employees, listings and searches fall back to scans", e);
+                building.completeExceptionally(e);
             }
-            catch(NullPointerException nullPointerException){
-               throw nullPointerException;
-           }
+        }, "ems-index-build");
+        builder.setDaemon(true);
+        builder.start();
+        return building;
+    }
+
+    // Completes once every stored employee is indexed, at once unless indexing was deferred
+    public CompletableFuture<Void> indexesBuilt() {
+        return indexed;
+    }
+
+    // Bulk-load path for seed data: no notification, and an employee whose department is unknown is skipped
+    public boolean loadEmployee(Employee employee) {
+        if(employee.getDepId() == null || !departmentService.hasDepartment(employee.getDepId())) {
+            return false;
+        }
+        if(employee.getEmpId() == null) {
+            employee.setEmpId(counter.incrementAndGet());
+        }
+        else {
+            counter.accumulateAndGet(employee.getEmpId(), Math::max);
+        }
+        putEmployee(employee, false);
+        return true;
+    }
+
+    public List<Employee> sortEmployees(String attribute){
+        SortedIndex<?> sortedIndex;
+        if(attribute.equals("age")) {
+            sortedIndex = ageIndex;
         }
         else if(attribute.equals("name")){
-            Collections.sort(employeeList, new NameSorter());
+            sortedIndex = nameIndex;
         }
         else{
            throw new IllegalArgumentException();
         }
+        if(!indexesReady()) {
+            return scanSorted(attribute, employee -> true);
+        }
+        checkSortable(sortedIndex, attribute);
+
+        List<Integer> sortedEmpIds = sortedIndex.ids();
+        List<Employee> employeeList = new ArrayList<>(sortedEmpIds.size());
+        sortedEmpIds.forEach(empId -> {
+            Employee employee = visible(employeeStore.get(empId));
+            if(employee != null)
+                employeeList.add(employee);
+        });
         return employeeList;
     }
 
+    private boolean indexesReady() {
+        CompletableFuture<Void> indexes = indexed;
+        return indexes.isDone() && !indexes.isCompletedExceptionally();
+    }
+
+    // The sorted and filtered walks while the indexes are being built: reads the whole store and sorts it
+    private Page<Employee> scanPage(String attribute, EmployeeFilter filter, Cursor pageCursor, int limit)
+            throws InvalidCursor {
+        if(!attribute.isEmpty() && !attribute.equals("age") && !attribute.equals("name")) {
+            throw new IllegalArgumentException();
+        }
+        Integer afterAge = attribute.equals("age") ? afterAge(pageCursor) : null;
+        String afterName = attribute.equals("name") ? afterName(pageCursor) : null;
+        int afterId = afterId(pageCursor);
+        List<Employee> matches = scanSorted(attribute, employee ->
+                (filter == null || filter.matches(employee))
+                && (pageCursor == null || isAfter(employee, attribute, afterAge, afterName, afterId)));
+        return Page.collect(matches.iterator(), limit, cursorOf(attribute));
+    }
+
+    private List<Employee> scanSorted(String attribute, Predicate<Employee> wanted) {
+        List<Employee> matches = new ArrayList<>();
+        iterateEmployees().forEachRemaining(employee -> {
+            if(attribute.equals("age") && employee.getAge() == null
+               || attribute.equals("name") && employee.getName() == null) {
+                throw new NullPointerException("Employees without " + attribute + " cannot be sorted by it");
+            }
+            if(wanted.test(employee)) {
+                matches.add(employee);
+            }
+        });
+        matches.sort(orderOf(attribute));
+        return matches;
+    }
+
+    private static EmployeeFilter departmentFilter(Integer depId) {
+        return new EmployeeFilter(depId, null, null, null);
+    }
+
+    private void checkSortable(SortedIndex<?> sortedIndex, String attribute) {
+        if(sortedIndex.hasIdsWithoutKey()) {
+            throw new NullPointerException("Employees without " + attribute + " cannot be sorted by it");
+        }
+    }
+
+    private static int afterId(Cursor pageCursor) {
+        return pageCursor == null ? Integer.MIN_VALUE : pageCursor.getId();
+    }
+
+    private static Integer afterAge(Cursor pageCursor) throws InvalidCursor {
+        if(pageCursor == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(pageCursor.getKey());
+        }
+        catch(NumberFormatException numberFormatException) {
+            throw new InvalidCursor();
+        }
+    }
+
+    private static String afterName(Cursor pageCursor) throws InvalidCursor {
+        if(pageCursor != null && pageCursor.getKey() == null) {
+            throw new InvalidCursor();
+        }
+        return pageCursor == null ? null : pageCursor.getKey();
+    }
+
+    private static Function<Employee, String> cursorOf(String attribute) {
+        if(attribute.equals("age")) {
+            return employee -> Cursor.encode(employee.getEmpId(), employee.getAge());
+        }
+        if(attribute.equals("name")) {
+            return employee -> Cursor.encode(employee.getEmpId(), employee.getName());
+        }
+        return employee -> Cursor.encode(employee.getEmpId());
+    }
+
+    private static Comparator<Employee> orderOf(String attribute) {
+        Comparator<Employee> byId = Comparator.comparing(Employee::getEmpId);
+        if(attribute.equals("age")) {
+            return Comparator.comparing(Employee::getAge).thenComparing(byId);
+        }
+        if(attribute.equals("name")) {
+            return Comparator.comparing(Employee::getName).thenComparing(byId);
+        }
+        return byId;
+    }
+
+    private static boolean isAfter(Employee employee, String attribute, Integer afterAge, String afterName,
+                                   int afterId) {
+        int byKey = 0;
+        if(attribute.equals("age")) {
+            byKey = employee.getAge().compareTo(afterAge);
+        }
+        else if(attribute.equals("name")) {
+            byKey = employee.getName().compareTo(afterName);
+        }
+        return byKey != 0 ? byKey > 0 : employee.getEmpId() > afterId;
+    }
+
+    private static int countUpTo(Iterator<?> iterator, int max) {
+        int count = 0;
+        while(count < max && iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        return count;
+    }
+
+    // Leaves a null in place of each employee the filter rejects, for Page.collect to skip
+    private static Iterator<Employee> matching(Iterator<Employee> employees, EmployeeFilter filter) {
+        return new Iterator<Employee>() {
+            @Override
+            public boolean hasNext() {
+                return employees.hasNext();
+            }
+
+            @Override
+            public Employee next() {
+                Employee employee = employees.next();
+                return employee != null && filter.matches(employee) ? employee : null;
+            }
+        };
+    }
+
+    private Iterator<Employee> lookupEmployees(Iterator<Integer> empIds) {
+        return new Iterator<Employee>() {
+            @Override
+            public boolean hasNext() {
+                return empIds.hasNext();
+            }
+
+            @Override
+            public Employee next() {
+                return visible(employeeStore.get(empIds.next()));
+            }
+        };
+    }
+
+    private Employee visible(Employee employee) {
+        return employee == null || retiredDepartments.contains(employee.getDepId()) ? null : employee;
+    }
+
+    // Skips the employees of retired departments, for consumers that cannot take the nulls Page.collect skips
+    private Iterator<Employee> visibleOnly(Iterator<Employee> employees) {
+        return new Iterator<Employee>() {
+            private Employee next = advance();
+
+            private Employee advance() {
+                while(employees.hasNext()) {
+                    Employee employee = visible(employees.next());
+                    if(employee != null) {
+                        return employee;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Employee next() {
+                if(next == null) {
+                    throw new NoSuchElementException();
+                }
+                Employee employee = next;
+                next = advance();
+                return employee;
+            }
+        };
+    }
+
     public void addEmployeeForTests(Employee employee){
-        hashMap.put(employee.getEmpId(), employee);
+        putEmployee(employee, false);
+    }
+
+    private Map<Integer, Boolean> resolveDepartments(List<Employee> employees) {
+        Map<Integer, Boolean> departments = new HashMap<>();
+        for(Employee employee : employees) {
+            departments.computeIfAbsent(employee.getDepId(),
+                                        depId -> depId != null && departmentService.hasDepartment(depId));
+        }
+        return departments;
+    }
+
+    private static BulkItemResult departmentNotFound(Integer depId) {
+        return new BulkItemResult(Response.Status.BAD_REQUEST, null, "Department " + depId + " not exists");
+    }
+
+    private static BulkItemResult employeeNotFound(Integer empId) {
+        return new BulkItemResult(Response.Status.NOT_FOUND, empId, "Employee " + empId + " not found");
+    }
+
+    // Swaps in a copy carrying the new department and name; returns null when the employee does not exist
+    private ChangeEvent replaceEmployee(Integer empId, Employee employee) {
+        AtomicReference<ChangeEvent> changeEvent = new AtomicReference<>();
+        employeeStore.compute(empId, (id, existingEmployee) -> {
+            if(visible(existingEmployee) == null) {
+                return existingEmployee;
+            }
+            // A replace renames the employee and nothing else; the body's department is only checked to exist
+            Employee replacement = new Employee(id, existingEmployee.getDepId(), employee.getName(),
+                                                existingEmployee.getEmail(), existingEmployee.getAge());
+            replacement.setVersion(versions.incrementAndGet());
+            unindexEmployee(existingEmployee);
+            indexEmployee(replacement);
+            changeEvent.set(ChangeEvent.ofEmployee(ChangeEvent.Operation.UPDATE, id, replacement, existingEmployee));
+            onChange(changeEvent.get());
+            return replacement;
+        });
+        if(changeEvent.get() != null) {
+            publishVersion(changeEvent.get().getEmployee().getVersion());
+        }
+        return changeEvent.get();
+    }
+
+    private ChangeEvent removeEmployee(Integer empId) {
+        Employee removedEmployee = removeIndexed(empId);
+        if(removedEmployee == null) {
+            return null;
+        }
+        publishVersion(versions.incrementAndGet());
+        // Ids are never reused, so nothing can write this id again and the event needs no lock to stay ordered
+        ChangeEvent changeEvent = ChangeEvent.ofEmployee(ChangeEvent.Operation.DELETE, empId, null, removedEmployee);
+        onChange(changeEvent);
+        return changeEvent;
+    }
+
+    // Drops the record and its index entries in one compute on the id, so a concurrent write to the same id can
+    // never re-index it between the two
+    private Employee removeIndexed(Integer empId) {
+        AtomicReference<Employee> removedEmployee = new AtomicReference<>();
+        employeeStore.compute(empId, (id, existing) -> {
+            if(existing != null) {
+                unindexEmployee(existing);
+                removedEmployee.set(existing);
+            }
+            return null;
+        });
+        return removedEmployee.get();
+    }
+
+    // Stores a new record; returns the CREATE event when listeners are notified, null otherwise
+    private ChangeEvent putEmployee(Employee employee, boolean notify) {
+        AtomicReference<ChangeEvent> changeEvent = new AtomicReference<>();
+        employeeStore.compute(employee.getEmpId(), (empId, existingEmployee) -> {
+            if(existingEmployee != null) {
+                unindexEmployee(existingEmployee);
+            }
+            employee.setVersion(versions.incrementAndGet());
+            indexEmployee(employee);
+            if(notify) {
+                changeEvent.set(ChangeEvent.ofEmployee(ChangeEvent.Operation.CREATE, empId, employee, existingEmployee));
+                onChange(changeEvent.get());
+            }
+            return employee;
+        });
+        publishVersion(employee.getVersion());
+        return changeEvent.get();
+    }
+
+    private void publishVersion(long version) {
+        collectionVersion.accumulateAndGet(version, Math::max);
+    }
+
+    // Lets a listener refuse the write before anything is applied, see ChangeListener.beforeChange
+    private void beforeChange() {
+        for(ChangeListener changeListener : changeListeners) {
+            changeListener.beforeChange();
+        }
+    }
+
+    private void onChange(ChangeEvent changeEvent) {
+        for(ChangeListener changeListener : changeListeners) {
+            changeListener.onChange(changeEvent);
+        }
+    }
+
+    private void afterChange(ChangeEvent changeEvent) {
+        for(ChangeListener changeListener : changeListeners) {
+            changeListener.afterChange(changeEvent);
+        }
+    }
+
+    private void afterChanges(List<ChangeEvent> changeEvents) {
+        for(ChangeEvent changeEvent : changeEvents) {
+            afterChange(changeEvent);
+        }
+    }
+
+    // Keeps the secondary indexes in step with the store so department lookups and sorted listings never scan
+    // every employee. Every write path calls them inside the store's per-id compute, so writes to one id never
+    // interleave.
+    private void indexEmployee(Employee employee) {
+        if(indexesDeferred) {
+            return;
+        }
+        IndexBuild build = indexBuild;
+        if(build == null) {
+            addToIndexes(employee);
+            return;
+        }
+        synchronized(build.lockOf(employee.getEmpId())) {
+            build.claim(employee.getEmpId());
+            addToIndexes(employee);
+        }
+    }
+
+    private void unindexEmployee(Employee employee) {
+        if(indexesDeferred) {
+            return;
+        }
+        IndexBuild build = indexBuild;
+        if(build == null) {
+            removeFromIndexes(employee);
+            return;
+        }
+        synchronized(build.lockOf(employee.getEmpId())) {
+            // Claimed here, the record was never indexed and the build leaves it alone from now on
+            if(!build.claim(employee.getEmpId())) {
+                removeFromIndexes(employee);
+            }
+        }
+    }
+
+    private void addToIndexes(Employee employee) {
+        ageIndex.add(employee.getAge(), employee.getEmpId());
+        nameIndex.add(employee.getName(), employee.getEmpId());
+        searchIndex.add(employee.getEmpId(), employee.getName(), employee.getEmail());
+        statsIndex.add(employee.getDepId(), employee.getAge());
+        departmentIndex.compute(employee.getDepId(), (depId, empIds) -> {
+            NavigableSet<Integer> departmentEmpIds = empIds == null ? new ConcurrentSkipListSet<>() : empIds;
+            departmentEmpIds.add(employee.getEmpId());
+            return departmentEmpIds;
+        });
+    }
+
+    private void removeFromIndexes(Employee employee) {
+        ageIndex.remove(employee.getAge(), employee.getEmpId());
+        nameIndex.remove(employee.getName(), employee.getEmpId());
+        searchIndex.remove(employee.getEmpId(), employee.getName(), employee.getEmail());
+        statsIndex.remove(employee.getDepId(), employee.getAge());
+        departmentIndex.computeIfPresent(employee.getDepId(), (depId, empIds) -> {
+            empIds.remove(employee.getEmpId());
+            return empIds.isEmpty() ? null : empIds;
+        });
+    }
+
+    // Ids the build and the writes running alongside it have indexed. Whichever claims an id first indexes it:
+    // the build as it found the record, a write as it leaves it. A write claims an id inside the store's compute
+    // before its record changes, so a record the build claims is still as the build found it.
+    private static final class IndexBuild {
+        private static final int STRIPES = 64;
+        private final Set<Integer> claimed = ConcurrentHashMap.newKeySet();
+        private final Object[] locks = new Object[STRIPES];
+
+        IndexBuild() {
+            for(int stripe = 0; stripe < STRIPES; stripe++) {
+                locks[stripe] = new Object();
+            }
+        }
+
+        Object lockOf(int empId) {
+            return locks[empId & (STRIPES - 1)];
+        }
+
+        boolean claim(int empId) {
+            return claimed.add(empId);
+        }
     }
 }
@@ -0,0 +1,94 @@
+// Compact storage engine for very large tenants. An employee is a slot across primitive columns rather than an
+// object with boxed fields behind a boxed key: ids, department ids and ages are ints, and names and emails are
+// handles into a pool holding each distinct string once. Employee objects only exist while a caller holds one.
+
+package com.freshworks.ems.store;
+
+import com.freshworks.ems.model.Employee;
+
+import java.util.Arrays;
+
+public class ColumnarEmployeeStore extends SlottedEmployeeStore {
+    private final StringPool strings = new StringPool();
+
+    private int[] empIds;
+    private int[] depIds;
+    private int[] ages;
+    private int[] names;
+    private int[] emails;
+    private long[] versions;
+
+    public ColumnarEmployeeStore() {
+        this(1024);
+    }
+
+    public ColumnarEmployeeStore(int initialCapacity) {
+        super(Math.max(16, initialCapacity));
+        int capacity = Math.max(16, initialCapacity);
+        empIds = new int[capacity];
+        depIds = new int[capacity];
+        ages = new int[capacity];
+        names = new int[capacity];
+        emails = new int[capacity];
+        versions = new long[capacity];
+    }
+
+    // Distinct names and emails held by the pool, for sizing
+    public int pooledStrings() {
+        return read(strings::size);
+    }
+
+    @Override
+    Employee materialize(int slot) {
+        int[] empIds = this.empIds, depIds = this.depIds, ages = this.ages, names = this.names, emails = this.emails;
+        long[] versions = this.versions;
+        if (slot < 0 || slot >= Math.min(Math.min(empIds.length, depIds.length), Math.min(ages.length, versions.length))
+            || slot >= Math.min(names.length, emails.length)) {
+            return null;
+        }
+        Employee employee = new Employee(empIds[slot], boxed(depIds[slot]), strings.get(names[slot]),
+                                         strings.get(emails[slot]), boxed(ages[slot]));
+        employee.setVersion(versions[slot]);
+        return employee;
+    }
+
+    @Override
+    void write(int slot, int id, Employee employee, boolean replacing) {
+        // New strings are taken before the old ones are let go, so a value both share is never dropped in between
+        int name = strings.acquire(employee.getName());
+        int email = strings.acquire(employee.getEmail());
+        if (replacing) {
+            strings.release(names[slot]);
+            strings.release(emails[slot]);
+        }
+        empIds[slot] = id;
+        depIds[slot] = unboxed(employee.getDepId());
+        ages[slot] = unboxed(employee.getAge());
+        names[slot] = name;
+        emails[slot] = email;
+        versions[slot] = employee.getVersion();
+    }
+
+    @Override
+    void clear(int slot) {
+        strings.release(names[slot]);
+        strings.release(emails[slot]);
+        names[slot] = StringPool.NULL_HANDLE;
+        emails[slot] = StringPool.NULL_HANDLE;
+    }
+
+    @Override
+    int capacity() {
+        return empIds.length;
+    }
+
+    @Override
+    void grow(int capacity) {
+        empIds = Arrays.copyOf(empIds, capacity);
+        depIds = Arrays.copyOf(depIds, capacity);
+        ages = Arrays.copyOf(ages, capacity);
+        names = Arrays.copyOf(names, capacity);
+        emails = Arrays.copyOf(emails, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+    }
+}
@@ -0,0 +1,77 @@
+// Default storage engine. ConcurrentHashMap locks only the bin of the id being written,
+// so writers on different ids never block each other. A skip list of the live ids gives
+// the stable ascending order that cursor pagination walks.
+
+package com.freshworks.ems.store;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+public class ConcurrentEntityStore<T> implements EntityStore<T> {
+    private final ConcurrentMap<Integer, T> hashMap;
+    private final ConcurrentSkipListSet<Integer> ids = new ConcurrentSkipListSet<>();
+
+    public ConcurrentEntityStore() {
+        hashMap = new ConcurrentHashMap<>();
+    }
+
+    public ConcurrentEntityStore(int initialCapacity) {
+        hashMap = new ConcurrentHashMap<>(initialCapacity);
+    }
+
+    @Override
+    public T get(int id) {
+        return hashMap.get(id);
+    }
+
+    @Override
+    public boolean containsKey(int id) {
+        return hashMap.containsKey(id);
+    }
+
+    @Override
+    public T compute(int id, BiFunction<Integer, T, T> remappingFunction) {
+        return hashMap.compute(id, (key, existing) -> {
+            T updated = remappingFunction.apply(key, existing);
+            if (updated == null) {
+                ids.remove(key);
+            }
+            else if (existing == null) {
+                ids.add(key);
+            }
+            return updated;
+        });
+    }
+
+    @Override
+    public T remove(int id) {
+        AtomicReference<T> removed = new AtomicReference<>();
+        hashMap.computeIfPresent(id, (key, existing) -> {
+            removed.set(existing);
+            ids.remove(key);
+            return null;
+        });
+        return removed.get();
+    }
+
+    @Override
+    public int size() {
+        return hashMap.size();
+    }
+
+    @Override
+    public Iterator<T> valuesAfter(int id) {
+        return ids.tailSet(id, false).stream().map(hashMap::get).filter(Objects::nonNull).iterator();
+    }
+
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        hashMap.values().forEach(action);
+    }
+}
@@ -0,0 +1,57 @@
+// Read-only employees in ascending id order, addressed by position, such as a mapped snapshot.
+// LayeredEmployeeStore serves them as they are and keeps every later write on top.
+
+package com.freshworks.ems.store;
+
+import com.freshworks.ems.model.Employee;
+
+public interface EmployeeBaseLayer {
+    EmployeeBaseLayer EMPTY = new EmployeeBaseLayer() {
+        @Override
+        public int size() {
+            return 0;
+        }
+
+        @Override
+        public int idAt(int index) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        @Override
+        public Employee employeeAt(int index) {
+            throw new IndexOutOfBoundsException();
+        }
+    };
+
+    int size();
+
+    int idAt(int index);
+
+    Employee employeeAt(int index);
+
+    // Position of the first employee with an id greater than the given one
+    default int indexAfter(int id) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (idAt(middle) <= id) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    default boolean contains(int id) {
+        int index = indexAfter(id - 1);
+        return index < size() && idAt(index) == id;
+    }
+
+    default Employee get(int id) {
+        int index = indexAfter(id - 1);
+        return index < size() && idAt(index) == id ? employeeAt(index) : null;
+    }
+}
@@ -0,0 +1,36 @@
+// Storage engine behind the services, keyed by entity id.
+// Implementations must apply compute and remove atomically per id.
+
+package com.freshworks.ems.store;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+public interface EntityStore<T> {
+
+    T get(int id);
+
+    boolean containsKey(int id);
+
+    // Same contract as Map.compute: returning null removes the entry
+    T compute(int id, BiFunction<Integer, T, T> remappingFunction);
+
+    T remove(int id);
+
+    int size();
+
+    // Weakly consistent, never throws ConcurrentModificationException
+    void forEach(Consumer<? super T> action);
+
+    // Entities with ids greater than the given one in ascending id order, weakly consistent like forEach
+    Iterator<T> valuesAfter(int id);
+
+    default List<T> values() {
+        List<T> values = new ArrayList<>(size());
+        forEach(values::add);
+        return values;
+    }
+}
@@ -0,0 +1,114 @@
+// Open-addressing map from int keys to int values, with no boxing and no per-entry objects. Keys and values
+// sit side by side in one array, so a reader holding a stale reference still sees a consistent table.
+// Not thread-safe: the owning store guards it.
+
+package com.freshworks.ems.store;
+
+final class IntIntHashMap {
+    static final int MISSING = -1;
+    // Integer.MIN_VALUE marks a free bucket, so it cannot be used as a key
+    private static final int FREE = Integer.MIN_VALUE;
+
+    private int[] table;
+    private int size;
+
+    IntIntHashMap(int expectedSize) {
+        table = newTable(capacityFor(expectedSize));
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Safe to call on a table that is being written: it always terminates, though the answer may be stale
+    int get(int key) {
+        int[] table = this.table;
+        int mask = (table.length >> 1) - 1;
+        for (int bucket = mix(key) & mask, probes = 0; probes <= mask; bucket = (bucket + 1) & mask, probes++) {
+            int existing = table[bucket << 1];
+            if (existing == key) {
+                return table[(bucket << 1) + 1];
+            }
+            if (existing == FREE) {
+                return MISSING;
+            }
+        }
+        return MISSING;
+    }
+
+    void put(int key, int value) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("Key " + key + " is reserved");
+        }
+        if ((size + 1) * 4 > (table.length >> 1) * 3) {
+            resize(table.length);
+        }
+        int mask = (table.length >> 1) - 1;
+        int bucket = mix(key) & mask;
+        while (table[bucket << 1] != FREE && table[bucket << 1] != key) {
+            bucket = (bucket + 1) & mask;
+        }
+        if (table[bucket << 1] == FREE) {
+            size++;
+        }
+        table[(bucket << 1) + 1] = value;
+        table[bucket << 1] = key;
+    }
+
+    // Backward-shift deletion: later entries of the probe run move up, so no tombstones build up
+    int remove(int key) {
+        int mask = (table.length >> 1) - 1;
+        int bucket = mix(key) & mask;
+        while (table[bucket << 1] != key) {
+            if (table[bucket << 1] == FREE) {
+                return MISSING;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+        int value = table[(bucket << 1) + 1];
+        int hole = bucket;
+        for (int next = (hole + 1) & mask; table[next << 1] != FREE; next = (next + 1) & mask) {
+            int home = mix(table[next << 1]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole << 1] = table[next << 1];
+                table[(hole << 1) + 1] = table[(next << 1) + 1];
+                hole = next;
+            }
+        }
+        table[hole << 1] = FREE;
+        size--;
+        return value;
+    }
+
+    private void resize(int newBuckets) {
+        int[] old = table;
+        table = newTable(newBuckets);
+        size = 0;
+        for (int i = 0; i < old.length; i += 2) {
+            if (old[i] != FREE) {
+                put(old[i], old[i + 1]);
+            }
+        }
+    }
+
+    private static int[] newTable(int buckets) {
+        int[] table = new int[buckets << 1];
+        for (int i = 0; i < table.length; i += 2) {
+            table[i] = FREE;
+        }
+        return table;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int buckets = 16;
+        while (buckets * 3 < expectedSize * 4) {
+            buckets <<= 1;
+        }
+        return buckets;
+    }
+
+    private static int mix(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,150 @@
+// Storage engine over a read-only base layer, such as a snapshot mapped at boot. Reads fall through to the
+// base, so a store over a large snapshot serves requests as soon as the file is mapped. Every write goes to the
+// overlay, another store that shadows the base, and removing a base record leaves a tombstone.
+
+package com.freshworks.ems.store;
+
+import com.freshworks.ems.model.Employee;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+public class LayeredEmployeeStore implements EntityStore<Employee> {
+    private final EntityStore<Employee> overlay;
+    private final Set<Integer> removedFromBase = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile EmployeeBaseLayer base = EmployeeBaseLayer.EMPTY;
+
+    public LayeredEmployeeStore(EntityStore<Employee> overlay) {
+        this.overlay = overlay;
+    }
+
+    // Only while the store is still empty: everything written afterwards sits on top of this base
+    public void setBase(EmployeeBaseLayer base) {
+        if (overlay.size() > 0 || !removedFromBase.isEmpty()) {
+            throw new IllegalStateException("The base layer can only be set on an empty store");
+        }
+        this.base = base;
+        size.set(base.size());
+    }
+
+    public int overlaySize() {
+        return overlay.size();
+    }
+
+    @Override
+    public Employee get(int id) {
+        Employee employee = overlay.get(id);
+        if (employee != null) {
+            return employee;
+        }
+        // A write that removes a base record tombstones it before its overlay entry goes, so this sees one or the other
+        return removedFromBase.contains(id) ? null : base.get(id);
+    }
+
+    @Override
+    public boolean containsKey(int id) {
+        return overlay.containsKey(id) || (!removedFromBase.contains(id) && base.contains(id));
+    }
+
+    @Override
+    public Employee compute(int id, BiFunction<Integer, Employee, Employee> remappingFunction) {
+        return overlay.compute(id, (key, existing) -> {
+            Employee current = existing != null || removedFromBase.contains(key) ? existing : base.get(key);
+            Employee updated = remappingFunction.apply(key, current);
+            if (updated == null && current != null && base.contains(key)) {
+                removedFromBase.add(key);
+            }
+            if (current == null && updated != null) {
+                size.incrementAndGet();
+            }
+            else if (current != null && updated == null) {
+                size.decrementAndGet();
+            }
+            return updated;
+        });
+    }
+
+    @Override
+    public Employee remove(int id) {
+        AtomicReference<Employee> removed = new AtomicReference<>();
+        compute(id, (key, current) -> {
+            removed.set(current);
+            return null;
+        });
+        return removed.get();
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public void forEach(Consumer<? super Employee> action) {
+        valuesAfter(Integer.MIN_VALUE).forEachRemaining(action);
+    }
+
+    // Merges the two layers in id order; the overlay wins where both hold an id
+    @Override
+    public Iterator<Employee> valuesAfter(int id) {
+        EmployeeBaseLayer base = this.base;
+        Iterator<Employee> upper = overlay.valuesAfter(id);
+        return new Iterator<Employee>() {
+            private int baseIndex = base.indexAfter(id);
+            private Employee pendingUpper;
+            private Employee next = advance();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Employee next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Employee employee = next;
+                next = advance();
+                return employee;
+            }
+
+            private Employee advance() {
+                while (true) {
+                    if (pendingUpper == null && upper.hasNext()) {
+                        pendingUpper = upper.next();
+                    }
+                    boolean hasBase = baseIndex < base.size();
+                    if (pendingUpper == null && !hasBase) {
+                        return null;
+                    }
+                    if (pendingUpper != null && (!hasBase || pendingUpper.getEmpId() <= base.idAt(baseIndex))) {
+                        if (hasBase && pendingUpper.getEmpId() == base.idAt(baseIndex)) {
+                            baseIndex++;
+                        }
+                        Employee employee = pendingUpper;
+                        pendingUpper = null;
+                        return employee;
+                    }
+                    int index = baseIndex++;
+                    int baseId = base.idAt(index);
+                    // Written after the overlay walk went past this id
+                    Employee shadow = overlay.get(baseId);
+                    if (shadow != null) {
+                        return shadow;
+                    }
+                    if (!removedFromBase.contains(baseId)) {
+                        return base.employeeAt(index);
+                    }
+                }
+            }
+        };
+    }
+}
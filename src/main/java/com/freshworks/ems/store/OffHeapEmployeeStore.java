@@ -0,0 +1,218 @@
+// Storage engine that keeps employee records out of the Java heap, so a large workforce adds nothing to the old
+// generation the collector has to trace. Each employee is a fixed-layout slot in direct memory; names and emails
+// are UTF-8 bytes in a separate direct area the slot points into. The heap holds only the id-to-slot map and the
+// id order. Memory comes in chunks that never move, so growing never copies a record.
+//
+// String space freed by updates and deletes is reclaimed by copying the live strings into fresh chunks once it
+// outweighs them. Old chunks are released by the collector once no reader holds them, as with any direct buffer.
+
+package com.freshworks.ems.store;
+
+import com.freshworks.ems.model.Employee;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class OffHeapEmployeeStore extends SlottedEmployeeStore {
+    private static final int SLOT_CHUNK_BITS = 14;
+    private static final int SLOTS_PER_CHUNK = 1 << SLOT_CHUNK_BITS;
+    private static final int STRING_CHUNK_SIZE = 1 << 20;
+    private static final int NULL_LENGTH = -1;
+
+    // Slot layout
+    private static final int EMP_ID = 0;
+    private static final int DEP_ID = 4;
+    private static final int AGE = 8;
+    private static final int NAME_LENGTH = 12;
+    private static final int NAME_ADDRESS = 16;
+    private static final int EMAIL_LENGTH = 24;
+    private static final int EMAIL_ADDRESS = 32;
+    private static final int VERSION = 40;
+    private static final int SLOT_SIZE = 48;
+
+    private ByteBuffer[] slotChunks = new ByteBuffer[0];
+    private ByteBuffer[] stringChunks = new ByteBuffer[0];
+    // Where the next string goes: chunk index in the high half, offset in the low half
+    private long stringTail;
+    private long liveStringBytes;
+    private long garbageStringBytes;
+
+    public OffHeapEmployeeStore() {
+        this(SLOTS_PER_CHUNK);
+    }
+
+    public OffHeapEmployeeStore(int initialCapacity) {
+        super(Math.max(16, initialCapacity));
+        grow(Math.max(16, initialCapacity));
+        stringChunks = new ByteBuffer[]{ByteBuffer.allocateDirect(STRING_CHUNK_SIZE)};
+    }
+
+    // Direct memory held by slots and strings, freed string space included
+    public long offHeapBytes() {
+        return read(() -> {
+            long bytes = 0;
+            for (ByteBuffer chunk : slotChunks) {
+                bytes += chunk.capacity();
+            }
+            for (ByteBuffer chunk : stringChunks) {
+                bytes += chunk.capacity();
+            }
+            return bytes;
+        });
+    }
+
+    @Override
+    Employee materialize(int slot) {
+        ByteBuffer[] slotChunks = this.slotChunks;
+        int chunk = slot >>> SLOT_CHUNK_BITS;
+        if (slot < 0 || chunk >= slotChunks.length) {
+            return null;
+        }
+        ByteBuffer slots = slotChunks[chunk];
+        int base = (slot & (SLOTS_PER_CHUNK - 1)) * SLOT_SIZE;
+        Employee employee = new Employee(slots.getInt(base + EMP_ID), boxed(slots.getInt(base + DEP_ID)),
+                                         readString(slots.getInt(base + NAME_LENGTH), slots.getLong(base + NAME_ADDRESS)),
+                                         readString(slots.getInt(base + EMAIL_LENGTH), slots.getLong(base + EMAIL_ADDRESS)),
+                                         boxed(slots.getInt(base + AGE)));
+        employee.setVersion(slots.getLong(base + VERSION));
+        return employee;
+    }
+
+    @Override
+    void write(int slot, int id, Employee employee, boolean replacing) {
+        ByteBuffer slots = slotChunks[slot >>> SLOT_CHUNK_BITS];
+        int base = (slot & (SLOTS_PER_CHUNK - 1)) * SLOT_SIZE;
+        if (replacing) {
+            discardStrings(slots, base);
+        }
+        slots.putInt(base + EMP_ID, id);
+        slots.putInt(base + DEP_ID, unboxed(employee.getDepId()));
+        slots.putInt(base + AGE, unboxed(employee.getAge()));
+        writeString(slots, base + NAME_LENGTH, base + NAME_ADDRESS, employee.getName());
+        writeString(slots, base + EMAIL_LENGTH, base + EMAIL_ADDRESS, employee.getEmail());
+        slots.putLong(base + VERSION, employee.getVersion());
+        compactStringsIfWasteful();
+    }
+
+    @Override
+    void clear(int slot) {
+        ByteBuffer slots = slotChunks[slot >>> SLOT_CHUNK_BITS];
+        int base = (slot & (SLOTS_PER_CHUNK - 1)) * SLOT_SIZE;
+        discardStrings(slots, base);
+        slots.putInt(base + NAME_LENGTH, NULL_LENGTH);
+        slots.putInt(base + EMAIL_LENGTH, NULL_LENGTH);
+        compactStringsIfWasteful();
+    }
+
+    @Override
+    int capacity() {
+        return slotChunks.length * SLOTS_PER_CHUNK;
+    }
+
+    @Override
+    void grow(int capacity) {
+        int chunks = (capacity + SLOTS_PER_CHUNK - 1) >>> SLOT_CHUNK_BITS;
+        ByteBuffer[] grown = Arrays.copyOf(slotChunks, Math.max(chunks, slotChunks.length));
+        for (int i = slotChunks.length; i < grown.length; i++) {
+            grown[i] = newSlotChunk();
+        }
+        slotChunks = grown;
+    }
+
+    private static ByteBuffer newSlotChunk() {
+        ByteBuffer chunk = ByteBuffer.allocateDirect(SLOTS_PER_CHUNK * SLOT_SIZE);
+        for (int base = 0; base < chunk.capacity(); base += SLOT_SIZE) {
+            chunk.putInt(base + NAME_LENGTH, NULL_LENGTH);
+            chunk.putInt(base + EMAIL_LENGTH, NULL_LENGTH);
+        }
+        return chunk;
+    }
+
+    // Like materialize, tolerates a length and address torn by a concurrent write
+    private String readString(int length, long address) {
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        ByteBuffer[] stringChunks = this.stringChunks;
+        int chunk = (int) (address >>> 32);
+        int offset = (int) address;
+        if (length < 0 || chunk < 0 || chunk >= stringChunks.length || offset < 0
+            || offset > stringChunks[chunk].capacity() - length) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer view = stringChunks[chunk].duplicate();
+        view.position(offset);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void writeString(ByteBuffer slots, int lengthPosition, int addressPosition, String string) {
+        if (string == null) {
+            slots.putInt(lengthPosition, NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        slots.putLong(addressPosition, append(bytes));
+        slots.putInt(lengthPosition, bytes.length);
+        liveStringBytes += bytes.length;
+    }
+
+    private long append(byte[] bytes) {
+        int chunk = (int) (stringTail >>> 32);
+        int offset = (int) stringTail;
+        if (offset + bytes.length > stringChunks[chunk].capacity()) {
+            chunk = stringChunks.length;
+            offset = 0;
+            stringChunks = Arrays.copyOf(stringChunks, chunk + 1);
+            stringChunks[chunk] = ByteBuffer.allocateDirect(Math.max(STRING_CHUNK_SIZE, bytes.length));
+        }
+        ByteBuffer view = stringChunks[chunk].duplicate();
+        view.position(offset);
+        view.put(bytes);
+        long address = ((long) chunk << 32) | offset;
+        stringTail = ((long) chunk << 32) | (offset + bytes.length);
+        return address;
+    }
+
+    private void discardStrings(ByteBuffer slots, int base) {
+        for (int lengthPosition : new int[]{base + NAME_LENGTH, base + EMAIL_LENGTH}) {
+            int length = slots.getInt(lengthPosition);
+            if (length != NULL_LENGTH) {
+                liveStringBytes -= length;
+                garbageStringBytes += length;
+            }
+        }
+    }
+
+    // Copies every live string into fresh chunks once freed space outweighs both a chunk and the live data
+    private void compactStringsIfWasteful() {
+        if (garbageStringBytes < STRING_CHUNK_SIZE || garbageStringBytes < liveStringBytes) {
+            return;
+        }
+        ByteBuffer[] oldChunks = stringChunks;
+        stringChunks = new ByteBuffer[]{ByteBuffer.allocateDirect(STRING_CHUNK_SIZE)};
+        stringTail = 0;
+        for (ByteBuffer slots : slotChunks) {
+            for (int base = 0; base < slots.capacity(); base += SLOT_SIZE) {
+                relocate(oldChunks, slots, base + NAME_LENGTH, base + NAME_ADDRESS);
+                relocate(oldChunks, slots, base + EMAIL_LENGTH, base + EMAIL_ADDRESS);
+            }
+        }
+        garbageStringBytes = 0;
+    }
+
+    private void relocate(ByteBuffer[] oldChunks, ByteBuffer slots, int lengthPosition, int addressPosition) {
+        int length = slots.getInt(lengthPosition);
+        if (length == NULL_LENGTH) {
+            return;
+        }
+        long address = slots.getLong(addressPosition);
+        byte[] bytes = new byte[length];
+        ByteBuffer view = oldChunks[(int) (address >>> 32)].duplicate();
+        view.position((int) address);
+        view.get(bytes);
+        slots.putLong(addressPosition, append(bytes));
+    }
+}
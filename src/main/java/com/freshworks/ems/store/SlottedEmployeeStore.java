@@ -0,0 +1,267 @@
+// Shared machinery of the stores that keep employees as numbered slots rather than objects: an open-addressing
+// int map from id to slot, a free list of slots, the ascending id order cursor walks follow, and the locking.
+// Subclasses decide where a slot's fields live and build an Employee from them on every read.
+//
+// One StampedLock serializes writes. Reads are optimistic and retry under the read lock only if a write got in
+// between, so readers never block each other, at the cost of writers never running in parallel.
+
+package com.freshworks.ems.store;
+
+import com.freshworks.ems.model.Employee;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+abstract class SlottedEmployeeStore implements EntityStore<Employee> {
+    // Stands for a null department id or age
+    static final int NULL_INT = Integer.MIN_VALUE;
+    private static final int ITERATOR_BATCH = 64;
+
+    private final StampedLock lock = new StampedLock();
+    private final IntIntHashMap slots;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int usedSlots;
+    private int size;
+
+    // Ascending ids for cursor walks. Removed ids are left in place and skipped, and swept out once they make up
+    // half the array, so a delete costs no copying; ids arrive in ascending order, so an insert is an append.
+    private int[] order;
+    private int orderSize;
+    private int removedInOrder;
+
+    SlottedEmployeeStore(int initialCapacity) {
+        slots = new IntIntHashMap(initialCapacity);
+        order = new int[initialCapacity];
+    }
+
+    // Builds the employee in a slot. May run against a slot a writer is changing: the result is thrown away then,
+    // so it only has to avoid failing on whatever it reads
+    abstract Employee materialize(int slot);
+
+    abstract void write(int slot, int id, Employee employee, boolean replacing);
+
+    // Lets go of whatever the slot holds besides its fixed fields
+    abstract void clear(int slot);
+
+    abstract int capacity();
+
+    abstract void grow(int capacity);
+
+    @Override
+    public Employee get(int id) {
+        return read(() -> {
+            int slot = slots.get(id);
+            return slot == IntIntHashMap.MISSING ? null : materialize(slot);
+        });
+    }
+
+    @Override
+    public boolean containsKey(int id) {
+        return read(() -> slots.get(id) != IntIntHashMap.MISSING);
+    }
+
+    @Override
+    public Employee compute(int id, BiFunction<Integer, Employee, Employee> remappingFunction) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = slots.get(id);
+            Employee existing = slot == IntIntHashMap.MISSING ? null : materialize(slot);
+            Employee updated = remappingFunction.apply(id, existing);
+            if (updated == null) {
+                if (existing != null) {
+                    release(id, slot);
+                }
+            }
+            else if (existing != null) {
+                write(slot, id, updated, true);
+            }
+            else {
+                slot = allocate();
+                write(slot, id, updated, false);
+                slots.put(id, slot);
+                addToOrder(id);
+                size++;
+            }
+            return updated;
+        }
+        finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Employee remove(int id) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = slots.get(id);
+            if (slot == IntIntHashMap.MISSING) {
+                return null;
+            }
+            Employee removed = materialize(slot);
+            release(id, slot);
+            return removed;
+        }
+        finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        return read(() -> size);
+    }
+
+    @Override
+    public void forEach(Consumer<? super Employee> action) {
+        valuesAfter(Integer.MIN_VALUE).forEachRemaining(action);
+    }
+
+    // Loads a batch at a time under the read lock, resuming after the last id it saw, so it stays weakly
+    // consistent however the order array is rewritten in between
+    @Override
+    public Iterator<Employee> valuesAfter(int id) {
+        return new Iterator<Employee>() {
+            private final List<Employee> batch = new ArrayList<>(ITERATOR_BATCH);
+            private int position;
+            private int afterId = id;
+            private boolean exhausted;
+
+            @Override
+            public boolean hasNext() {
+                while (position == batch.size() && !exhausted) {
+                    loadBatch();
+                }
+                return position < batch.size();
+            }
+
+            @Override
+            public Employee next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return batch.get(position++);
+            }
+
+            private void loadBatch() {
+                batch.clear();
+                position = 0;
+                long stamp = lock.readLock();
+                try {
+                    int index = firstAfter(afterId);
+                    while (index < orderSize && batch.size() < ITERATOR_BATCH) {
+                        afterId = order[index++];
+                        int slot = slots.get(afterId);
+                        if (slot != IntIntHashMap.MISSING) {
+                            batch.add(materialize(slot));
+                        }
+                    }
+                    exhausted = index >= orderSize;
+                }
+                finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+        };
+    }
+
+    <R> R read(Supplier<R> reader) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            R result = reader.get();
+            if (lock.validate(stamp)) {
+                return result;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return reader.get();
+        }
+        finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    static Integer boxed(int value) {
+        return value == NULL_INT ? null : value;
+    }
+
+    static int unboxed(Integer value) {
+        return value == null ? NULL_INT : value;
+    }
+
+    private void release(int id, int slot) {
+        clear(slot);
+        slots.remove(id);
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        size--;
+        if (++removedInOrder > orderSize / 2) {
+            compactOrder();
+        }
+    }
+
+    private int allocate() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (usedSlots == capacity()) {
+            grow(capacity() * 2);
+        }
+        return usedSlots++;
+    }
+
+    private void addToOrder(int id) {
+        int index = firstAfter(id - 1);
+        if (index < orderSize && order[index] == id) {
+            // Removed earlier and still waiting to be swept out
+            removedInOrder--;
+            return;
+        }
+        if (orderSize == order.length) {
+            order = Arrays.copyOf(order, orderSize * 2);
+        }
+        // Only ids arriving out of order, as in seed files with explicit ids, pay for the shift
+        System.arraycopy(order, index, order, index + 1, orderSize - index);
+        order[index] = id;
+        orderSize++;
+    }
+
+    private void compactOrder() {
+        int[] compacted = new int[Math.max(16, size * 2)];
+        int live = 0;
+        for (int i = 0; i < orderSize; i++) {
+            if (slots.get(order[i]) != IntIntHashMap.MISSING) {
+                compacted[live++] = order[i];
+            }
+        }
+        order = compacted;
+        orderSize = live;
+        removedInOrder = 0;
+    }
+
+    // Index of the first id in order greater than the given one
+    private int firstAfter(int id) {
+        int low = 0;
+        int high = orderSize;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (order[middle] <= id) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
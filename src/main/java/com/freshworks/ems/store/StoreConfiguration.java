@@ -0,0 +1,40 @@
+package com.freshworks.ems.store;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.freshworks.ems.model.Employee;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class StoreConfiguration {
+    public enum Type { HEAP, COLUMNAR, OFF_HEAP }
+
+    // heap keeps an Employee object per record; columnar packs records into primitive columns for large tenants;
+    // off_heap moves the records into direct memory, bounded by -XX:MaxDirectMemorySize, out of the collector's way
+    @JsonProperty
+    @NotNull
+    private Type type = Type.HEAP;
+
+    @JsonProperty
+    @Min(16)
+    private int initialCapacity = 1024;
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getInitialCapacity() {
+        return initialCapacity;
+    }
+
+    public EntityStore<Employee> buildEmployeeStore() {
+        switch (type) {
+            case COLUMNAR:
+                return new ColumnarEmployeeStore(initialCapacity);
+            case OFF_HEAP:
+                return new OffHeapEmployeeStore(initialCapacity);
+            default:
+                return new ConcurrentEntityStore<>(initialCapacity);
+        }
+    }
+}
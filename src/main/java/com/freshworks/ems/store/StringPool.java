@@ -0,0 +1,59 @@
+// Stores each distinct string once and hands out int handles to it, reference counted so that a handle is
+// reused once the last record pointing at it is gone. Not thread-safe: the owning store guards it.
+
+package com.freshworks.ems.store;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+final class StringPool {
+    static final int NULL_HANDLE = -1;
+
+    private final Map<String, Integer> handles = new HashMap<>();
+    private String[] strings = new String[64];
+    private int[] references = new int[64];
+    private int[] freeHandles = new int[16];
+    private int freeCount;
+    private int nextHandle;
+
+    int size() {
+        return handles.size();
+    }
+
+    int acquire(String string) {
+        if (string == null) {
+            return NULL_HANDLE;
+        }
+        Integer handle = handles.get(string);
+        if (handle == null) {
+            handle = freeCount > 0 ? freeHandles[--freeCount] : nextHandle++;
+            if (handle == strings.length) {
+                strings = Arrays.copyOf(strings, handle * 2);
+                references = Arrays.copyOf(references, handle * 2);
+            }
+            strings[handle] = string;
+            handles.put(string, handle);
+        }
+        references[handle]++;
+        return handle;
+    }
+
+    void release(int handle) {
+        if (handle == NULL_HANDLE || --references[handle] > 0) {
+            return;
+        }
+        handles.remove(strings[handle]);
+        strings[handle] = null;
+        if (freeCount == freeHandles.length) {
+            freeHandles = Arrays.copyOf(freeHandles, freeCount * 2);
+        }
+        freeHandles[freeCount++] = handle;
+    }
+
+    // Safe to call on a pool that is being written: a stale or out-of-range handle reads as null
+    String get(int handle) {
+        String[] strings = this.strings;
+        return handle < 0 || handle >= strings.length ? null : strings[handle];
+    }
+}
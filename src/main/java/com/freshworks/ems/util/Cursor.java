@@ -0,0 +1,54 @@
+// Opaque pagination cursor: the id of the last record on a page, plus its sort key when
+// the listing is ordered by an attribute, so the next page can resume with a tailSet lookup.
+
+package com.freshworks.ems.util;
+
+import com.freshworks.ems.exceptions.InvalidCursor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+public class Cursor {
+    private final int id;
+    private final String key;
+
+    private Cursor(int id, String key) {
+        this.id = id;
+        this.key = key;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public static String encode(int id) {
+        return encode(id, null);
+    }
+
+    public static String encode(int id, Object key) {
+        String plain = key == null ? Integer.toString(id) : id + ":" + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // A missing cursor means the first page and decodes to null
+    public static Cursor decode(String cursor) throws InvalidCursor {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String plain = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = plain.indexOf(':');
+            if (separator < 0) {
+                return new Cursor(Integer.parseInt(plain), null);
+            }
+            return new Cursor(Integer.parseInt(plain.substring(0, separator)), plain.substring(separator + 1));
+        }
+        catch (IllegalArgumentException e) {
+            throw new InvalidCursor();
+        }
+    }
+}
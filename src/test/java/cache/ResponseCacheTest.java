@@ -0,0 +1,70 @@
+package cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.freshworks.ems.cache.CacheConfiguration;
+import com.freshworks.ems.cache.ResponseCache;
+import com.freshworks.ems.model.ChangeEvent;
+import com.freshworks.ems.model.Employee;
+import io.dropwizard.jackson.Jackson;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.IOException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ResponseCacheTest {
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+
+    private ResponseCache responseCache;
+
+    @Before
+    public void setUp() throws IOException {
+        responseCache = cacheWith("{\"enabled\":true}");
+    }
+
+    @Test
+    public void shouldServeFilledEntryUntilItsEmployeeChanges() throws Exception {
+        String key = ResponseCache.employeeKey(1);
+        responseCache.put(key, responseCache.ticket(key), new Employee(1, 1, "akhil"), null);
+        assertEquals(MAPPER.writeValueAsString(new Employee(1, 1, "akhil")), new String(responseCache.get(key).getBody()));
+
+        responseCache.afterChange(ChangeEvent.ofEmployee(ChangeEvent.Operation.UPDATE, 1, new Employee(1, 1, "mahesh")));
+        assertNull(responseCache.get(key));
+    }
+
+    @Test
+    public void shouldDropFillReadBeforeAnInvalidation() throws Exception {
+        String key = ResponseCache.employeeKey(1);
+        long ticket = responseCache.ticket(key);
+        responseCache.afterChange(ChangeEvent.ofEmployee(ChangeEvent.Operation.DELETE, 1, null));
+        responseCache.put(key, ticket, new Employee(1, 1, "akhil"), null);
+        assertNull(responseCache.get(key));
+    }
+
+    @Test
+    public void shouldMoveBothDepartmentListingsToNewVersionsWhenEmployeeMoves() {
+        String oldDepartmentKey = responseCache.departmentEmployeesKey(1, null, 100);
+        String newDepartmentKey = responseCache.departmentEmployeesKey(2, null, 100);
+        responseCache.afterChange(ChangeEvent.ofEmployee(ChangeEvent.Operation.UPDATE, 5, new Employee(5, 2, "akhil"),
+                                                         new Employee(5, 1, "akhil")));
+        assertNotEquals(oldDepartmentKey, responseCache.departmentEmployeesKey(1, null, 100));
+        assertNotEquals(newDepartmentKey, responseCache.departmentEmployeesKey(2, null, 100));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedEntriesBeyondCapacity() throws Exception {
+        responseCache = cacheWith("{\"enabled\":true,\"maxEntries\":16}");
+        for (int empId = 1; empId <= 1000; empId++) {
+            String key = ResponseCache.employeeKey(empId);
+            responseCache.put(key, responseCache.ticket(key), new Employee(empId, 1, "akhil"), null);
+        }
+        assertNotNull(responseCache.get(ResponseCache.employeeKey(1000)));
+        assertNull(responseCache.get(ResponseCache.employeeKey(1)));
+    }
+
+    private static ResponseCache cacheWith(String configuration) throws IOException {
+        return new ResponseCache(MAPPER.readValue(configuration, CacheConfiguration.class), MAPPER);
+    }
+}
@@ -0,0 +1,31 @@
+package model;
+
+import com.freshworks.ems.model.Page;
+import org.junit.Test;
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PageTest {
+
+    @Test
+    public void shouldGiveCursorWhenVisibleItemsRemain() {
+        Page<String> page = Page.collect(Arrays.asList("a", "b", null, "c").iterator(), 2, item -> item);
+        assertEquals(Arrays.asList("a", "b"), page.getItems());
+        assertEquals("b", page.getNextCursor());
+    }
+
+    @Test
+    public void shouldNotGiveCursorWhenOnlyHiddenItemsRemain() {
+        Page<String> page = Page.collect(Arrays.asList("a", "b", null, null).iterator(), 2, item -> item);
+        assertEquals(Arrays.asList("a", "b"), page.getItems());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    public void shouldListEverythingWithoutCursorOrLimit() {
+        assertEquals(Integer.MAX_VALUE, Page.listingLimit(null, null));
+        assertEquals(Page.DEFAULT_LIMIT, Page.listingLimit("cursor", null));
+        assertEquals(Page.MAX_LIMIT, Page.listingLimit(null, Integer.MAX_VALUE));
+    }
+}
@@ -0,0 +1,245 @@
+package persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.freshworks.ems.exceptions.WritesUnavailable;
+import com.freshworks.ems.health.WriteAheadLogHealthCheck;
+import com.freshworks.ems.model.Department;
+import com.freshworks.ems.model.Employee;
+import com.freshworks.ems.persistence.PersistenceConfiguration;
+import com.freshworks.ems.persistence.PersistenceEngine;
+import com.freshworks.ems.service.DepartmentService;
+import com.freshworks.ems.service.EmployeeService;
+import com.freshworks.ems.store.ConcurrentEntityStore;
+import com.freshworks.ems.store.LayeredEmployeeStore;
+import io.dropwizard.jackson.Jackson;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletionException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PersistenceEngineTest {
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private PersistenceConfiguration configuration;
+    private DepartmentService departmentService;
+    private EmployeeService employeeService;
+    private PersistenceEngine persistenceEngine;
+
+    @Before
+    public void setUp() throws IOException {
+        configuration = MAPPER.readValue("{\"enabled\":true,\"directory\":\""
+                + temporaryFolder.getRoot().getAbsolutePath() + "\"}", PersistenceConfiguration.class);
+        openEngine();
+    }
+
+    @Test
+    public void shouldRecoverWritesFromLogAfterRestart() throws Exception {
+        Department department = departmentService.createDepartment(new Department("google"));
+        Employee employee = employeeService.createEmployee(new Employee(department.getDepId(), "akhil", 25));
+        employeeService.updateEmployee(employee.getEmpId(), new Employee(department.getDepId(), "mahesh"));
+        Employee deletedEmployee = employeeService.createEmployee(new Employee(department.getDepId(), "ramesh"));
+        employeeService.deleteEmployee(deletedEmployee.getEmpId());
+
+        restartWithoutSnapshot();
+
+        assertEquals("google", departmentService.getDepartmentById(department.getDepId()).getName());
+        assertEquals("mahesh", employeeService.getEmployeeById(employee.getEmpId()).getName());
+        assertEquals(1, employeeService.getEmpsOfDepartment(department.getDepId()).size());
+        assertTrue(employeeService.createEmployee(new Employee(department.getDepId(), "suresh")).getEmpId()
+                   > deletedEmployee.getEmpId());
+    }
+
+    @Test
+    public void shouldRecoverFromSnapshotAndLogAfterIt() throws Exception {
+        Department department = departmentService.createDepartment(new Department("google"));
+        employeeService.createEmployee(new Employee(department.getDepId(), "akhil"));
+        persistenceEngine.snapshot();
+        departmentService.updateDepartment(department.getDepId(), new Department("amazon"));
+
+        restartWithoutSnapshot();
+
+        assertEquals("amazon", departmentService.getDepartmentById(department.getDepId()).getName());
+        assertEquals(1, employeeService.getEmpsOfDepartment(department.getDepId()).size());
+    }
+
+    @Test
+    public void shouldDropLogSegmentsCoveredBySnapshot() throws Exception {
+        departmentService.createDepartment(new Department("google"));
+        persistenceEngine.snapshot();
+        persistenceEngine.snapshot();
+        assertFalse(temporaryFolder.getRoot().toPath().resolve("wal-0.log").toFile().exists());
+    }
+
+    @Test
+    public void shouldServeEmployeesFromMappedSnapshotAfterRestart() throws Exception {
+        Department department = departmentService.createDepartment(new Department("google"));
+        Employee employee = employeeService.createEmployee(new Employee(department.getDepId(), "akhil", "akhil@ems.com"));
+        Employee deletedEmployee = employeeService.createEmployee(new Employee(department.getDepId(), "mahesh", 30));
+        // Leaves the log kept by the final snapshot empty, so nothing is replayed over the mapped one
+        persistenceEngine.snapshot();
+        persistenceEngine.stop();
+
+        LayeredEmployeeStore employeeStore = openMappedEngine();
+
+        assertEquals(0, employeeStore.overlaySize());
+        assertEquals("akhil@ems.com", employeeService.getEmployeeById(employee.getEmpId()).getEmail());
+        assertNull(employeeService.getEmployeeById(employee.getEmpId()).getAge());
+        assertEquals((Integer) 30, employeeService.getEmployeeById(deletedEmployee.getEmpId()).getAge());
+        assertEquals(2, employeeService.getEmpsOfDepartment(department.getDepId()).size());
+
+        employeeService.updateEmployee(employee.getEmpId(), new Employee(department.getDepId(), "ramesh"));
+        employeeService.deleteEmployee(deletedEmployee.getEmpId());
+        assertTrue(employeeService.createEmployee(new Employee(department.getDepId(), "suresh")).getEmpId()
+                   > deletedEmployee.getEmpId());
+        persistenceEngine.close();
+
+        openMappedEngine();
+
+        assertEquals("ramesh", employeeService.getEmployeeById(employee.getEmpId()).getName());
+        assertFalse(employeeService.findEmployee(deletedEmployee.getEmpId()).isPresent());
+        assertEquals(2, employeeService.getEmpsOfDepartment(department.getDepId()).size());
+    }
+
+    @Test(timeout = 10000)
+    public void shouldKeepLoggingToNewSegmentAfterFailedWrite() throws Exception {
+        Department department = departmentService.createDepartment(new Department("google"));
+        // The segment the next rotation moves to cannot be opened
+        Path blocked = Files.createDirectory(temporaryFolder.getRoot().toPath().resolve("wal-2.log"));
+        try {
+            persistenceEngine.snapshot();
+            fail("Snapshot should fail when the next segment cannot be opened");
+        }
+        catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        Employee employee = employeeService.createEmployee(new Employee(department.getDepId(), "akhil"));
+        Files.delete(blocked);
+
+        restartWithoutSnapshot();
+
+        assertEquals("akhil", employeeService.getEmployeeById(employee.getEmpId()).getName());
+    }
+
+    @Test(timeout = 10000)
+    public void shouldRefuseWritesOnceLogFailsToWriteOne() throws Exception {
+        Department department = departmentService.createDepartment(new Department("google"));
+        // Neither the segment the next rotation moves to nor the one after it can be opened
+        Files.createDirectory(temporaryFolder.getRoot().toPath().resolve("wal-2.log"));
+        Files.createDirectory(temporaryFolder.getRoot().toPath().resolve("wal-3.log"));
+        try {
+            persistenceEngine.snapshot();
+            fail("Snapshot should fail when the next segment cannot be opened");
+        }
+        catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        WriteAheadLogHealthCheck healthCheck = new WriteAheadLogHealthCheck(persistenceEngine.getWriteAheadLog());
+        assertTrue(healthCheck.execute().isHealthy());
+
+        Employee employee = new Employee(department.getDepId(), "akhil");
+        try {
+            employeeService.createEmployee(employee);
+            fail("Write should fail when its segment cannot be opened");
+        }
+        catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        // A retry is refused before it creates the employee a second time
+        try {
+            employeeService.createEmployee(new Employee(department.getDepId(), "akhil"));
+            fail("Write should be refused once the log has failed");
+        }
+        catch (WritesUnavailable e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        try {
+            departmentService.createDepartment(new Department("amazon"));
+            fail("Write should be refused once the log has failed");
+        }
+        catch (WritesUnavailable expected) {
+        }
+        assertFalse(healthCheck.execute().isHealthy());
+        assertEquals(1, employeeService.getAllEmployees("").size());
+        assertEquals(1, departmentService.getAllDepartments().size());
+    }
+
+    @Test(timeout = 10000)
+    public void shouldFailWritesOnceLogIsClosed() throws Exception {
+        persistenceEngine.close();
+        try {
+            departmentService.createDepartment(new Department("google"));
+            fail("Write should fail once the log is closed");
+        }
+        catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void shouldNotReuseIdsOfDeletedRecordsAfterCompaction() throws Exception {
+        Department department = departmentService.createDepartment(new Department("google"));
+        employeeService.createEmployee(new Employee(department.getDepId(), "akhil"));
+        Department deletedDepartment = departmentService.createDepartment(new Department("amazon"));
+        Employee deletedEmployee = employeeService.createEmployee(new Employee(department.getDepId(), "mahesh"));
+        departmentService.deleteDepartment(deletedDepartment.getDepId());
+        employeeService.deleteEmployee(deletedEmployee.getEmpId());
+        // The second snapshot drops the segment holding the deletes
+        persistenceEngine.snapshot();
+        persistenceEngine.snapshot();
+        persistenceEngine.stop();
+
+        int lastDepId = deletedDepartment.getDepId();
+        int lastEmpId = deletedEmployee.getEmpId();
+        for (boolean mapped : new boolean[] {false, true}) {
+            if (mapped) {
+                openMappedEngine();
+            }
+            else {
+                openEngine();
+            }
+            int depId = departmentService.createDepartment(new Department("flipkart")).getDepId();
+            int empId = employeeService.createEmployee(new Employee(department.getDepId(), "ramesh")).getEmpId();
+            assertTrue(depId > lastDepId);
+            assertTrue(empId > lastEmpId);
+            lastDepId = depId;
+            lastEmpId = empId;
+            persistenceEngine.stop();
+        }
+    }
+
+    private void openEngine() throws IOException {
+        departmentService = new DepartmentService(new ConcurrentEntityStore<>());
+        employeeService = new EmployeeService(departmentService);
+        departmentService.createEmployeeServiceObject(employeeService);
+        persistenceEngine = new PersistenceEngine(configuration, MAPPER);
+        persistenceEngine.open(departmentService, employeeService);
+    }
+
+    private LayeredEmployeeStore openMappedEngine() throws IOException {
+        LayeredEmployeeStore employeeStore = new LayeredEmployeeStore(new ConcurrentEntityStore<>());
+        departmentService = new DepartmentService(new ConcurrentEntityStore<>());
+        employeeService = new EmployeeService(departmentService, employeeStore);
+        departmentService.createEmployeeServiceObject(employeeService);
+        persistenceEngine = new PersistenceEngine(configuration, MAPPER);
+        persistenceEngine.open(departmentService, employeeService, employeeStore);
+        return employeeStore;
+    }
+
+    // Closes only the log, so recovery has to replay it rather than read a final snapshot
+    private void restartWithoutSnapshot() throws Exception {
+        persistenceEngine.close();
+        openEngine();
+    }
+}
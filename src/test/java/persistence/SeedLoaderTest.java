@@ -0,0 +1,66 @@
+package persistence;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.freshworks.ems.model.Department;
+import com.freshworks.ems.persistence.SeedLoader;
+import com.freshworks.ems.service.DepartmentService;
+import com.freshworks.ems.service.EmployeeService;
+import com.freshworks.ems.store.ConcurrentEntityStore;
+import io.dropwizard.jackson.Jackson;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.Assert.assertEquals;
+
+public class SeedLoaderTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private SeedLoader seedLoader;
+    private DepartmentService departmentService;
+    private EmployeeService employeeService;
+
+    @Before
+    public void setUp() {
+        seedLoader = new SeedLoader(Jackson.newObjectMapper().getFactory());
+        departmentService = new DepartmentService(new ConcurrentEntityStore<>());
+        employeeService = new EmployeeService(departmentService);
+    }
+
+    @Test
+    public void shouldLoadLegacyAndPlainDepartmentRecords() throws Exception {
+        Path departments = write("[{\"department\":{\"name\":\"google\"}},{\"depId\":5,\"name\":\"amazon\"},{\"name\":\"\"}]");
+
+        assertEquals(2, seedLoader.loadDepartments(departments, departmentService));
+        assertEquals("google", departmentService.getDepartmentById(1).getName());
+        assertEquals("amazon", departmentService.getDepartmentById(5).getName());
+        assertEquals(6, departmentService.createDepartment(new Department("flipkart")).getDepId().intValue());
+    }
+
+    @Test
+    public void shouldSkipEmployeesOfUnknownDepartments() throws Exception {
+        seedLoader.loadDepartments(write("[{\"name\":\"google\"}]"), departmentService);
+        Path employees = write("[{\"depId\":1,\"name\":\"akhil\",\"email\":\"akhil@ems.com\",\"age\":25,\"extra\":[1,2]},"
+                               + "{\"depId\":9,\"name\":\"mahesh\"}]");
+
+        assertEquals(1, seedLoader.loadEmployees(employees, employeeService));
+        assertEquals("akhil@ems.com", employeeService.getEmployeeById(1).getEmail());
+        assertEquals(1, employeeService.getEmpsOfDepartment(1).size());
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void shouldFailOnMalformedSeedFile() throws Exception {
+        seedLoader.loadDepartments(write("{\"name\":\"google\"}"), departmentService);
+    }
+
+    private Path write(String json) throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, json.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
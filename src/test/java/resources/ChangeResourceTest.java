@@ -0,0 +1,86 @@
+package resources;
+
+import com.freshworks.ems.model.Department;
+import com.freshworks.ems.model.Employee;
+import com.freshworks.ems.resources.ChangeResource;
+import com.freshworks.ems.service.ChangeLog;
+import com.freshworks.ems.service.ChangeLogConfiguration;
+import com.freshworks.ems.service.DepartmentService;
+import com.freshworks.ems.service.EmployeeService;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.testing.junit.ResourceTestRule;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import util.ResourceTestHelper;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChangeResourceTest {
+    private static final String BASE_URL = "http://localhost:8080/changes";
+    private static final ChangeLog CHANGE_LOG = new ChangeLog(16);
+    private static final ExecutorService STREAM_THREADS = Executors.newCachedThreadPool();
+
+    @ClassRule
+    public static final ResourceTestRule RESOURCE_TEST_RULE = ResourceTestHelper.resourceTestRuleBuilder(
+            new ChangeResource(CHANGE_LOG, Jackson.newObjectMapper(), new ChangeLogConfiguration(), STREAM_THREADS));
+
+    private static long start;
+    private final ResourceTestHelper resourceTestHelper = new ResourceTestHelper(RESOURCE_TEST_RULE);
+
+    // Closed up front, so every stream ends once it has sent what the log holds
+    @BeforeClass
+    public static void writeChanges() throws Exception {
+        DepartmentService departmentService = new DepartmentService();
+        EmployeeService employeeService = new EmployeeService(departmentService);
+        departmentService.createEmployeeServiceObject(employeeService);
+        departmentService.addChangeListener(CHANGE_LOG);
+        employeeService.addChangeListener(CHANGE_LOG);
+        start = CHANGE_LOG.getLastSequence();
+        Department department = departmentService.createDepartment(new Department("sales"));
+        employeeService.createEmployee(new Employee(department.getDepId(), "akhil"));
+        CHANGE_LOG.close();
+    }
+
+    @AfterClass
+    public static void stopStreamThreads() {
+        STREAM_THREADS.shutdownNow();
+    }
+
+    @Test
+    public void shouldStreamChangesAfterTheGivenSequence() {
+        Response response = resourceTestHelper.requestBuilder(BASE_URL + "?since=" + start).get();
+        assertEquals(200, response.getStatus());
+        assertTrue(response.getMediaType().toString().startsWith(ChangeResource.TEXT_EVENT_STREAM));
+        String body = response.readEntity(String.class);
+        assertTrue(body.contains("id: " + (start + 1) + "\nevent: department\ndata: {"));
+        assertTrue(body.contains("id: " + (start + 2) + "\nevent: employee\ndata: {"));
+        assertTrue(body.contains("\"name\":\"akhil\""));
+    }
+
+    @Test
+    public void shouldResumeAfterLastEventId() {
+        Response response = resourceTestHelper.requestBuilder(BASE_URL + "?since=" + start)
+                                              .header("Last-Event-ID", start + 1).get();
+        String body = response.readEntity(String.class);
+        assertFalse(body.contains("event: department"));
+        assertTrue(body.contains("id: " + (start + 2) + "\nevent: employee"));
+    }
+
+    @Test
+    public void shouldAnswerGoneForSequencesNoLongerInTheLog() {
+        Response response = resourceTestHelper.requestBuilder(BASE_URL + "?since=" + (start - 1)).get();
+        assertEquals(410, response.getStatus());
+    }
+
+    @Test
+    public void shouldThrowBadRequestForMalformedSequence() {
+        Response response = resourceTestHelper.requestBuilder(BASE_URL + "?since=latest").get();
+        assertEquals(400, response.getStatus());
+    }
+}
@@ -12,8 +12,12 @@ import org.junit.ClassRule;
 import org.junit.Test;
 import util.ResourceTestHelper;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import java.util.Collections;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.doNothing;
@@ -44,6 +48,13 @@ public class DepartmentResourceTest extends BaseResourceTest{
         assertNotFoundResponse(response);
     }
 
+    @Test
+    public void shouldServeStatsOfEveryDepartment() {
+        Response response = resourceTestHelper.requestBuilder(BASE_URL + "stats").get();
+        assertOkResponse(response);
+        assertNotFoundResponse(resourceTestHelper.requestBuilder(BASE_URL + "1000/stats").get());
+    }
+
     @Test
     public void shouldCreateDepartment() throws JsonProcessingException {
         when(DEPARTMENT_SERVICE.createDepartment(inputDepartment)).thenReturn(expectedDepartment);
@@ -114,6 +125,16 @@ public class DepartmentResourceTest extends BaseResourceTest{
         assertOkResponse(response);
     }
 
+    @Test
+    public void shouldAnswerNotModifiedWhileListingUnchangedDepartments() {
+        Response response = resourceTestHelper.requestBuilder(BASE_URL).get();
+        EntityTag tag = response.getEntityTag();
+        assertNotNull(tag);
+        Response conditionalResponse = resourceTestHelper.requestBuilder(BASE_URL)
+                                                         .header(HttpHeaders.IF_NONE_MATCH, tag.toString()).get();
+        assertEquals(304, conditionalResponse.getStatus());
+    }
+
     @Test
     public void shouldThrowDepartmentNotFoundExceptionWhileGettingEmployeesOfNonExistingDepartment(){
         inputDepartment.setId(123);
@@ -138,6 +159,12 @@ public class DepartmentResourceTest extends BaseResourceTest{
         assertNotFoundResponse(response);
     }
 
+    @Test
+    public void shouldThrowNotFoundErrorWhileGettingNonExistingDeletionJob() {
+        Response response = resourceTestHelper.requestBuilder(BASE_URL + "jobs/99").get();
+        assertNotFoundResponse(response);
+    }
+
     @Test
     public void shouldThrowMethodNotAllowedErrorDeletingDepartmentWithInvalidHttpMethod() {
         Response response = resourceTestHelper.requestBuilder(BASE_URL).delete();
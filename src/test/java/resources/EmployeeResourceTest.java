@@ -1,22 +1,44 @@
 package resources;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.freshworks.ems.exceptions.DepartmentNotFound;
 import com.freshworks.ems.exceptions.EmployeeNotFound;
+import com.freshworks.ems.model.BulkItemResult;
+import com.freshworks.ems.model.Delta;
 import com.freshworks.ems.model.Employee;
 import com.freshworks.ems.resources.EmployeeResource;
+import com.freshworks.ems.resources.Representations;
 import com.freshworks.ems.service.DepartmentService;
 import com.freshworks.ems.service.EmployeeService;
+import io.dropwizard.jackson.Jackson;
 import io.dropwizard.testing.junit.ResourceTestRule;
 import org.junit.Before;
 import org.junit.ClassRule;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import util.ResourceTestHelper;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.isA;
 
@@ -149,6 +171,24 @@ public class EmployeeResourceTest extends BaseResourceTest{
         assertOkResponse(response, expectedEmployee);
     }
 
+    @Test
+    public void shouldAnswerNotModifiedWhileGettingUnchangedEmployee() throws Exception {
+        Response response = resourceTestHelper.requestBuilder(BASE_URL + 1).get();
+        EntityTag tag = response.getEntityTag();
+        assertNotNull(tag);
+
+        Response conditionalResponse = resourceTestHelper.requestBuilder(BASE_URL + 1)
+                                                         .header(HttpHeaders.IF_NONE_MATCH, tag.toString()).get();
+        assertEquals(304, conditionalResponse.getStatus());
+        assertEquals(tag, conditionalResponse.getEntityTag());
+
+        employeeService.updateEmployee(1, new Employee(1, "akhil"));
+        Response changedResponse = resourceTestHelper.requestBuilder(BASE_URL + 1)
+                                                     .header(HttpHeaders.IF_NONE_MATCH, tag.toString()).get();
+        assertEquals(200, changedResponse.getStatus());
+        assertNotEquals(tag, changedResponse.getEntityTag());
+    }
+
     @Test
     public void shouldThrowNotFoundErrorWhileGettingNonExistingEmployee() {
         Integer nonExistingEmployeeId = 122;
@@ -185,7 +225,7 @@ public class EmployeeResourceTest extends BaseResourceTest{
         when(EMPLOYEE_SERVICE.updateEmployee(actualEmployeeId, updatedEmployee)).thenReturn(updatedEmployee);
         Response response = resourceTestHelper.requestBuilder(BASE_URL + actualEmployeeId)
                                               .put(Entity.json(updatedEmployee));
-        assertOkResponse(response, updatedEmployee);
+        assertOkResponse(response, employeeService.getEmployeeById(actualEmployeeId));
     }
 
     @Test
@@ -245,6 +285,163 @@ public class EmployeeResourceTest extends BaseResourceTest{
         assertNotFoundResponse(response);
     }
 
+    @Test
+    public void shouldThrowBadRequestWhileListingEmployeesWithInvalidCursor() {
+        Response response = resourceTestHelper.requestBuilder(BASE_URL + "?cursor=not-a-cursor").get();
+        assertBadRequestResponse(response);
+    }
+
+    @Test
+    public void shouldExportEmployeesAsJsonArray() {
+        Response response = resourceTestHelper.requestBuilder(BASE_URL + "export").get();
+        assertOkResponse(response);
+        String body = response.readEntity(String.class);
+        assertTrue(body.startsWith("[") && body.contains("\"name\":\"akhil\""));
+    }
+
+    @Test
+    public void shouldExportEmployeesAsNdjson() {
+        Response response = resourceTestHelper.requestBuilder(BASE_URL + "export?format=ndjson")
+                                              .accept(EmployeeResource.APPLICATION_NDJSON).get();
+        assertOkResponse(response);
+        assertTrue(response.readEntity(String.class).startsWith("{"));
+    }
+
+    @Test
+    public void shouldFilterEmployeesByDepartmentAndNamePrefix() {
+        Response response = resourceTestHelper.requestBuilder(BASE_URL + "?value=name&depId=1&namePrefix=akh").get();
+        assertOkResponse(response);
+        String body = response.readEntity(String.class);
+        assertTrue(body.contains("\"name\":\"akhil\"") && !body.contains("\"name\":\"mahesh\""));
+    }
+
+    @Test
+    public void shouldSearchEmployees() {
+        Response response = resourceTestHelper.requestBuilder(BASE_URL + "search?q=akh&limit=5").get();
+        assertOkResponse(response);
+        assertTrue(response.readEntity(String.class).startsWith("["));
+    }
+
+    @Test
+    public void shouldThrowBadRequestWhileSearchingWithoutWords() {
+        Response response = resourceTestHelper.requestBuilder(BASE_URL + "search?q=").get();
+        assertBadRequestResponse(response);
+    }
+
+    @Test
+    public void shouldThrowBadRequestWhileExportingInUnknownFormat() {
+        Response response = resourceTestHelper.requestBuilder(BASE_URL + "export?format=xml").get();
+        assertBadRequestResponse(response);
+    }
+
+    @Test
+    public void shouldNegotiateBinaryFormatsWithJsonAsTheDefault() throws Exception {
+        Response json = resourceTestHelper.requestBuilder(BASE_URL + "1").accept("*/*").get();
+        assertOkResponse(json);
+        assertEquals(MediaType.APPLICATION_JSON_TYPE, json.getMediaType());
+
+        Response smile = resourceTestHelper.requestBuilder(BASE_URL + "1").accept(Representations.APPLICATION_SMILE).get();
+        assertOkResponse(smile);
+        assertEquals(Representations.APPLICATION_SMILE_TYPE, smile.getMediaType());
+        assertTrue(smile.getHeaderString(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT));
+        assertNotEquals(json.getEntityTag(), smile.getEntityTag());
+        ObjectMapper smileMapper = Jackson.newObjectMapper(new SmileFactory());
+        assertEquals("akhil", smileMapper.readValue(smile.readEntity(byte[].class), Employee.class).getName());
+
+        Response cbor = resourceTestHelper.requestBuilder(BASE_URL).accept(Representations.APPLICATION_CBOR).get();
+        assertOkResponse(cbor);
+        ObjectMapper cborMapper = Jackson.newObjectMapper(new CBORFactory());
+        List<Employee> employees = cborMapper.readValue(cbor.readEntity(byte[].class),
+                                                        new TypeReference<List<Employee>>() {});
+        assertFalse(employees.isEmpty());
+    }
+
+    @Test
+    public void shouldReadBinaryRequestBodies() throws Exception {
+        ObjectMapper cborMapper = Jackson.newObjectMapper(new CBORFactory());
+        byte[] invalid = cborMapper.writeValueAsBytes(new Employee(1, ""));
+        assertUnprocessibleEntityResponse(resourceTestHelper.requestBuilder(BASE_URL)
+                                                            .post(Entity.entity(invalid, Representations.APPLICATION_CBOR)));
+
+        // Neither record can be created, so no id is taken from the other tests
+        byte[] bulk = cborMapper.writeValueAsBytes(Arrays.asList(new Employee(100, "suresh"), new Employee(1, "")));
+        Response response = resourceTestHelper.requestBuilder(BASE_URL + "_bulk")
+                                              .accept(Representations.APPLICATION_CBOR)
+                                              .post(Entity.entity(bulk, Representations.APPLICATION_CBOR));
+        assertOkResponse(response);
+        List<BulkItemResult> results = cborMapper.readValue(response.readEntity(byte[].class),
+                                                            new TypeReference<List<BulkItemResult>>() {});
+        assertEquals(2, results.size());
+        assertEquals(400, results.get(0).getCode().intValue());
+        assertEquals(400, results.get(1).getCode().intValue());
+    }
+
+    @Test
+    public void shouldRejectUnsupportedRequestBodies() {
+        Response response = resourceTestHelper.requestBuilder(BASE_URL)
+                                              .post(Entity.entity(inputEmployee, "application/vnd.ems+json"));
+        assertEquals(415, response.getStatus());
+    }
+
+    @Test
+    public void shouldServeChangesAheadOfEmployeeIds() {
+        Response response = resourceTestHelper.requestBuilder(BASE_URL + "changes").get();
+        assertOkResponse(response);
+        Delta<Employee> delta = response.readEntity(new GenericType<Delta<Employee>>() {});
+        assertTrue(delta.getChanges().isEmpty());
+        assertEquals(410, resourceTestHelper.requestBuilder(BASE_URL + "changes?since=" + (delta.getHighWaterMark() + 1))
+                                            .get().getStatus());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldReportPerRecordResultsOfBulkCreate() {
+        // A resource of its own, so the ids taken here do not shift the ids the other tests expect
+        EmployeeResource employeeResource = new EmployeeResource(new EmployeeService(new DepartmentService()));
+        AsyncResponse asyncResponse = mock(AsyncResponse.class);
+        employeeResource.createEmployees(Arrays.asList(new Employee(1, "ramesh"),
+                                                       new Employee(100, "suresh"),
+                                                       new Employee(1, "")), asyncResponse);
+        ArgumentCaptor<Response> resumed = ArgumentCaptor.forClass(Response.class);
+        verify(asyncResponse).resume(resumed.capture());
+        Response response = resumed.getValue();
+        assertOkResponse(response);
+        List<BulkItemResult> results = (List<BulkItemResult>) response.getEntity();
+        assertEquals(3, results.size());
+        assertEquals(201, results.get(0).getCode().intValue());
+        assertEquals(400, results.get(1).getCode().intValue());
+        assertEquals(400, results.get(2).getCode().intValue());
+        assertEquals(2, results.get(2).getIndex().intValue());
+    }
+
+    @Test
+    public void shouldUpdateAndDeleteEmployeesInBulk() {
+        Response response = resourceTestHelper.requestBuilder(BASE_URL + "_bulk")
+                                              .put(Entity.json("[{\"empId\":1,\"depId\":1,\"name\":\"mahesh\"},"
+                                                               + "{\"empId\":404,\"depId\":1,\"name\":\"ramesh\"}]"));
+        List<BulkItemResult> results = response.readEntity(new GenericType<List<BulkItemResult>>() {});
+        assertEquals(200, results.get(0).getCode().intValue());
+        assertEquals(404, results.get(1).getCode().intValue());
+
+        response = resourceTestHelper.requestBuilder(BASE_URL + "_bulk/delete").post(Entity.json("[1,404]"));
+        results = response.readEntity(new GenericType<List<BulkItemResult>>() {});
+        assertEquals(204, results.get(0).getCode().intValue());
+        assertEquals(404, results.get(1).getCode().intValue());
+    }
+
+    @Test
+    public void shouldThrowBadRequestForEmptyBulkRequest() {
+        Response response = resourceTestHelper.requestBuilder(BASE_URL + "_bulk").post(Entity.json("[]"));
+        assertBadRequestResponse(response);
+    }
+
+    @Test
+    public void shouldMapMissingEmployeeToNotFoundWithItsId() {
+        Response response = resourceTestHelper.requestBuilder(BASE_URL + "404").get();
+        assertNotFoundResponse(response);
+        assertTrue(response.readEntity(String.class).contains("Employee 404 not found"));
+    }
+
     @Override
     protected void populateStubData(){
         super.populateStubData();
@@ -0,0 +1,141 @@
+package resources;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.freshworks.ems.exceptions.EmployeeNotFound;
+import com.freshworks.ems.resources.ExecutionConfiguration;
+import com.freshworks.ems.resources.RequestExecutor;
+import io.dropwizard.jackson.Jackson;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.ArgumentMatchers.any;
+
+public class RequestExecutorTest {
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+
+    private RequestExecutor requestExecutor;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        requestExecutor.stop();
+    }
+
+    @Test
+    public void shouldRunOnCallingThreadWhenDisabled() {
+        requestExecutor = RequestExecutor.direct();
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        AsyncResponse asyncResponse = mock(AsyncResponse.class);
+        requestExecutor.execute(asyncResponse, () -> {
+            thread.set(Thread.currentThread());
+            return Response.noContent().build();
+        });
+        assertEquals(Thread.currentThread(), thread.get());
+        assertEquals(204, resumed(asyncResponse).getStatus());
+    }
+
+    @Test
+    public void shouldRunOnItsOwnThreads() throws IOException {
+        requestExecutor = new RequestExecutor(configuration(2, 4));
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        AsyncResponse asyncResponse = mock(AsyncResponse.class);
+        requestExecutor.execute(asyncResponse, () -> {
+            thread.set(Thread.currentThread());
+            return Response.noContent().build();
+        });
+        assertEquals(204, resumed(asyncResponse).getStatus());
+        assertNotEquals(Thread.currentThread(), thread.get());
+        assertTrue(thread.get().getName().startsWith("ems-request-"));
+    }
+
+    @Test
+    public void shouldHandExceptionsToMappers() throws IOException {
+        requestExecutor = new RequestExecutor(configuration(1, 1));
+        AsyncResponse asyncResponse = mock(AsyncResponse.class);
+        EmployeeNotFound employeeNotFound = new EmployeeNotFound(7);
+        requestExecutor.execute(asyncResponse, () -> {
+            throw employeeNotFound;
+        });
+        verify(asyncResponse, timeout(5000)).resume(employeeNotFound);
+    }
+
+    @Test
+    public void shouldTurnAwayRequestsBeyondThreadsAndQueue() throws Exception {
+        requestExecutor = new RequestExecutor(configuration(1, 0));
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AsyncResponse slowResponse = mock(AsyncResponse.class);
+        requestExecutor.execute(slowResponse, () -> {
+            running.countDown();
+            release.await();
+            return Response.noContent().build();
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        AsyncResponse rejectedResponse = mock(AsyncResponse.class);
+        requestExecutor.execute(rejectedResponse, () -> Response.noContent().build());
+        Response response = resumed(rejectedResponse);
+        assertEquals(503, response.getStatus());
+        assertEquals("1", response.getHeaderString("Retry-After"));
+
+        release.countDown();
+        assertEquals(204, resumed(slowResponse).getStatus());
+    }
+
+    @Test
+    public void shouldNotRunRequestsThatTimedOutInTheQueue() throws Exception {
+        requestExecutor = new RequestExecutor(configuration(1, 1));
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AsyncResponse slowResponse = mock(AsyncResponse.class);
+        requestExecutor.execute(slowResponse, () -> {
+            running.countDown();
+            release.await();
+            return Response.noContent().build();
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        AsyncResponse queuedResponse = mock(AsyncResponse.class);
+        AtomicBoolean ran = new AtomicBoolean();
+        requestExecutor.execute(queuedResponse, () -> {
+            ran.set(true);
+            return Response.noContent().build();
+        });
+        ArgumentCaptor<TimeoutHandler> timeoutHandler = ArgumentCaptor.forClass(TimeoutHandler.class);
+        verify(queuedResponse).setTimeoutHandler(timeoutHandler.capture());
+        timeoutHandler.getValue().handleTimeout(queuedResponse);
+        assertEquals(503, resumed(queuedResponse).getStatus());
+
+        release.countDown();
+        assertEquals(204, resumed(slowResponse).getStatus());
+        requestExecutor.stop();
+        assertFalse(ran.get());
+        verify(queuedResponse, never()).resume(any(Throwable.class));
+    }
+
+    private static ExecutionConfiguration configuration(int maxThreads, int maxQueueSize) throws IOException {
+        return MAPPER.readValue("{\"enabled\":true,\"maxThreads\":" + maxThreads
+                + ",\"maxQueueSize\":" + maxQueueSize + "}", ExecutionConfiguration.class);
+    }
+
+    private static Response resumed(AsyncResponse asyncResponse) {
+        ArgumentCaptor<Response> response = ArgumentCaptor.forClass(Response.class);
+        verify(asyncResponse, timeout(5000)).resume(response.capture());
+        return response.getValue();
+    }
+}
@@ -0,0 +1,146 @@
+package service;
+
+import com.freshworks.ems.exceptions.ChangesExpired;
+import com.freshworks.ems.model.ChangeEvent;
+import com.freshworks.ems.model.Delta;
+import com.freshworks.ems.model.Department;
+import com.freshworks.ems.model.Employee;
+import com.freshworks.ems.service.ChangeLog;
+import com.freshworks.ems.service.DepartmentService;
+import com.freshworks.ems.service.EmployeeService;
+import org.junit.Test;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ChangeLogTest {
+
+    @Test
+    public void shouldNumberWritesInTheOrderTheyWereApplied() throws Exception {
+        ChangeLog changeLog = new ChangeLog(16);
+        DepartmentService departmentService = new DepartmentService();
+        EmployeeService employeeService = new EmployeeService(departmentService);
+        departmentService.createEmployeeServiceObject(employeeService);
+        departmentService.addChangeListener(changeLog);
+        employeeService.addChangeListener(changeLog);
+        long start = changeLog.getLastSequence();
+
+        Department department = departmentService.createDepartment(new Department("sales"));
+        Employee employee = employeeService.createEmployee(new Employee(department.getDepId(), "akhil"));
+        employeeService.deleteEmployee(employee.getEmpId());
+
+        List<ChangeLog.Entry> entries = changeLog.read(start, 10, 0);
+        assertEquals(3, entries.size());
+        assertEquals(start + 1, entries.get(0).getSequence());
+        assertEquals(ChangeEvent.Entity.DEPARTMENT, entries.get(0).getEvent().getEntity());
+        assertEquals(ChangeEvent.Operation.CREATE, entries.get(1).getEvent().getOperation());
+        assertEquals(ChangeEvent.Operation.DELETE, entries.get(2).getEvent().getOperation());
+        assertEquals(start + 3, changeLog.getLastSequence());
+        assertEquals(1, changeLog.read(start + 2, 10, 0).size());
+        assertEquals(2, changeLog.read(start, 2, 0).size());
+    }
+
+    @Test(expected = ChangesExpired.class)
+    public void shouldExpireChangesPushedOutOfTheLog() throws Exception {
+        ChangeLog changeLog = new ChangeLog(4);
+        long start = changeLog.getLastSequence();
+        for (int empId = 1; empId <= 5; empId++) {
+            changeLog.onChange(ChangeEvent.ofEmployee(ChangeEvent.Operation.CREATE, empId, new Employee(1, "akhil")));
+        }
+        assertEquals(4, changeLog.read(start + 1, 10, 0).size());
+        changeLog.read(start, 10, 0);
+    }
+
+    @Test(expected = ChangesExpired.class)
+    public void shouldExpireSequencesFromBeforeTheLog() throws Exception {
+        ChangeLog changeLog = new ChangeLog(4);
+        changeLog.checkAvailable(changeLog.getLastSequence() - 1);
+    }
+
+    @Test
+    public void shouldWakeWaitingReaders() throws Exception {
+        ChangeLog changeLog = new ChangeLog(4);
+        long start = changeLog.getLastSequence();
+        assertTrue(changeLog.read(start, 10, 10).isEmpty());
+
+        CompletableFuture<List<ChangeLog.Entry>> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return changeLog.read(start, 10, 60_000);
+            }
+            catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        changeLog.onChange(ChangeEvent.ofDepartment(ChangeEvent.Operation.CREATE, 1, new Department(1, "sales")));
+        assertEquals(1, waiting.get(5, TimeUnit.SECONDS).size());
+
+        CompletableFuture<List<ChangeLog.Entry>> stopped = CompletableFuture.supplyAsync(() -> {
+            try {
+                return changeLog.read(start + 1, 10, 60_000);
+            }
+            catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        changeLog.close();
+        assertTrue(stopped.get(5, TimeUnit.SECONDS).isEmpty());
+    }
+
+    @Test
+    public void shouldCompactDeltasToTheLatestChangeOfEachRecord() throws Exception {
+        ChangeLog changeLog = new ChangeLog(16);
+        DepartmentService departmentService = new DepartmentService();
+        EmployeeService employeeService = new EmployeeService(departmentService);
+        departmentService.createEmployeeServiceObject(employeeService);
+        departmentService.addChangeListener(changeLog);
+        employeeService.addChangeListener(changeLog);
+        long start = changeLog.getLastSequence();
+
+        Department department = departmentService.createDepartment(new Department("sales"));
+        Employee akhil = employeeService.createEmployee(new Employee(department.getDepId(), "akhil"));
+        Employee ravi = employeeService.createEmployee(new Employee(department.getDepId(), "ravi"));
+        employeeService.updateEmployee(akhil.getEmpId(), new Employee(department.getDepId(), "akhil kumar"));
+        employeeService.deleteEmployee(ravi.getEmpId());
+
+        Delta<Employee> delta = changeLog.delta(ChangeEvent.Entity.EMPLOYEE, start, 10, employeeService::findEmployee);
+        assertEquals(2, delta.getChanges().size());
+        assertEquals(akhil.getEmpId().intValue(), delta.getChanges().get(0).getId());
+        assertEquals("akhil kumar", delta.getChanges().get(0).getRecord().getName());
+        assertEquals(ravi.getEmpId().intValue(), delta.getChanges().get(1).getId());
+        assertTrue(delta.getChanges().get(1).isDeleted());
+        assertNull(delta.getChanges().get(1).getRecord());
+        assertEquals(changeLog.getLastSequence(), delta.getHighWaterMark());
+        assertFalse(delta.isHasMore());
+
+        Delta<Employee> first = changeLog.delta(ChangeEvent.Entity.EMPLOYEE, start, 1, employeeService::findEmployee);
+        assertEquals(1, first.getChanges().size());
+        assertTrue(first.isHasMore());
+        Delta<Employee> rest = changeLog.delta(ChangeEvent.Entity.EMPLOYEE, first.getHighWaterMark(), 1,
+                                               employeeService::findEmployee);
+        assertEquals(ravi.getEmpId().intValue(), rest.getChanges().get(0).getId());
+        assertFalse(rest.isHasMore());
+
+        Delta<Department> departments = changeLog.delta(ChangeEvent.Entity.DEPARTMENT, start, 10,
+                                                        departmentService::findDepartment);
+        assertEquals(1, departments.getChanges().size());
+        assertTrue(changeLog.delta(ChangeEvent.Entity.EMPLOYEE, delta.getHighWaterMark(), 10,
+                                   employeeService::findEmployee).getChanges().isEmpty());
+    }
+
+    @Test(expected = ChangesExpired.class)
+    public void shouldExpireDeltasFromBeforeDroppedTombstones() throws Exception {
+        ChangeLog changeLog = new ChangeLog(16, 2);
+        long start = changeLog.getLastSequence();
+        for (int empId = 1; empId <= 3; empId++) {
+            changeLog.onChange(ChangeEvent.ofEmployee(ChangeEvent.Operation.DELETE, empId, null));
+        }
+        assertEquals(2, changeLog.delta(ChangeEvent.Entity.EMPLOYEE, start + 1, 10, empId -> Optional.empty())
+                                 .getChanges().size());
+        changeLog.delta(ChangeEvent.Entity.EMPLOYEE, start, 10, empId -> Optional.empty());
+    }
+}
@@ -2,13 +2,20 @@ package service;
 
 import com.freshworks.ems.exceptions.DepartmentNotFound;
 import com.freshworks.ems.model.Department;
+import com.freshworks.ems.model.DepartmentDeletionJob;
 import com.freshworks.ems.model.Employee;
 import com.freshworks.ems.service.DepartmentService;
 import com.freshworks.ems.service.EmployeeService;
 import org.junit.Before;
 import org.junit.Test;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -62,6 +69,60 @@ public class DepartmentServiceTest {
         departmentService.removeDepartment(existingDepartmentId);
     }
 
+    @Test
+    public void shouldHideEmployeesAtOnceAndReclaimThemInTheBackground() throws Exception {
+        DepartmentService largeDepartmentService = new DepartmentService();
+        EmployeeService employeeService = new EmployeeService(largeDepartmentService);
+        largeDepartmentService.createEmployeeServiceObject(employeeService);
+        List<Employee> employees = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            employees.add(new Employee(1, "employee" + i));
+        }
+        employeeService.createEmployees(employees);
+
+        Optional<DepartmentDeletionJob> job = largeDepartmentService.deleteDepartment(1);
+        assertTrue(job.isPresent());
+        assertEquals(2500, job.get().getTotal());
+        assertFalse(largeDepartmentService.hasDepartment(1));
+        assertFalse(employeeService.findEmployee(1).isPresent());
+        assertTrue(employeeService.getEmployees("", null, 100).getItems().isEmpty());
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!job.get().isFinished() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(DepartmentDeletionJob.Status.COMPLETED, job.get().getStatus());
+        assertEquals(2500, job.get().getReclaimed());
+        assertTrue(employeeService.getIndexedDepartmentIds().isEmpty());
+        assertSame(job.get(), largeDepartmentService.findDeletionJob(job.get().getJobId()).get());
+    }
+
+    @Test
+    public void shouldReclaimEmployeesLeftWithoutADepartment() throws Exception {
+        DepartmentService bootedDepartmentService = new DepartmentService();
+        EmployeeService employeeService = new EmployeeService(bootedDepartmentService);
+        bootedDepartmentService.createEmployeeServiceObject(employeeService);
+        Department department = bootedDepartmentService.createDepartment(new Department("sales"));
+        employeeService.addEmployeeForTests(new Employee(1, department.getDepId(), "akhil"));
+        // As recovered from a log whose department delete was persisted before its employees were reclaimed
+        employeeService.addEmployeeForTests(new Employee(2, 999, "orphan"));
+
+        bootedDepartmentService.reclaimOrphans();
+        assertFalse(employeeService.findEmployee(2).isPresent());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (employeeService.getIndexedDepartmentIds().contains(999) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Collections.singleton(department.getDepId()), employeeService.getIndexedDepartmentIds());
+        assertTrue(employeeService.findEmployee(1).isPresent());
+    }
+
+    @Test
+    public void shouldDeleteSmallDepartmentWithoutAJob() throws Exception {
+        assertFalse(departmentService.deleteDepartment(existingDepartmentId).isPresent());
+        assertFalse(departmentService.hasDepartment(existingDepartmentId));
+    }
+
     @Test(expected = DepartmentNotFound.class)
     public void shouldThrowNotFoundExceptionWhileDeletingDepartmentByInvalidId() throws Exception{
        departmentService.removeDepartment(nonExistingDepartmentId);
@@ -1,16 +1,38 @@
 package service;
 
+import com.codahale.metrics.MetricRegistry;
 import com.freshworks.ems.exceptions.DepartmentNotFound;
 import com.freshworks.ems.exceptions.EmployeeNotFound;
+import com.freshworks.ems.exceptions.InvalidCursor;
+import com.freshworks.ems.health.EmployeeIndexHealthCheck;
+import com.freshworks.ems.model.Department;
+import com.freshworks.ems.model.DepartmentStats;
 import com.freshworks.ems.model.Employee;
+import com.freshworks.ems.model.ChangeEvent;
+import com.freshworks.ems.model.Page;
 import com.freshworks.ems.service.DepartmentService;
+import com.freshworks.ems.service.EmployeeFilter;
 import com.freshworks.ems.service.EmployeeService;
+import com.freshworks.ems.store.ConcurrentEntityStore;
 import org.junit.Before;
 import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.eq;
@@ -44,6 +66,22 @@ public class EmployeeServiceTest {
         assertEquals(existingEmployeeId, employeeService.getEmployeeById(existingEmployeeId).getEmpId());
     }
 
+    @Test
+    public void shouldStampANewVersionOnEveryWrite() throws Exception {
+        long collectionVersion = employeeService.getCollectionVersion();
+        Employee createdEmployee = employeeService.createEmployee(new Employee(1, "ramesh"));
+        long createdVersion = employeeService.getEmployeeById(createdEmployee.getEmpId()).getVersion();
+        assertTrue(createdVersion > collectionVersion);
+        assertEquals(createdVersion, employeeService.getCollectionVersion());
+
+        employeeService.updateEmployee(createdEmployee.getEmpId(), new Employee(1, "suresh"));
+        assertTrue(employeeService.getEmployeeById(createdEmployee.getEmpId()).getVersion() > createdVersion);
+
+        long versionBeforeDelete = employeeService.getCollectionVersion();
+        employeeService.deleteEmployee(createdEmployee.getEmpId());
+        assertTrue(employeeService.getCollectionVersion() > versionBeforeDelete);
+    }
+
     @Test(expected = EmployeeNotFound.class)
     public void shouldThrowNotFoundExceptionWhileGettingDepartmentWithInvalidId() throws EmployeeNotFound {
         assertEquals(nonExistingEmployeeId, employeeService.getEmployeeById(nonExistingEmployeeId).getEmpId());
@@ -57,6 +95,29 @@ public class EmployeeServiceTest {
        assertEquals(employee.getEmpId(), employeeService.getEmpsOfDepartment(1).get(0).getEmpId());
     }
 
+    @Test
+    public void shouldIndexCreatedEmployeeUnderItsDepartment() throws DepartmentNotFound {
+        Employee createdEmployee = employeeService.createEmployee(new Employee(1, "ramesh"));
+        assertEquals(createdEmployee.getEmpId(), employeeService.getEmpsOfDepartment(1).get(0).getEmpId());
+        assertEquals(1, employeeService.getEmpsOfDepartment(2).size());
+    }
+
+    @Test
+    public void shouldOnlyRenameEmployeeOnUpdate() throws Exception {
+        Employee updatedEmployee = employeeService.updateEmployee(2, new Employee(1, "mahi"));
+        assertEquals(Integer.valueOf(2), updatedEmployee.getDepId());
+        assertEquals("mahi", updatedEmployee.getName());
+        assertSame(updatedEmployee, employeeService.getEmployeeById(2));
+        assertEquals(1, employeeService.getEmpsOfDepartment(1).size());
+        assertEquals(1, employeeService.getEmpsOfDepartment(2).size());
+    }
+
+    @Test
+    public void shouldRemoveDeletedEmployeeFromDepartment() throws EmployeeNotFound {
+        employeeService.deleteEmployee(existingEmployeeId);
+        assertTrue(employeeService.getEmpsOfDepartment(1).isEmpty());
+    }
+
     @Test
     public void shouldDeleteEmployee() throws EmployeeNotFound {
         doNothing().when(EMPLOYEE_SERVICE).deleteEmployee(eq(existingEmployeeId));
@@ -101,6 +162,119 @@ public class EmployeeServiceTest {
         assertEquals("ramesh", sortedEmployeesList.get(2).getName());
     }
 
+    @Test
+    public void shouldKeepNameOrderAfterUpdatingEmployeeName() throws Exception {
+        employeeService.updateEmployee(1, new Employee(1, "zubin"));
+        List<Employee> sortedEmployeesList = employeeService.sortEmployees("name");
+        assertEquals("mahesh", sortedEmployeesList.get(0).getName());
+        assertEquals("zubin", sortedEmployeesList.get(1).getName());
+    }
+
+    @Test
+    public void shouldDropDeletedEmployeeFromSortedList() throws Exception {
+        employeeService.deleteEmployee(existingEmployeeId);
+        List<Employee> sortedEmployeesList = employeeService.sortEmployees("name");
+        assertEquals(1, sortedEmployeesList.size());
+        assertEquals("mahesh", sortedEmployeesList.get(0).getName());
+    }
+
+    @Test
+    public void shouldPageThroughEmployeesSortedByName() throws Exception {
+        employeeService.addEmployeeForTests(new Employee(3, 1, "ramesh"));
+        Page<Employee> firstPage = employeeService.getEmployees("name", null, 2);
+        assertEquals("akhil", firstPage.getItems().get(0).getName());
+        assertEquals("mahesh", firstPage.getItems().get(1).getName());
+        Page<Employee> secondPage = employeeService.getEmployees("name", firstPage.getNextCursor(), 2);
+        assertEquals(1, secondPage.getItems().size());
+        assertEquals("ramesh", secondPage.getItems().get(0).getName());
+        assertNull(secondPage.getNextCursor());
+    }
+
+    @Test
+    public void shouldPageThroughEmployeesOfDepartment() throws Exception {
+        employeeService.addEmployeeForTests(new Employee(3, 1, "ramesh"));
+        employeeService.addEmployeeForTests(new Employee(4, 1, "suresh"));
+        Page<Employee> firstPage = employeeService.getEmpsOfDepartment(1, null, 2);
+        Page<Employee> secondPage = employeeService.getEmpsOfDepartment(1, firstPage.getNextCursor(), 2);
+        assertEquals(2, firstPage.getItems().size());
+        assertEquals("suresh", secondPage.getItems().get(0).getName());
+    }
+
+    @Test
+    public void shouldFilterEmployeesByDepartmentAgeAndNamePrefix() throws Exception {
+        addFilterableEmployees();
+        assertEquals(Arrays.asList("ramesh", "rani", "suresh"),
+                     names(employeeService.getEmployees("name", new EmployeeFilter(1, 30, 40, null), null, 10)));
+        assertEquals(Arrays.asList("ramesh", "rani", "ravi"),
+                     names(employeeService.getEmployees("", new EmployeeFilter(null, null, null, "ra"), null, 10)));
+        assertEquals(Collections.singletonList("ravi"),
+                     names(employeeService.getEmployees("age", new EmployeeFilter(2, 30, null, "r"), null, 10)));
+        assertEquals(Collections.emptyList(),
+                     names(employeeService.getEmployees("", new EmployeeFilter(1, 40, 30, null), null, 10)));
+        assertEquals(Collections.emptyList(),
+                     names(employeeService.getEmployees("", new EmployeeFilter(9, null, null, null), null, 10)));
+    }
+
+    @Test
+    public void shouldPageFilteredEmployeesInListingOrder() throws Exception {
+        addFilterableEmployees();
+        // Walked in age order through the age index, and read whole and sorted from the department index
+        for (EmployeeFilter filter : Arrays.asList(new EmployeeFilter(null, 25, 45, null),
+                                                   new EmployeeFilter(1, null, null, null))) {
+            List<String> names = new ArrayList<>();
+            String cursor = null;
+            do {
+                Page<Employee> page = employeeService.getEmployees("age", filter, cursor, 2);
+                names.addAll(names(page));
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+            assertEquals(filter.getDepId() == null ? Arrays.asList("suresh", "ramesh", "rani", "ravi", "mohan")
+                                                   : Arrays.asList("suresh", "ramesh", "rani", "mohan"), names);
+        }
+    }
+
+    @Test
+    public void shouldRankNameMatchesAboveEmailMatches() throws Exception {
+        addSearchableEmployees();
+        assertEquals(Arrays.asList("akhil", "Akhil Kumar", "Akhilesh", "ramesh", "suresh"),
+                     names(employeeService.searchEmployees("AKHIL", null, 10)));
+        assertEquals(Arrays.asList("akhil", "Akhil Kumar", "Akhilesh", "ramesh", "suresh"),
+                     names(employeeService.searchEmployees("ak", null, 10)));
+        assertEquals(Collections.singletonList("Akhil Kumar"), names(employeeService.searchEmployees("akhil ku", null, 10)));
+        assertEquals(Collections.emptyList(), names(employeeService.searchEmployees("akhilx", null, 10)));
+    }
+
+    @Test
+    public void shouldPageThroughSearchResultsAcrossRanks() throws Exception {
+        addSearchableEmployees();
+        Page<Employee> firstPage = employeeService.searchEmployees("akhil", null, 2);
+        Page<Employee> secondPage = employeeService.searchEmployees("akhil", firstPage.getNextCursor(), 2);
+        Page<Employee> thirdPage = employeeService.searchEmployees("akhil", secondPage.getNextCursor(), 2);
+        assertEquals(Arrays.asList("akhil", "Akhil Kumar"), names(firstPage));
+        assertEquals(Arrays.asList("Akhilesh", "ramesh"), names(secondPage));
+        assertEquals(Collections.singletonList("suresh"), names(thirdPage));
+        assertNull(thirdPage.getNextCursor());
+    }
+
+    @Test
+    public void shouldKeepSearchInStepWithWrites() throws Exception {
+        employeeService.addEmployeeForTests(new Employee(2, 2, "akhila"));
+        assertEquals(Arrays.asList("akhil", "akhila"), names(employeeService.searchEmployees("akh", null, 10)));
+        employeeService.deleteEmployee(1);
+        assertEquals(Collections.singletonList("akhila"), names(employeeService.searchEmployees("akh", null, 10)));
+        assertEquals(Collections.emptyList(), names(employeeService.searchEmployees("mahesh", null, 10)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectSearchWithoutWords() throws Exception {
+        employeeService.searchEmployees(" @. ", null, 10);
+    }
+
+    @Test(expected = InvalidCursor.class)
+    public void shouldThrowInvalidCursorForMalformedCursor() throws Exception {
+        employeeService.getEmployees("", "not a cursor", 10);
+    }
+
     @Test(expected = NullPointerException.class)
     public void shouldThrowNullPointerExceptionWhileSortingEmployeesWithAgeAsNull() throws DepartmentNotFound {
         employeeService.createEmployee(new Employee( 1, "akhil"));
@@ -113,4 +287,195 @@ public class EmployeeServiceTest {
     public void shouldThrowIllegalArgumentExceptionWhileSortingWithInvalidAttribute(){
         employeeService.sortEmployees("email");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldReportStoreAndIndexSizesAsGauges() {
+        MetricRegistry metrics = new MetricRegistry();
+        employeeService.registerMetrics(metrics);
+        employeeService.addEmployeeForTests(new Employee(3,1,"ramesh"));
+
+        assertEquals(3, metrics.getGauges().get("com.freshworks.ems.service.EmployeeService.employees").getValue());
+        assertEquals(3, metrics.getGauges().get("com.freshworks.ems.service.EmployeeService.nameIndex.size").getValue());
+        assertEquals(2, metrics.getGauges().get("com.freshworks.ems.service.EmployeeService.departmentFanOut.max").getValue());
+    }
+
+    @Test
+    public void shouldFindEmployeeWithoutThrowing() {
+        assertTrue(employeeService.findEmployee(existingEmployeeId).isPresent());
+        assertFalse(employeeService.findEmployee(nonExistingEmployeeId).isPresent());
+    }
+
+    @Test
+    public void shouldThrowStacklessEmployeeNotFoundCarryingId() {
+        try {
+            employeeService.getEmployeeById(nonExistingEmployeeId);
+        }
+        catch (EmployeeNotFound employeeNotFound) {
+            assertEquals(nonExistingEmployeeId, employeeNotFound.getEmpId());
+            assertEquals(0, employeeNotFound.getStackTrace().length);
+            return;
+        }
+        fail();
+    }
+
+    private void addSearchableEmployees(){
+        employeeService.addEmployeeForTests(new Employee(3, 1, "Akhil Kumar", "ak@ems.com", 30));
+        employeeService.addEmployeeForTests(new Employee(4, 1, "Akhilesh", null, 30));
+        employeeService.addEmployeeForTests(new Employee(5, 1, "ramesh", "akhil@ems.com", 30));
+        employeeService.addEmployeeForTests(new Employee(6, 1, "suresh", "akhilan@ems.com", 30));
+    }
+
+    @Test
+    public void shouldKeepDepartmentStatsInStepWithWrites() throws Exception {
+        addFilterableEmployees();
+        DepartmentStats stats = employeeService.getDepartmentStats(1);
+        assertEquals(4, stats.getHeadcount());
+        assertEquals(30, stats.getMinAge().intValue());
+        assertEquals(45, stats.getMaxAge().intValue());
+        assertEquals(36.25, stats.getMeanAge(), 0.001);
+        assertEquals(3, stats.getAgeHistogram().get("30-39").intValue());
+        assertEquals(1, stats.getAgeHistogram().get("40-49").intValue());
+
+        departmentService.createDepartment(new Department("sales"));
+        departmentService.createDepartment(new Department("support"));
+        employeeService.deleteEmployee(4);
+        employeeService.deleteEmployee(7);
+        employeeService.createEmployee(new Employee(0, 2, "mohan", null, 45));
+        stats = employeeService.getDepartmentStats(1);
+        assertEquals(2, stats.getHeadcount());
+        assertEquals(35, stats.getMinAge().intValue());
+        assertEquals(35, stats.getMaxAge().intValue());
+        assertEquals(0, stats.getAgeHistogram().get("40-49").intValue());
+        stats = employeeService.getDepartmentStats(2);
+        assertEquals(2, stats.getHeadcount());
+        assertEquals(42.5, stats.getMeanAge(), 0.001);
+
+        stats = employeeService.getDepartmentStats(9);
+        assertEquals(0, stats.getHeadcount());
+        assertNull(stats.getMinAge());
+        assertNull(stats.getMeanAge());
+    }
+
+    @Test
+    public void shouldServeReadsByScanningUntilIndexesAreBuilt() throws Exception {
+        addFilterableEmployees();
+        EmployeeService deferredService = new EmployeeService(departmentService);
+        deferredService.deferIndexing();
+        for (Employee stored : employeeService.getAllEmployees("")) {
+            deferredService.replay(ChangeEvent.ofEmployee(ChangeEvent.Operation.CREATE, stored.getEmpId(), stored));
+        }
+        deferredService.replay(ChangeEvent.ofEmployee(ChangeEvent.Operation.DELETE, 7, null));
+        employeeService.deleteEmployee(7);
+
+        for (int pass = 0; pass < 2; pass++) {
+            for (EmployeeService service : Arrays.asList(employeeService, deferredService)) {
+                Page<Employee> firstPage = service.getEmployees("age", null, 2);
+                assertEquals(Arrays.asList("suresh", "ramesh"), names(firstPage));
+                assertEquals(Arrays.asList("rani", "ravi"),
+                             names(service.getEmployees("age", firstPage.getNextCursor(), 2)));
+                assertEquals(Arrays.asList("ramesh", "rani", "ravi"),
+                             names(service.getEmployees("name", new EmployeeFilter(null, null, null, "ra"), null, 10)));
+                assertEquals(Arrays.asList("ramesh", "rani", "ravi"), names(service.searchEmployees("r", null, 10)));
+                assertEquals(3, service.getEmpsOfDepartment(1).size());
+                assertEquals(3, service.getDepartmentStats(1).getHeadcount());
+            }
+            deferredService.buildIndexes().join();
+        }
+    }
+
+    @Test
+    public void shouldIndexWritesMadeWhileIndexesAreBuilt() throws Exception {
+        CountDownLatch paused = new CountDownLatch(1);
+        CountDownLatch resumed = new CountDownLatch(1);
+        EmployeeService deferredService = new EmployeeService(departmentService, new ConcurrentEntityStore<Employee>() {
+            @Override
+            public void forEach(Consumer<? super Employee> action) {
+                AtomicBoolean first = new AtomicBoolean(true);
+                super.forEach(employee -> {
+                    action.accept(employee);
+                    if (first.getAndSet(false)) {
+                        paused.countDown();
+                        awaitQuietly(resumed);
+                    }
+                });
+            }
+        });
+        deferredService.deferIndexing();
+        for (Employee stored : Arrays.asList(new Employee(3, 1, "ramesh", null, 35), new Employee(4, 1, "suresh", null, 30),
+                                             new Employee(5, 1, "rani", null, 35), new Employee(6, 2, "ravi", null, 40))) {
+            deferredService.replay(ChangeEvent.ofEmployee(ChangeEvent.Operation.CREATE, stored.getEmpId(), stored));
+        }
+
+        CompletableFuture<Void> built = deferredService.buildIndexes();
+        assertTrue(paused.await(10, TimeUnit.SECONDS));
+        deferredService.updateEmployee(3, new Employee(3, 1, "rakesh", null, 35));
+        deferredService.updateEmployee(4, new Employee(4, 1, "sunil", null, 30));
+        deferredService.deleteEmployee(5);
+        assertEquals(Integer.valueOf(7), deferredService.createEmployee(new Employee(0, 1, "rahul", null, 50)).getEmpId());
+        assertFalse(built.isDone());
+        resumed.countDown();
+        built.get(10, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList("rahul", "rakesh", "ravi", "sunil"),
+                     names(deferredService.getEmployees("name", null, 10)));
+        assertEquals(new HashSet<>(Arrays.asList("rahul", "rakesh", "ravi")),
+                     new HashSet<>(names(deferredService.searchEmployees("r", null, 10))));
+        assertEquals(3, deferredService.getEmpsOfDepartment(1).size());
+        assertEquals(3, deferredService.getDepartmentStats(1).getHeadcount());
+    }
+
+    @Test
+    public void shouldKeepServingWhenIndexBuildFails() throws Exception {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        EmployeeService deferredService = new EmployeeService(departmentService, new ConcurrentEntityStore<Employee>() {
+            @Override
+            public void forEach(Consumer<? super Employee> action) {
+                if (failing.getAndSet(false)) {
+                    throw new IllegalStateException("unreadable record");
+                }
+                super.forEach(action);
+            }
+        });
+        deferredService.deferIndexing();
+        deferredService.replay(ChangeEvent.ofEmployee(ChangeEvent.Operation.CREATE, 3, new Employee(3, 1, "ramesh", null, 35)));
+        try {
+            deferredService.buildIndexes().get(10, TimeUnit.SECONDS);
+            fail();
+        }
+        catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertFalse(new EmployeeIndexHealthCheck(deferredService).execute().isHealthy());
+
+        deferredService.createEmployee(new Employee(0, 1, "rahul", null, 50));
+        deferredService.updateEmployee(3, new Employee(3, 1, "rakesh", null, 35));
+        assertEquals(Arrays.asList("rahul", "rakesh"), names(deferredService.getEmployees("name", null, 10)));
+        assertEquals(2, deferredService.getEmpsOfDepartment(1).size());
+        assertEquals(2, deferredService.getDepartmentStats(1).getHeadcount());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void addFilterableEmployees() throws EmployeeNotFound {
+        employeeService.deleteEmployee(1);
+        employeeService.deleteEmployee(2);
+        employeeService.addEmployeeForTests(new Employee(3, 1, "ramesh", null, 35));
+        employeeService.addEmployeeForTests(new Employee(4, 1, "suresh", null, 30));
+        employeeService.addEmployeeForTests(new Employee(5, 1, "rani", null, 35));
+        employeeService.addEmployeeForTests(new Employee(6, 2, "ravi", null, 40));
+        employeeService.addEmployeeForTests(new Employee(7, 1, "mohan", null, 45));
+    }
+
+    private static List<String> names(Page<Employee> page){
+        List<String> names = new ArrayList<>();
+        page.getItems().forEach(employee -> names.add(employee.getName()));
+        return names;
+    }
+}
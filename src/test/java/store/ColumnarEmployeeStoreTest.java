@@ -0,0 +1,130 @@
+package store;
+
+import com.freshworks.ems.model.Employee;
+import com.freshworks.ems.service.DepartmentService;
+import com.freshworks.ems.service.EmployeeService;
+import com.freshworks.ems.store.ColumnarEmployeeStore;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class ColumnarEmployeeStoreTest {
+    private ColumnarEmployeeStore employeeStore;
+
+    @Before
+    public void setUp(){
+        employeeStore = new ColumnarEmployeeStore(16);
+        employeeStore.compute(1, (empId, employee) -> new Employee(1, 1, "akhil", "akhil@ems.com", 30));
+    }
+
+    @Test
+    public void shouldMaterializeStoredFields(){
+        Employee employee = employeeStore.get(1);
+        assertEquals((Integer) 1, employee.getEmpId());
+        assertEquals((Integer) 1, employee.getDepId());
+        assertEquals("akhil", employee.getName());
+        assertEquals("akhil@ems.com", employee.getEmail());
+        assertEquals((Integer) 30, employee.getAge());
+    }
+
+    @Test
+    public void shouldKeepNullFieldsNull(){
+        employeeStore.compute(2, (empId, employee) -> new Employee(2, 1, "ramesh"));
+        assertNull(employeeStore.get(2).getAge());
+        assertNull(employeeStore.get(2).getEmail());
+    }
+
+    @Test
+    public void shouldRemoveEntityWhenComputeReturnsNull(){
+        employeeStore.compute(1, (empId, employee) -> null);
+        assertFalse(employeeStore.containsKey(1));
+        assertEquals(0, employeeStore.size());
+    }
+
+    @Test
+    public void shouldReturnRemovedEntity(){
+        assertEquals("akhil", employeeStore.remove(1).getName());
+        assertNull(employeeStore.remove(1));
+    }
+
+    @Test
+    public void shouldPoolEachDistinctStringOnce(){
+        for (int empId = 2; empId <= 100; empId++) {
+            employeeStore.compute(empId, (id, employee) -> new Employee(id, 1, "akhil"));
+        }
+        assertEquals(2, employeeStore.pooledStrings());
+        for (int empId = 1; empId <= 100; empId++) {
+            employeeStore.remove(empId);
+        }
+        assertEquals(0, employeeStore.pooledStrings());
+    }
+
+    @Test
+    public void shouldWalkIdsInAscendingOrderWhateverTheInsertOrder(){
+        for (int empId : new int[]{500, 3, 200, 2, 150}) {
+            employeeStore.compute(empId, (id, employee) -> new Employee(id, 1, "ramesh"));
+        }
+        employeeStore.remove(200);
+        List<Integer> empIds = new ArrayList<>();
+        employeeStore.valuesAfter(2).forEachRemaining(employee -> empIds.add(employee.getEmpId()));
+        assertEquals(Arrays.asList(3, 150, 500), empIds);
+    }
+
+    @Test
+    public void shouldWalkPastManyRemovedIds(){
+        for (int empId = 2; empId <= 1000; empId++) {
+            employeeStore.compute(empId, (id, employee) -> new Employee(id, 1, "ramesh"));
+        }
+        for (int empId = 1; empId <= 1000; empId += 2) {
+            employeeStore.remove(empId);
+        }
+        Iterator<Employee> employees = employeeStore.valuesAfter(Integer.MIN_VALUE);
+        int walked = 0;
+        while (employees.hasNext()) {
+            assertEquals(0, employees.next().getEmpId() % 2);
+            walked++;
+        }
+        assertEquals(500, walked);
+        assertEquals(500, employeeStore.size());
+    }
+
+    @Test
+    public void shouldNotLoseWritesUnderConcurrentCompute() throws InterruptedException {
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            final int offset = i * 1000;
+            executorService.submit(() -> {
+                for (int empId = offset + 2; empId < offset + 1002; empId++) {
+                    employeeStore.compute(empId, (id, employee) -> new Employee(id, 1, "ramesh"));
+                    employeeStore.compute(1, (id, employee) -> new Employee(id, employee.getDepId() + 1, "akhil"));
+                    employeeStore.get(empId - 1);
+                }
+            });
+        }
+        executorService.shutdown();
+        executorService.awaitTermination(30, TimeUnit.SECONDS);
+        assertEquals(8001, employeeStore.size());
+        assertEquals((Integer) 8001, employeeStore.get(1).getDepId());
+    }
+
+    @Test
+    public void shouldRunEmployeeServiceOnColumns() throws Exception {
+        DepartmentService departmentService = new DepartmentService();
+        EmployeeService employeeService = new EmployeeService(departmentService, new ColumnarEmployeeStore());
+        departmentService.createEmployeeServiceObject(employeeService);
+        Employee employee = employeeService.createEmployee(new Employee(1, "ramesh", 25));
+        employeeService.updateEmployee(employee.getEmpId(), new Employee(1, "suresh"));
+        assertEquals("suresh", employeeService.getEmployeeById(employee.getEmpId()).getName());
+        assertEquals((Integer) 25, employeeService.getEmployeeById(employee.getEmpId()).getAge());
+        assertEquals(1, employeeService.getEmpsOfDepartment(1).size());
+    }
+}
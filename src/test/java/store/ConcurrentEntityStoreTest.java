@@ -0,0 +1,58 @@
+package store;
+
+import com.freshworks.ems.model.Employee;
+import com.freshworks.ems.store.ConcurrentEntityStore;
+import com.freshworks.ems.store.EntityStore;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class ConcurrentEntityStoreTest {
+    private EntityStore<Employee> employeeStore;
+
+    @Before
+    public void setUp(){
+        employeeStore = new ConcurrentEntityStore<>();
+        employeeStore.compute(1, (empId, employee) -> new Employee(1, 1, "akhil"));
+    }
+
+    @Test
+    public void shouldGetStoredEntity(){
+        assertEquals("akhil", employeeStore.get(1).getName());
+    }
+
+    @Test
+    public void shouldRemoveEntityWhenComputeReturnsNull(){
+        employeeStore.compute(1, (empId, employee) -> null);
+        assertFalse(employeeStore.containsKey(1));
+    }
+
+    @Test
+    public void shouldReturnRemovedEntity(){
+        assertEquals("akhil", employeeStore.remove(1).getName());
+        assertNull(employeeStore.remove(1));
+    }
+
+    @Test
+    public void shouldNotLoseWritesUnderConcurrentCompute() throws InterruptedException {
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            final int offset = i * 1000;
+            executorService.submit(() -> {
+                for (int empId = offset + 2; empId < offset + 1002; empId++) {
+                    employeeStore.compute(empId, (id, employee) -> new Employee(id, 1, "ramesh"));
+                    employeeStore.compute(1, (id, employee) -> new Employee(id, employee.getDepId() + 1, "akhil"));
+                }
+            });
+        }
+        executorService.shutdown();
+        executorService.awaitTermination(30, TimeUnit.SECONDS);
+        assertEquals(8001, employeeStore.size());
+        assertEquals((Integer) 8001, employeeStore.get(1).getDepId());
+    }
+}
@@ -0,0 +1,106 @@
+package store;
+
+import com.freshworks.ems.model.Employee;
+import com.freshworks.ems.store.ConcurrentEntityStore;
+import com.freshworks.ems.store.EmployeeBaseLayer;
+import com.freshworks.ems.store.LayeredEmployeeStore;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LayeredEmployeeStoreTest {
+    private LayeredEmployeeStore employeeStore;
+
+    @Before
+    public void setUp(){
+        employeeStore = new LayeredEmployeeStore(new ConcurrentEntityStore<>());
+        employeeStore.setBase(new ListBaseLayer(Arrays.asList(new Employee(1, 1, "akhil"),
+                                                             new Employee(3, 1, "mahesh"),
+                                                             new Employee(5, 1, "ramesh"))));
+    }
+
+    @Test
+    public void shouldServeBaseRecordsWithoutCopyingThem(){
+        assertEquals("mahesh", employeeStore.get(3).getName());
+        assertTrue(employeeStore.containsKey(5));
+        assertNull(employeeStore.get(2));
+        assertEquals(3, employeeStore.size());
+        assertEquals(0, employeeStore.overlaySize());
+    }
+
+    @Test
+    public void shouldShadowBaseRecordWithUpdate(){
+        employeeStore.compute(3, (empId, employee) -> new Employee(3, 1, employee.getName() + "-updated"));
+        assertEquals("mahesh-updated", employeeStore.get(3).getName());
+        assertEquals(3, employeeStore.size());
+    }
+
+    @Test
+    public void shouldHideRemovedBaseRecord(){
+        assertEquals("akhil", employeeStore.remove(1).getName());
+        assertNull(employeeStore.get(1));
+        assertFalse(employeeStore.containsKey(1));
+        assertNull(employeeStore.remove(1));
+        assertEquals(2, employeeStore.size());
+    }
+
+    @Test
+    public void shouldRecreateRemovedBaseRecordInOverlay(){
+        employeeStore.remove(1);
+        employeeStore.compute(1, (empId, employee) -> employee == null ? new Employee(1, 2, "suresh") : employee);
+        assertEquals("suresh", employeeStore.get(1).getName());
+        assertEquals(3, employeeStore.size());
+    }
+
+    @Test
+    public void shouldMergeLayersInIdOrder(){
+        employeeStore.compute(4, (empId, employee) -> new Employee(4, 1, "suresh"));
+        employeeStore.compute(5, (empId, employee) -> new Employee(5, 1, "ramesh-updated"));
+        employeeStore.remove(3);
+        assertEquals(Arrays.asList("akhil", "suresh", "ramesh-updated"), names(employeeStore.valuesAfter(0)));
+        assertEquals(Arrays.asList("suresh", "ramesh-updated"), names(employeeStore.valuesAfter(3)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectBaseUnderExistingRecords(){
+        employeeStore.compute(7, (empId, employee) -> new Employee(7, 1, "suresh"));
+        employeeStore.setBase(new ListBaseLayer(Arrays.asList(new Employee(8, 1, "naresh"))));
+    }
+
+    private static List<String> names(Iterator<Employee> employees){
+        List<String> names = new ArrayList<>();
+        employees.forEachRemaining(employee -> names.add(employee.getName()));
+        return names;
+    }
+
+    private static class ListBaseLayer implements EmployeeBaseLayer {
+        private final List<Employee> employees;
+
+        ListBaseLayer(List<Employee> employees){
+            this.employees = employees;
+        }
+
+        @Override
+        public int size(){
+            return employees.size();
+        }
+
+        @Override
+        public int idAt(int index){
+            return employees.get(index).getEmpId();
+        }
+
+        @Override
+        public Employee employeeAt(int index){
+            Employee employee = employees.get(index);
+            return new Employee(employee.getEmpId(), employee.getDepId(), employee.getName());
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package store;
+
+import com.freshworks.ems.model.Employee;
+import com.freshworks.ems.service.DepartmentService;
+import com.freshworks.ems.service.EmployeeService;
+import com.freshworks.ems.store.OffHeapEmployeeStore;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OffHeapEmployeeStoreTest {
+    private OffHeapEmployeeStore employeeStore;
+
+    @Before
+    public void setUp(){
+        employeeStore = new OffHeapEmployeeStore(16);
+        employeeStore.compute(1, (empId, employee) -> new Employee(1, 1, "akhil", "akhil@ems.com", 30));
+    }
+
+    @Test
+    public void shouldMaterializeStoredFields(){
+        Employee employee = employeeStore.get(1);
+        assertEquals((Integer) 1, employee.getEmpId());
+        assertEquals((Integer) 1, employee.getDepId());
+        assertEquals("akhil", employee.getName());
+        assertEquals("akhil@ems.com", employee.getEmail());
+        assertEquals((Integer) 30, employee.getAge());
+    }
+
+    @Test
+    public void shouldKeepNullFieldsNullAndNonAsciiNamesIntact(){
+        employeeStore.compute(2, (empId, employee) -> new Employee(2, 1, "Zo\u00eb \u00c5ngstr\u00f6m"));
+        assertEquals("Zo\u00eb \u00c5ngstr\u00f6m", employeeStore.get(2).getName());
+        assertNull(employeeStore.get(2).getAge());
+        assertNull(employeeStore.get(2).getEmail());
+    }
+
+    @Test
+    public void shouldReturnRemovedEntity(){
+        assertEquals("akhil", employeeStore.remove(1).getName());
+        assertNull(employeeStore.remove(1));
+        assertFalse(employeeStore.containsKey(1));
+    }
+
+    @Test
+    public void shouldReclaimStringSpaceFreedByUpdates(){
+        char[] longName = new char[1000];
+        Arrays.fill(longName, 'a');
+        for (int i = 0; i < 5000; i++) {
+            String name = new String(longName) + i;
+            employeeStore.compute(1, (empId, employee) -> new Employee(empId, 1, name));
+        }
+        assertEquals(new String(longName) + 4999, employeeStore.get(1).getName());
+        assertTrue(employeeStore.offHeapBytes() < 4 * 1024 * 1024);
+    }
+
+    @Test
+    public void shouldWalkIdsInAscendingOrderAcrossSlotChunks(){
+        for (int empId = 2; empId <= 40000; empId++) {
+            employeeStore.compute(empId, (id, employee) -> new Employee(id, 1, "ramesh" + id));
+        }
+        employeeStore.remove(20000);
+        List<Integer> empIds = new ArrayList<>();
+        employeeStore.valuesAfter(19998).forEachRemaining(employee -> empIds.add(employee.getEmpId()));
+        assertEquals(20001, empIds.size());
+        assertEquals(Arrays.asList(19999, 20001), empIds.subList(0, 2));
+        assertEquals("ramesh40000", employeeStore.get(40000).getName());
+    }
+
+    @Test
+    public void shouldNotLoseWritesUnderConcurrentCompute() throws InterruptedException {
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            final int offset = i * 1000;
+            executorService.submit(() -> {
+                for (int empId = offset + 2; empId < offset + 1002; empId++) {
+                    employeeStore.compute(empId, (id, employee) -> new Employee(id, 1, "ramesh"));
+                    employeeStore.compute(1, (id, employee) -> new Employee(id, employee.getDepId() + 1, "akhil"));
+                    employeeStore.get(empId - 1);
+                }
+            });
+        }
+        executorService.shutdown();
+        executorService.awaitTermination(30, TimeUnit.SECONDS);
+        assertEquals(8001, employeeStore.size());
+        assertEquals((Integer) 8001, employeeStore.get(1).getDepId());
+    }
+
+    @Test
+    public void shouldRunEmployeeServiceOffHeap() throws Exception {
+        DepartmentService departmentService = new DepartmentService();
+        EmployeeService employeeService = new EmployeeService(departmentService, new OffHeapEmployeeStore());
+        departmentService.createEmployeeServiceObject(employeeService);
+        Employee employee = employeeService.createEmployee(new Employee(1, "ramesh", 25));
+        employeeService.updateEmployee(employee.getEmpId(), new Employee(1, "suresh"));
+        assertEquals("suresh", employeeService.getEmployeeById(employee.getEmpId()).getName());
+        assertEquals((Integer) 25, employeeService.getEmployeeById(employee.getEmpId()).getAge());
+        assertEquals(1, employeeService.getEmpsOfDepartment(1).size());
+    }
+}
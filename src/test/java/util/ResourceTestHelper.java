@@ -2,9 +2,17 @@ package util;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.freshworks.ems.resources.Representations;
+import com.freshworks.ems.resources.mappers.ChangesExpiredMapper;
+import com.freshworks.ems.resources.mappers.DepartmentNotFoundMapper;
+import com.freshworks.ems.resources.mappers.EmployeeNotFoundMapper;
+import com.freshworks.ems.resources.mappers.InvalidCursorMapper;
 import io.dropwizard.jackson.Jackson;
 import io.dropwizard.testing.junit.ResourceTestRule;
+import org.glassfish.jersey.test.grizzly.GrizzlyWebTestContainerFactory;
 import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.UriBuilder;
+import java.net.URI;
 
 public class ResourceTestHelper {
     private ResourceTestRule resourceTestRule;
@@ -14,7 +22,16 @@ public class ResourceTestHelper {
     }
 
     public static ResourceTestRule resourceTestRuleBuilder(Object resourceObject) {
-        return ResourceTestRule.builder().addResource(resourceObject).build();
+        // A servlet container rather than the in-memory one, which cannot suspend requests for AsyncResponse
+        ResourceTestRule.Builder builder = ResourceTestRule.builder()
+                                                           .setTestContainerFactory(new GrizzlyWebTestContainerFactory())
+                                                           .addResource(resourceObject)
+                                                           .addProvider(new EmployeeNotFoundMapper())
+                                                           .addProvider(new DepartmentNotFoundMapper())
+                                                           .addProvider(new InvalidCursorMapper())
+                                                           .addProvider(new ChangesExpiredMapper());
+        Representations.providers().forEach(builder::addProvider);
+        return builder.build();
     }
 
     public static String convertToJsonString(Object object) throws JsonProcessingException {
@@ -28,8 +45,12 @@ public class ResourceTestHelper {
         return requestBuilderWithUrl(url);
     }
 
+    // Tests name the address the resources are deployed at; requests go to wherever the test container listens
     public Invocation.Builder requestBuilderWithUrl(String url) {
-        Invocation.Builder builder = this.resourceTestRule.client().target(url).request();
+        URI container = this.resourceTestRule.getJerseyTest().target().getUri();
+        URI target = UriBuilder.fromUri(url).scheme(container.getScheme()).host(container.getHost())
+                               .port(container.getPort()).build();
+        Invocation.Builder builder = this.resourceTestRule.client().target(target).request();
         return builder;
     }
 }